@@ -0,0 +1,135 @@
+package com.magpi.bench;
+
+import com.magpi.model.AcceptanceEvaluator;
+import com.magpi.model.AcceptanceRules;
+import com.magpi.model.ShotBuffer;
+
+import java.util.Random;
+
+/**
+ * Cost of judging shots: the bare threshold comparison the tables used to
+ * make, the rules evaluated from their nullable fields on every shot, and
+ * the compiled {@link AcceptanceEvaluator}. Also times judging a whole part
+ * from its {@link ShotBuffer} aggregates.
+ *
+ * Usage: AcceptanceRuleBenchmark [shots] [iterations]
+ */
+public class AcceptanceRuleBenchmark {
+    private static final int WARMUP = 5;
+    private static final double HEAD_MIN = 100;
+    private static final double COIL_MIN = 90;
+
+    public static void main(String[] args) {
+        int shots = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.printf("Shots: %,d, %d iterations%n", shots, iterations);
+
+        Random rnd = new Random(7);
+        double[] currents = new double[shots];
+        double[] durations = new double[shots];
+        boolean[] headshot = new boolean[shots];
+        for (int i = 0; i < shots; i++) {
+            currents[i] = 80 + rnd.nextDouble() * 60;
+            durations[i] = 0.3 + rnd.nextDouble() * 0.4;
+            headshot[i] = rnd.nextBoolean();
+        }
+        AcceptanceRules rules = new AcceptanceRules(130.0, null, 0.35, 0.65, 5, true);
+        AcceptanceEvaluator evaluator = rules.compile(HEAD_MIN, COIL_MIN);
+
+        for (int i = 0; i < WARMUP; i++) {
+            threshold(currents, headshot);
+            interpreted(rules, currents, durations, headshot);
+            compiled(evaluator, currents, durations, headshot);
+        }
+
+        long t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++)
+            sink += threshold(currents, headshot);
+        report("current >= threshold", t0, (double) shots * iterations, sink);
+
+        t0 = System.nanoTime();
+        sink = 0;
+        for (int i = 0; i < iterations; i++)
+            sink += interpreted(rules, currents, durations, headshot);
+        report("rules, interpreted", t0, (double) shots * iterations, sink);
+
+        t0 = System.nanoTime();
+        sink = 0;
+        for (int i = 0; i < iterations; i++)
+            sink += compiled(evaluator, currents, durations, headshot);
+        report("rules, compiled", t0, (double) shots * iterations, sink);
+
+        // Parts of five shots per meter
+        int parts = shots / 10;
+        ShotBuffer[] heads = new ShotBuffer[parts];
+        ShotBuffer[] coils = new ShotBuffer[parts];
+        for (int p = 0; p < parts; p++) {
+            heads[p] = new ShotBuffer(ShotBuffer.HEADSHOT);
+            coils[p] = new ShotBuffer(ShotBuffer.COILSHOT);
+            for (int s = 0; s < 5; s++) {
+                heads[p].add(currents[p * 10 + s], durations[p * 10 + s], 0);
+                coils[p].add(currents[p * 10 + 5 + s], durations[p * 10 + 5 + s], 0);
+            }
+        }
+        for (int i = 0; i < WARMUP; i++)
+            parts(evaluator, heads, coils);
+        t0 = System.nanoTime();
+        sink = 0;
+        for (int i = 0; i < iterations; i++)
+            sink += parts(evaluator, heads, coils);
+        report("partPasses, per part", t0, (double) parts * iterations, sink);
+    }
+
+    private static void report(String label, long start, double count, long sink) {
+        System.out.printf("%-24s %6.2f ns (%d)%n", label, (System.nanoTime() - start) / count, sink & 1);
+    }
+
+    private static long threshold(double[] currents, boolean[] headshot) {
+        long passed = 0;
+        for (int i = 0; i < currents.length; i++) {
+            if (currents[i] >= (headshot[i] ? HEAD_MIN : COIL_MIN))
+                passed++;
+        }
+        return passed;
+    }
+
+    private static long interpreted(AcceptanceRules rules, double[] currents, double[] durations,
+            boolean[] headshot) {
+        long passed = 0;
+        for (int i = 0; i < currents.length; i++) {
+            double current = currents[i];
+            double duration = durations[i];
+            boolean ok = current >= (headshot[i] ? HEAD_MIN : COIL_MIN);
+            Double max = headshot[i] ? rules.getHeadMax() : rules.getCoilMax();
+            if (ok && max != null && current > max)
+                ok = false;
+            if (ok && rules.getDurationMin() != null && duration < rules.getDurationMin())
+                ok = false;
+            if (ok && rules.getDurationMax() != null && duration > rules.getDurationMax())
+                ok = false;
+            if (ok)
+                passed++;
+        }
+        return passed;
+    }
+
+    private static long compiled(AcceptanceEvaluator evaluator, double[] currents, double[] durations,
+            boolean[] headshot) {
+        long passed = 0;
+        for (int i = 0; i < currents.length; i++) {
+            if (evaluator.shotPasses(headshot[i], currents[i], durations[i]))
+                passed++;
+        }
+        return passed;
+    }
+
+    private static long parts(AcceptanceEvaluator evaluator, ShotBuffer[] heads, ShotBuffer[] coils) {
+        long passed = 0;
+        for (int p = 0; p < heads.length; p++) {
+            if (evaluator.partPasses(heads[p], coils[p]))
+                passed++;
+        }
+        return passed;
+    }
+}
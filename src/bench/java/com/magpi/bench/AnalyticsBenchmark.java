@@ -0,0 +1,166 @@
+package com.magpi.bench;
+
+import com.magpi.db.Database;
+import com.magpi.db.analytics.AnalyticsQueries;
+import com.magpi.db.analytics.ParquetExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares "coilshot current by part description per month" on the SQLite
+ * tables against DuckDB over the Parquet export, for three years of
+ * synthetic history.
+ *
+ * Usage: AnalyticsBenchmark [parts] [workDir]
+ */
+public class AnalyticsBenchmark {
+    private static final int MONTHS = 36;
+    private static final int SHOTS_PER_METER = 5;
+    private static final int PARTS_PER_SESSION = 50;
+    private static final String[] DESCRIPTIONS = { "AXLE", "BRACKET", "CRANK", "GEAR", "HUB", "PIN", "ROD", "SHAFT" };
+    private static final int RUNS = 5;
+
+    private static final String SQLITE_QUERY = "SELECT substr(s.start_time, 1, 7) AS month, p.part_description, " +
+            "count(*), avg(m.current), min(m.current), max(m.current), avg(m.duration) " +
+            "FROM sessions s JOIN session_parts p ON p.session_id = s.id " +
+            "JOIN measurement_shots m ON m.session_part_id = p.id " +
+            "WHERE m.meter_type = ? AND substr(s.start_time, 1, 7) BETWEEN ? AND ? " +
+            "GROUP BY month, p.part_description ORDER BY month, p.part_description";
+
+    public static void main(String[] args) throws Exception {
+        int parts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File dbFile = new File(dir, "magpi-bench-analytics.db");
+        Path root = dir.toPath().resolve("magpi-bench-analytics");
+        Files.deleteIfExists(dbFile.toPath());
+        deleteTree(root);
+
+        String from = LocalDate.of(2023, 1, 1).toString().substring(0, 7);
+        String to = LocalDate.of(2023, 1, 1).plusMonths(MONTHS - 1).toString().substring(0, 7);
+        System.out.printf("Parts: %,d (%,d shots) over %d months%n", parts, parts * 2L * SHOTS_PER_METER, MONTHS);
+
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath())) {
+            try (Statement st = c.createStatement()) {
+                Database.createSchema(st);
+            }
+            populate(c, parts);
+
+            long t0 = System.nanoTime();
+            int sessions = ParquetExporter.export(c, root);
+            System.out.printf("Export: %,d sessions in %,d ms, SQLite %,d bytes, Parquet %,d bytes%n",
+                    sessions, (System.nanoTime() - t0) / 1_000_000, dbFile.length(), treeSize(root));
+
+            long sqliteMs = Long.MAX_VALUE;
+            int sqliteRows = 0;
+            for (int r = 0; r < RUNS; r++) {
+                t0 = System.nanoTime();
+                sqliteRows = 0;
+                try (PreparedStatement ps = c.prepareStatement(SQLITE_QUERY)) {
+                    ps.setString(1, "Coilshot");
+                    ps.setString(2, from);
+                    ps.setString(3, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next())
+                            sqliteRows++;
+                    }
+                }
+                sqliteMs = Math.min(sqliteMs, (System.nanoTime() - t0) / 1_000_000);
+            }
+
+            AnalyticsQueries queries = new AnalyticsQueries(root, c);
+            long duckMs = Long.MAX_VALUE;
+            int duckRows = 0;
+            for (int r = 0; r < RUNS; r++) {
+                t0 = System.nanoTime();
+                duckRows = queries.monthlyCurrentByDescription("Coilshot", from, to).size();
+                duckMs = Math.min(duckMs, (System.nanoTime() - t0) / 1_000_000);
+            }
+
+            System.out.printf("SQLite  best of %d: %,7d ms (%d rows)%n", RUNS, sqliteMs, sqliteRows);
+            System.out.printf("DuckDB  best of %d: %,7d ms (%d rows)%n", RUNS, duckMs, duckRows);
+        } finally {
+            Files.deleteIfExists(dbFile.toPath());
+            deleteTree(root);
+        }
+    }
+
+    private static void populate(Connection c, int parts) throws SQLException {
+        Random rnd = new Random(42);
+        int sessions = Math.max(1, parts / PARTS_PER_SESSION);
+        c.setAutoCommit(false);
+        try (PreparedStatement session = c.prepareStatement(
+                "INSERT INTO sessions(operator_name, machine_id, part_description, headshot_threshold, " +
+                        "coilshot_threshold, start_time, end_time) VALUES('bench','M1',?,100,100,?,?)",
+                Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement part = c.prepareStatement(
+                        "INSERT INTO session_parts(session_id, part_number, part_description, status) " +
+                                "VALUES(?,?,?,'PASS')",
+                        Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement shot = c.prepareStatement(
+                        "INSERT INTO measurements(session_part_id, meter_type, shot_index, current, duration) " +
+                                "VALUES(?,?,?,?,?)")) {
+            LocalDate start = LocalDate.of(2023, 1, 1);
+            int partNumber = 0;
+            for (int s = 0; s < sessions; s++) {
+                String description = DESCRIPTIONS[s % DESCRIPTIONS.length];
+                String day = start.plusDays((long) s * MONTHS * 30 / sessions).toString();
+                session.setString(1, description);
+                session.setString(2, day + " 08:00:00");
+                session.setString(3, day + " 16:00:00");
+                session.executeUpdate();
+                long sessionId = generatedKey(session);
+
+                for (int p = 0; p < PARTS_PER_SESSION && partNumber < parts; p++) {
+                    part.setLong(1, sessionId);
+                    part.setInt(2, ++partNumber);
+                    part.setString(3, description);
+                    part.executeUpdate();
+                    long partId = generatedKey(part);
+                    for (String meter : new String[] { "Headshot", "Coilshot" }) {
+                        for (int i = 0; i < SHOTS_PER_METER; i++) {
+                            shot.setLong(1, partId);
+                            shot.setString(2, meter);
+                            shot.setInt(3, i);
+                            shot.setDouble(4, 80 + rnd.nextDouble() * 40);
+                            shot.setDouble(5, rnd.nextDouble());
+                            shot.addBatch();
+                        }
+                    }
+                }
+                shot.executeBatch();
+            }
+            c.commit();
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    private static long generatedKey(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static long treeSize(Path root) throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            return s.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root))
+            return;
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.magpi.bench;
+
+import com.magpi.ui.table.CellColorSource;
+import com.magpi.ui.table.CustomCellRenderer;
+import com.magpi.ui.table.PersistentColorTableModel;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.Color;
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Render throughput of a colored measurement table: every cell of the table
+ * passed through {@link CustomCellRenderer}, as painting a scrolled table
+ * does, with cell colors kept in a HashMap keyed by Point (the old
+ * PersistentColorTableModel) against the packed byte-per-cell palette.
+ * Reports time and heap allocated per cell read.
+ *
+ * Usage: CellColorBenchmark [rows] [iterations]
+ */
+public class CellColorBenchmark {
+    private static final String[] COLUMNS = {
+            "Part No", "Current 1", "T 1", "Current 2", "T 2", "Current 3", "T 3", "Current 4", "T 4",
+            "Current 5", "T 5", "DeMag", "Status", "Crack", "Details"
+    };
+    private static final int WARMUP = 3;
+
+    /** The previous PersistentColorTableModel storage */
+    private static class PointMapModel extends DefaultTableModel implements CellColorSource {
+        private final Map<Point, Color> cellColors = new HashMap<>();
+
+        PointMapModel(String[] columnNames, int rowCount) {
+            super(columnNames, rowCount);
+        }
+
+        void setCellColor(int row, int col, Color color) {
+            cellColors.put(new Point(row, col), color);
+        }
+
+        @Override
+        public Color getCellColor(int row, int col) {
+            return cellColors.get(new Point(row, col));
+        }
+    }
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.setProperty("java.awt.headless", "true");
+        System.out.printf("Rows: %,d x %d columns, %d iterations%n", rows, COLUMNS.length, iterations);
+
+        PointMapModel legacy = new PointMapModel(COLUMNS, 0);
+        PersistentColorTableModel packed = new PersistentColorTableModel(COLUMNS, 0);
+        fill(legacy, rows);
+        fill(packed, rows);
+
+        run("HashMap<Point, Color>", legacy, iterations);
+        run("byte per cell + palette", packed, iterations);
+    }
+
+    private static void fill(DefaultTableModel model, int rows) {
+        Random rnd = new Random(7);
+        Object[] row = new Object[COLUMNS.length];
+        for (int r = 0; r < rows; r++) {
+            row[0] = r + 1;
+            for (int shot = 0; shot < 5; shot++) {
+                row[1 + shot * 2] = 80 + rnd.nextInt(40);
+                row[2 + shot * 2] = "0.500";
+            }
+            row[11] = "Done";
+            row[12] = "PASS";
+            row[13] = "";
+            row[14] = "Details";
+            model.addRow(row);
+            for (int shot = 0; shot < 5; shot++) {
+                Color c = ((Integer) row[1 + shot * 2]) >= 100 ? Color.GREEN : Color.RED;
+                setColor(model, r, 1 + shot * 2, c);
+            }
+            setColor(model, r, 11, Color.GREEN);
+            setColor(model, r, 12, Color.GREEN);
+        }
+    }
+
+    private static void setColor(DefaultTableModel model, int row, int col, Color color) {
+        if (model instanceof PersistentColorTableModel) {
+            ((PersistentColorTableModel) model).setCellColor(row, col, color);
+        } else {
+            ((PointMapModel) model).setCellColor(row, col, color);
+        }
+    }
+
+    private static <M extends DefaultTableModel & CellColorSource> void run(String label, M model,
+            int iterations) {
+        JTable table = new JTable(model);
+        CustomCellRenderer renderer = new CustomCellRenderer(model);
+        int rows = model.getRowCount();
+        int cols = model.getColumnCount();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++)
+            sink += render(table, renderer, model, rows, cols);
+
+        long readNanos = 0;
+        long readBytes = 0;
+        long renderNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long a0 = threads.getThreadAllocatedBytes(threadId);
+            long t0 = System.nanoTime();
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    Color color = model.getCellColor(r, c);
+                    if (color != null)
+                        sink += color.getRGB();
+                }
+            }
+            readNanos += System.nanoTime() - t0;
+            readBytes += threads.getThreadAllocatedBytes(threadId) - a0;
+
+            t0 = System.nanoTime();
+            sink += render(table, renderer, model, rows, cols);
+            renderNanos += System.nanoTime() - t0;
+        }
+
+        double cells = (double) rows * cols * iterations;
+        System.out.printf("%-24s getCellColor %6.2f ns/cell, %5.1f bytes/cell; render %,8.0f rows/s (%d)%n",
+                label, readNanos / cells, readBytes / cells, rows * iterations / (renderNanos / 1e9),
+                sink & 1);
+    }
+
+    private static long render(JTable table, CustomCellRenderer renderer, DefaultTableModel model, int rows,
+            int cols) {
+        long sink = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                sink += renderer.getTableCellRendererComponent(table, model.getValueAt(r, c), false, false, r, c)
+                        .getBackground().getRGB();
+            }
+        }
+        return sink;
+    }
+}
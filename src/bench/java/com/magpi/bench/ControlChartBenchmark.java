@@ -0,0 +1,38 @@
+package com.magpi.bench;
+
+import com.magpi.model.spc.ControlChart;
+
+import java.util.Random;
+
+/**
+ * Cost of adding a part to an SPC {@link ControlChart} as its history
+ * grows: ns per part over successive blocks, which should stay flat.
+ *
+ * Usage: ControlChartBenchmark [parts] [blocks]
+ */
+public class ControlChartBenchmark {
+    public static void main(String[] args) {
+        int parts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int blocks = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.out.printf("Parts: %,d of 5 shots, %d blocks%n", parts * blocks, blocks);
+
+        Random rnd = new Random(11);
+        double[] currents = new double[parts * 5];
+        for (int i = 0; i < currents.length; i++)
+            currents[i] = 100 + 2 * rnd.nextGaussian();
+
+        ControlChart chart = new ControlChart();
+        double[] shots = new double[5];
+        for (int b = 0; b < blocks; b++) {
+            long t0 = System.nanoTime();
+            for (int p = 0; p < parts; p++) {
+                System.arraycopy(currents, p * 5, shots, 0, 5);
+                chart.add(p, shots, 5, 90, 110);
+            }
+            System.out.printf("history %,12d parts: %6.1f ns/part%n", chart.getSubgroupCount(),
+                    (System.nanoTime() - t0) / (double) parts);
+        }
+        System.out.printf("Cpk %.3f, beyond 3 sigma %d%n", chart.getCpk(),
+                chart.getViolationCount(ControlChart.RULE_BEYOND_3_SIGMA));
+    }
+}
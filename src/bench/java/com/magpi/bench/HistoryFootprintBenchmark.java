@@ -0,0 +1,222 @@
+package com.magpi.bench;
+
+import com.magpi.db.HistoryColumns;
+import com.magpi.db.HistoryDao;
+import com.magpi.ui.table.PersistentColorTableModel;
+import com.magpi.ui.util.PartIdCell;
+
+import java.awt.Color;
+import java.lang.ref.Reference;
+import java.util.*;
+
+/**
+ * Heap retained by the Part Test History, per 100k rows: the old HistoryPage
+ * layout (a HashMap per part, twelve parallel lists and the hidden
+ * headshot/coilshot tables plus the visible summary table, all with cell
+ * colors) against one {@link HistoryColumns} store that feeds all three views.
+ *
+ * Usage: HistoryFootprintBenchmark [rows]
+ */
+public class HistoryFootprintBenchmark {
+    private static final String[] MEASUREMENT_COLUMNS = {
+            "Part No", "Current 1", "T 1", "Current 2", "T 2", "Current 3", "T 3", "Current 4", "T 4",
+            "Current 5", "T 5", "DeMag", "Status", "Crack", "Details"
+    };
+    private static final String[] SUMMARY_COLUMNS = {
+            "Part No", "Headshot", "CoilShot", "DeMag", "Part Description", "Date & Time", "Operator", "Details"
+    };
+    private static final int PARTS_PER_SESSION = 100;
+
+    /** One generated part, as a JDBC driver would hand it over */
+    private static class Row {
+        long id;
+        int partNumber;
+        String status;
+        Integer crack;
+        String demag;
+        String operator;
+        String supervisor;
+        String createdAt;
+        String company;
+        String machine;
+        String description;
+        double headThreshold;
+        double coilThreshold;
+        String start;
+        String end;
+        final double[] head = new double[HistoryDao.SHOTS * 2];
+        final double[] coil = new double[HistoryDao.SHOTS * 2];
+    }
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.out.printf("Rows: %,d%n", rows);
+
+        long legacy = measure(() -> buildLegacy(rows));
+        long columnar = measure(() -> buildColumnar(rows));
+
+        report("HashMap + lists + 3 table models", legacy, rows);
+        report("HistoryColumns", columnar, rows);
+        System.out.printf("Reduction: %.1fx%n", (double) legacy / columnar);
+    }
+
+    private static void report(String label, long bytes, int rows) {
+        System.out.printf("%-34s %,8.1f MB per 100k rows (%,d bytes/row)%n", label,
+                bytes * 100_000.0 / rows / (1024 * 1024), bytes / rows);
+    }
+
+    /**
+     * Heap retained by what the supplier builds
+     */
+    private static long measure(java.util.function.Supplier<Object> build) {
+        long before = usedHeap();
+        Object kept = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(kept);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Rows are streamed into the sink so each layout only retains what it stores
+     */
+    private static void generate(int rows, java.util.function.Consumer<Row> sink) {
+        Random rnd = new Random(7);
+        String[] operators = { "Anil", "Bhavna", "Chetan", "Deepa", "Eshan", "Farah", "Gopal", "Hema" };
+        String[] machines = { "MPI-01", "MPI-02", "MPI-03" };
+        String start = null;
+        String end = null;
+        String operator = null;
+        String machine = null;
+        String description = null;
+        for (int i = 0; i < rows; i++) {
+            if (i % PARTS_PER_SESSION == 0) {
+                int day = i / (PARTS_PER_SESSION * 4);
+                start = String.format("2025-%02d-%02d 08:00:00", 1 + (day / 28) % 12, 1 + day % 28);
+                end = start.substring(0, 11) + "16:00:00";
+                operator = operators[rnd.nextInt(operators.length)];
+                machine = machines[rnd.nextInt(machines.length)];
+                description = "SHAFT-" + rnd.nextInt(40);
+            }
+            Row r = new Row();
+            r.id = i + 1;
+            r.partNumber = i % 5000 + 1;
+            int s = rnd.nextInt(100);
+            // new String: every row read from the database is its own instance
+            r.status = new String(s < 90 ? "PASS" : s < 96 ? "ERROR" : "RETEST");
+            r.crack = s < 20 ? Integer.valueOf(s < 2 ? 1 : 0) : null;
+            r.demag = rnd.nextBoolean() ? new String("Done") : null;
+            r.operator = new String(operator);
+            r.supervisor = new String("SUP-1");
+            r.createdAt = start.substring(0, 11) + String.format("%02d:%02d:%02d", 8 + i % 8, i % 60, (i * 7) % 60);
+            r.company = new String("Vinze Magnafield Controls");
+            r.machine = new String(machine);
+            r.description = new String(description);
+            r.headThreshold = 100;
+            r.coilThreshold = 90;
+            r.start = new String(start);
+            r.end = new String(end);
+            for (int k = 0; k < HistoryDao.SHOTS; k++) {
+                r.head[k] = 80 + rnd.nextDouble() * 40;
+                r.head[HistoryDao.SHOTS + k] = rnd.nextDouble();
+                r.coil[k] = 80 + rnd.nextDouble() * 40;
+                r.coil[HistoryDao.SHOTS + k] = rnd.nextDouble();
+            }
+            sink.accept(r);
+        }
+    }
+
+    private static Object buildLegacy(int rows) {
+        List<Map<String, Object>> parts = new ArrayList<>();
+        List<List<Object>> lists = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            lists.add(new ArrayList<>());
+        PersistentColorTableModel head = new PersistentColorTableModel(MEASUREMENT_COLUMNS, 0);
+        PersistentColorTableModel coil = new PersistentColorTableModel(MEASUREMENT_COLUMNS, 0);
+        PersistentColorTableModel summary = new PersistentColorTableModel(SUMMARY_COLUMNS, 0);
+
+        generate(rows, r -> {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", r.id);
+            m.put("part_number", r.partNumber);
+            m.put("status", r.status);
+            m.put("crack_detected", r.crack);
+            m.put("crack_image_path", null);
+            m.put("demag_status", r.demag);
+            m.put("operator_name", r.operator);
+            m.put("supervisor_id", r.supervisor);
+            m.put("created_at", r.createdAt);
+            m.put("company_name", r.company);
+            m.put("machine_id", r.machine);
+            m.put("part_description", r.description);
+            m.put("headshot_threshold", r.headThreshold);
+            m.put("coilshot_threshold", r.coilThreshold);
+            m.put("start_time", r.start);
+            m.put("end_time", r.end);
+            parts.add(m);
+
+            Object[] listed = { r.operator, r.supervisor, r.createdAt, r.company, r.machine, r.description,
+                    r.start, r.end, r.headThreshold, r.coilThreshold, null, r.demag == null ? "" : r.demag };
+            for (int i = 0; i < listed.length; i++)
+                lists.get(i).add(listed[i]);
+
+            addMeasurementRow(head, r, r.head, r.headThreshold);
+            addMeasurementRow(coil, r, r.coil, r.coilThreshold);
+
+            Object[] s = { new PartIdCell(r.partNumber, 0), r.status, r.status, r.demag, r.description,
+                    r.createdAt, r.operator, "Details" };
+            summary.addRow(s);
+            int row = summary.getRowCount() - 1;
+            summary.setCellColor(row, 1, Color.GREEN);
+            summary.setCellColor(row, 2, Color.GREEN);
+            if (r.demag != null)
+                summary.setCellColor(row, 3, Color.GREEN);
+        });
+        return new Object[] { parts, lists, head, coil, summary };
+    }
+
+    private static void addMeasurementRow(PersistentColorTableModel model, Row r, double[] shots,
+            double threshold) {
+        Object[] row = new Object[MEASUREMENT_COLUMNS.length];
+        row[0] = new PartIdCell(r.partNumber, 0);
+        for (int k = 0; k < HistoryDao.SHOTS; k++) {
+            row[1 + k * 2] = shots[k];
+            row[2 + k * 2] = String.format(Locale.US, "%.3f", shots[HistoryDao.SHOTS + k]);
+        }
+        row[11] = r.demag;
+        row[12] = r.status;
+        row[13] = r.crack == null ? "" : r.crack == 1 ? "Yes" : "No";
+        row[14] = "Details";
+        model.addRow(row);
+        int n = model.getRowCount() - 1;
+        for (int k = 0; k < HistoryDao.SHOTS; k++)
+            model.setCellColor(n, 1 + k * 2, shots[k] >= threshold ? Color.GREEN : Color.RED);
+        model.setCellColor(n, 12, Color.GREEN);
+    }
+
+    private static Object buildColumnar(int rows) {
+        HistoryColumns store = new HistoryColumns(1024);
+        generate(rows, r -> {
+            int n = store.add(r.id, r.partNumber, 0, r.status, r.crack, null, r.demag, r.operator, r.supervisor,
+                    r.createdAt, r.company, r.machine, r.description, r.headThreshold, r.coilThreshold, r.start,
+                    r.end);
+            for (int k = 0; k < HistoryDao.SHOTS; k++) {
+                store.setShot(n, true, k, r.head[k], r.head[HistoryDao.SHOTS + k]);
+                store.setShot(n, false, k, r.coil[k], r.coil[HistoryDao.SHOTS + k]);
+            }
+        });
+        return store;
+    }
+}
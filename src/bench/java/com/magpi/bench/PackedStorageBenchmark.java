@@ -0,0 +1,161 @@
+package com.magpi.bench;
+
+import com.magpi.db.Database;
+import com.magpi.db.MeasurementDao;
+
+import java.io.File;
+import java.sql.*;
+import java.util.Random;
+
+/**
+ * Compares the row-per-shot measurements table with the packed
+ * measurement_packs layout: database size and the time to read the first
+ * five shots per part x meter the way HistoryPage does.
+ *
+ * Usage: PackedStorageBenchmark [shots] [workDir]
+ */
+public class PackedStorageBenchmark {
+    private static final int SHOTS_PER_METER = MeasurementDao.PACKED_SHOTS;
+    private static final int PARTS_PER_SESSION = 100;
+
+    public static void main(String[] args) throws Exception {
+        long shots = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        int parts = (int) (shots / (2L * SHOTS_PER_METER));
+
+        System.out.printf("Shots: %,d (%,d parts x 2 meters x %d shots)%n", shots, parts, SHOTS_PER_METER);
+        run("row-per-shot", new File(dir, "magpi-bench-rows.db"), parts, false);
+        run("packed", new File(dir, "magpi-bench-packed.db"), parts, true);
+    }
+
+    private static void run(String label, File file, int parts, boolean packed) throws Exception {
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException("Cannot delete " + file);
+        }
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath())) {
+            try (Statement st = c.createStatement()) {
+                Database.createSchema(st);
+            }
+
+            long t0 = System.nanoTime();
+            populate(c, parts, packed);
+            long insertMs = (System.nanoTime() - t0) / 1_000_000;
+
+            try (Statement st = c.createStatement()) {
+                st.execute("VACUUM");
+            }
+            long bytes = file.length();
+
+            t0 = System.nanoTime();
+            long read = loadHistory(c);
+            long loadMs = (System.nanoTime() - t0) / 1_000_000;
+
+            System.out.printf("%-13s size %,12d bytes | insert %,7d ms | history load %,7d ms (%,d shots read)%n",
+                    label, bytes, insertMs, loadMs, read);
+        } finally {
+            // noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static void populate(Connection c, int parts, boolean packed) throws SQLException {
+        Random rnd = new Random(42);
+        c.setAutoCommit(false);
+        try (PreparedStatement session = c.prepareStatement(
+                "INSERT INTO sessions(operator_name, part_description, headshot_threshold, coilshot_threshold, start_time) "
+                        + "VALUES('bench','BENCH',100,100,'2025-01-01 08:00:00')",
+                Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement part = c.prepareStatement(
+                        "INSERT INTO session_parts(session_id, part_number, part_description, status) VALUES(?,?,'BENCH','PASS')",
+                        Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement row = c.prepareStatement(
+                        "INSERT INTO measurements(session_part_id, meter_type, shot_index, current, duration) VALUES(?,?,?,?,?)");
+                PreparedStatement pack = c.prepareStatement(packInsertSql())) {
+            long sessionId = 0;
+            for (int p = 0; p < parts; p++) {
+                if (p % PARTS_PER_SESSION == 0) {
+                    session.executeUpdate();
+                    sessionId = generatedKey(session);
+                }
+                part.setLong(1, sessionId);
+                part.setInt(2, p + 1);
+                part.executeUpdate();
+                long partId = generatedKey(part);
+
+                for (int meter = 1; meter <= 2; meter++) {
+                    if (packed) {
+                        pack.setLong(1, partId);
+                        pack.setInt(2, meter);
+                        pack.setInt(3, SHOTS_PER_METER);
+                        for (int s = 0; s < SHOTS_PER_METER; s++) {
+                            pack.setDouble(4 + s * 2, 80 + rnd.nextDouble() * 40);
+                            pack.setDouble(5 + s * 2, rnd.nextDouble());
+                        }
+                        pack.addBatch();
+                    } else {
+                        for (int s = 0; s < SHOTS_PER_METER; s++) {
+                            row.setLong(1, partId);
+                            row.setString(2, meter == 1 ? "Headshot" : "Coilshot");
+                            row.setInt(3, s);
+                            row.setDouble(4, 80 + rnd.nextDouble() * 40);
+                            row.setDouble(5, rnd.nextDouble());
+                            row.addBatch();
+                        }
+                    }
+                }
+                if (p % 1000 == 999) {
+                    row.executeBatch();
+                    pack.executeBatch();
+                }
+            }
+            row.executeBatch();
+            pack.executeBatch();
+            c.commit();
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    private static String packInsertSql() {
+        StringBuilder cols = new StringBuilder("session_part_id, meter, shot_count");
+        StringBuilder vals = new StringBuilder("?,?,?");
+        for (int i = 1; i <= SHOTS_PER_METER; i++) {
+            cols.append(", current_").append(i).append(", duration_").append(i);
+            vals.append(",?,?");
+        }
+        return "INSERT INTO measurement_packs(" + cols + ", updated_at) VALUES(" + vals + ", strftime('%s','now'))";
+    }
+
+    private static long generatedKey(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Same access pattern as HistoryPage: up to five shots per part and meter type.
+     */
+    private static long loadHistory(Connection c) throws SQLException {
+        long read = 0;
+        try (Statement st = c.createStatement();
+                ResultSet parts = st.executeQuery("SELECT id FROM session_parts ORDER BY created_at");
+                PreparedStatement shots = c.prepareStatement(
+                        "SELECT shot_index, current, duration FROM measurement_shots "
+                                + "WHERE session_part_id=? AND meter_type=? ORDER BY shot_index LIMIT 5")) {
+            while (parts.next()) {
+                long id = parts.getLong(1);
+                for (String meterType : new String[] { "Headshot", "Coilshot" }) {
+                    shots.setLong(1, id);
+                    shots.setString(2, meterType);
+                    try (ResultSet rs = shots.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                        }
+                    }
+                }
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,134 @@
+package com.magpi.bench;
+
+import com.magpi.db.Database;
+import com.magpi.util.IntBitmap;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Duplicate part number checks against a history of one description: the
+ * per-prompt SQL query against an {@link IntBitmap} loaded once. Also
+ * reports the heap taken by the loaded numbers, bitmap vs HashSet.
+ *
+ * Usage: PartNumberIndexBenchmark [parts] [checks] [workDir]
+ */
+public class PartNumberIndexBenchmark {
+    public static void main(String[] args) throws Exception {
+        int parts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int checks = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        File dir = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+        File file = new File(dir, "magpi-bench-partnumbers.db");
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException("Cannot delete " + file);
+        }
+        System.out.printf("Parts: %,d, %,d checks%n", parts, checks);
+
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath())) {
+            try (Statement st = c.createStatement()) {
+                Database.createSchema(st);
+            }
+            populate(c, parts);
+
+            Random rnd = new Random(3);
+            int[] probes = new int[checks];
+            for (int i = 0; i < checks; i++)
+                probes[i] = 1 + rnd.nextInt(parts + parts / 10);
+
+            long t0 = System.nanoTime();
+            int found = 0;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT 1 FROM session_parts WHERE part_number = ? AND part_description = ? LIMIT 1")) {
+                for (int probe : probes) {
+                    ps.setInt(1, probe);
+                    ps.setString(2, "BENCH");
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next())
+                            found++;
+                    }
+                }
+            }
+            System.out.printf("%-22s %,12.0f ns/check (%d found)%n", "SQL query", (System.nanoTime() - t0)
+                    / (double) checks, found);
+
+            long heap0 = usedHeap();
+            t0 = System.nanoTime();
+            IntBitmap bitmap = new IntBitmap();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT part_number FROM session_parts WHERE part_description = ?")) {
+                ps.setString(1, "BENCH");
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        bitmap.add(rs.getInt(1));
+                }
+            }
+            long loadMs = (System.nanoTime() - t0) / 1_000_000;
+            long bitmapBytes = usedHeap() - heap0;
+
+            t0 = System.nanoTime();
+            found = 0;
+            for (int probe : probes) {
+                if (bitmap.contains(probe))
+                    found++;
+            }
+            System.out.printf("%-22s %,12.0f ns/check (%d found), load %,d ms, next free %d%n", "IntBitmap",
+                    (System.nanoTime() - t0) / (double) checks, found, loadMs, bitmap.nextAbsent(1));
+
+            heap0 = usedHeap();
+            Set<Integer> boxed = new HashSet<>();
+            for (int n = 1; n <= parts; n++) {
+                if (bitmap.contains(n))
+                    boxed.add(n);
+            }
+            long boxedBytes = usedHeap() - heap0;
+            System.out.printf("Heap: IntBitmap %,d bytes, HashSet<Integer> %,d bytes (%d)%n", bitmapBytes,
+                    boxedBytes, (bitmap.size() + boxed.size()) & 1);
+        } finally {
+            // noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    // Sequential numbers with a few skipped, as operators enter them
+    private static void populate(Connection c, int parts) throws SQLException {
+        Random rnd = new Random(42);
+        c.setAutoCommit(false);
+        try (PreparedStatement session = c.prepareStatement(
+                "INSERT INTO sessions(operator_name, part_description, headshot_threshold, coilshot_threshold, start_time) "
+                        + "VALUES('bench','BENCH',100,100,'2025-01-01 08:00:00')",
+                Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement part = c.prepareStatement(
+                        "INSERT INTO session_parts(session_id, part_number, part_description, status) VALUES(?,?,'BENCH','PASS')")) {
+            long sessionId = 0;
+            for (int n = 1; n <= parts; n++) {
+                if (n % 100 == 1) {
+                    session.executeUpdate();
+                    try (ResultSet rs = session.getGeneratedKeys()) {
+                        rs.next();
+                        sessionId = rs.getLong(1);
+                    }
+                }
+                if (rnd.nextInt(50) == 0)
+                    continue;
+                part.setLong(1, sessionId);
+                part.setInt(2, n);
+                part.addBatch();
+                if (n % 10_000 == 0)
+                    part.executeBatch();
+            }
+            part.executeBatch();
+        }
+        c.commit();
+        c.setAutoCommit(true);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -47,6 +47,8 @@ public class Main {
         // Initialize database (creates schema and default admin if needed)
         try {
             com.magpi.db.Database.getInstance().init();
+            // Catch up on sessions closed since the last analytics export
+            com.magpi.db.analytics.ParquetExporter.getInstance().exportPendingAsync();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(null, "Failed to initialize database: " + ex.getMessage(),
                     "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -396,7 +398,7 @@ public class Main {
 
         // Persist session to DB
         try {
-            long sid = new com.magpi.db.SessionDao().insert(session);
+            long sid = com.magpi.db.Storage.get().sessions().insert(session);
             session.setId(sid);
         } catch (Exception ex) {
             javax.swing.JOptionPane.showMessageDialog(frame, "Failed to save session: " + ex.getMessage(),
@@ -10,7 +10,7 @@ import java.time.format.DateTimeFormatter;
 /**
  * Data Access Object for calibration logs
  */
-public class CalibrationDao {
+public class CalibrationDao implements CalibrationRepository {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
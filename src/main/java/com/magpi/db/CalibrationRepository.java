@@ -0,0 +1,32 @@
+package com.magpi.db;
+
+import com.magpi.model.CalibrationLog;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Storage for daily calibration logs
+ */
+public interface CalibrationRepository {
+    long insert(CalibrationLog log) throws SQLException;
+
+    /**
+     * Latest calibration log for the date, or null
+     */
+    CalibrationLog getCalibrationForDate(LocalDate date) throws SQLException;
+
+    /**
+     * Most recent calibration log, or null
+     */
+    CalibrationLog getLatestCalibration() throws SQLException;
+
+    default boolean hasCalibrationForToday() {
+        try {
+            return getCalibrationForDate(LocalDate.now()) != null;
+        } catch (SQLException e) {
+            System.err.println("Error checking today's calibration: " + e.getMessage());
+            return false;
+        }
+    }
+}
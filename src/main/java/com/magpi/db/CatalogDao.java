@@ -0,0 +1,42 @@
+package com.magpi.db;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * SQLite catalog backed by the operators and parts tables
+ */
+public class CatalogDao implements CatalogRepository {
+    private final OperatorDao operatorDao = new OperatorDao();
+    private final PartDao partDao = new PartDao();
+
+    @Override
+    public List<String> getOperators() throws SQLException {
+        return operatorDao.getAll();
+    }
+
+    @Override
+    public void addOperator(String name) throws SQLException {
+        operatorDao.add(name);
+    }
+
+    @Override
+    public void removeOperator(String name) throws SQLException {
+        operatorDao.remove(name);
+    }
+
+    @Override
+    public List<String> getPartDescriptions() throws SQLException {
+        return partDao.getAll();
+    }
+
+    @Override
+    public void addPartDescription(String description) throws SQLException {
+        partDao.add(description);
+    }
+
+    @Override
+    public void removePartDescription(String description) throws SQLException {
+        partDao.remove(description);
+    }
+}
@@ -0,0 +1,21 @@
+package com.magpi.db;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Storage for the operator and part description libraries
+ */
+public interface CatalogRepository {
+    List<String> getOperators() throws SQLException;
+
+    void addOperator(String name) throws SQLException;
+
+    void removeOperator(String name) throws SQLException;
+
+    List<String> getPartDescriptions() throws SQLException;
+
+    void addPartDescription(String description) throws SQLException;
+
+    void removePartDescription(String description) throws SQLException;
+}
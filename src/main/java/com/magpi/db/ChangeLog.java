@@ -0,0 +1,181 @@
+package com.magpi.db;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change-data-capture log. Triggers on the main tables append one compact
+ * row per insert, update or delete to change_log; consumers register by
+ * name, read changes after their cursor and acknowledge what they processed.
+ * Entries acknowledged by every consumer are pruned.
+ *
+ * Triggers only log while at least one consumer is registered, so an
+ * installation without consumers pays a single EXISTS lookup per write.
+ */
+public class ChangeLog {
+    /**
+     * Tables captured by the log; the code is what change_log stores
+     */
+    public enum Table {
+        SESSIONS(1, "sessions", "id"),
+        SESSION_PARTS(2, "session_parts", "id"),
+        MEASUREMENTS(3, "measurements", "id"),
+        // WITHOUT ROWID table: the row id is the session part, both meters included
+        MEASUREMENT_PACKS(4, "measurement_packs", "session_part_id"),
+        PARAMETERS(5, "parameters", "part_id"),
+        CALIBRATION_LOGS(6, "calibration_logs", "id");
+
+        public final int code;
+        public final String tableName;
+        final String keyColumn;
+
+        Table(int code, String tableName, String keyColumn) {
+            this.code = code;
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+        }
+
+        public static Table fromCode(int code) {
+            for (Table t : values()) {
+                if (t.code == code)
+                    return t;
+            }
+            throw new IllegalArgumentException("Unknown change_log table code " + code);
+        }
+    }
+
+    public static class Change {
+        public final long seq;
+        public final Table table;
+        public final long rowId;
+        /** 'I' insert, 'U' update, 'D' delete */
+        public final char op;
+        /** Epoch seconds */
+        public final long changedAt;
+
+        public Change(long seq, Table table, long rowId, char op, long changedAt) {
+            this.seq = seq;
+            this.table = table;
+            this.rowId = rowId;
+            this.op = op;
+            this.changedAt = changedAt;
+        }
+    }
+
+    /**
+     * Create the log tables and capture triggers. Called from
+     * {@link Database#createSchema(Statement)}.
+     */
+    static void createSchema(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS change_log (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "table_code INTEGER NOT NULL, " +
+                "row_id INTEGER NOT NULL, " +
+                "op TEXT NOT NULL, " +
+                "changed_at INTEGER NOT NULL DEFAULT (strftime('%s','now'))" +
+                ")");
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS change_consumers (" +
+                "name TEXT PRIMARY KEY, " +
+                "acked_seq INTEGER NOT NULL DEFAULT 0, " +
+                "registered_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+
+        String[][] events = { { "INSERT", "I", "NEW" }, { "UPDATE", "U", "NEW" }, { "DELETE", "D", "OLD" } };
+        for (Table t : Table.values()) {
+            for (String[] e : events) {
+                st.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_cdc_" + t.tableName + "_" + e[1].toLowerCase() +
+                        " AFTER " + e[0] + " ON " + t.tableName +
+                        " WHEN EXISTS (SELECT 1 FROM change_consumers)" +
+                        " BEGIN INSERT INTO change_log(table_code, row_id, op) VALUES(" +
+                        t.code + ", " + e[2] + "." + t.keyColumn + ", '" + e[1] + "'); END");
+            }
+        }
+    }
+
+    /**
+     * Register a consumer. A new consumer starts at the end of the log; an
+     * existing one keeps its cursor.
+     */
+    public void register(String consumer) throws SQLException {
+        String sql = "INSERT OR IGNORE INTO change_consumers(name, acked_seq) " +
+                "VALUES(?, (SELECT COALESCE(MAX(seq), 0) FROM change_log))";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, consumer);
+            ps.executeUpdate();
+        }
+    }
+
+    public void unregister(String consumer) throws SQLException {
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement("DELETE FROM change_consumers WHERE name = ?")) {
+            ps.setString(1, consumer);
+            ps.executeUpdate();
+        }
+        prune();
+    }
+
+    /**
+     * Last sequence number acknowledged by the consumer, or -1 if it is not registered
+     */
+    public long cursor(String consumer) throws SQLException {
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement("SELECT acked_seq FROM change_consumers WHERE name = ?")) {
+            ps.setString(1, consumer);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Changes with a sequence number greater than the cursor, oldest first
+     */
+    public List<Change> readSince(long cursor, int limit) throws SQLException {
+        String sql = "SELECT seq, table_code, row_id, op, changed_at FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, cursor);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Change> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(new Change(rs.getLong(1), Table.fromCode(rs.getInt(2)), rs.getLong(3),
+                            rs.getString(4).charAt(0), rs.getLong(5)));
+                }
+                return list;
+            }
+        }
+    }
+
+    /**
+     * Move the consumer's cursor forward to seq and prune what every consumer has seen
+     */
+    public void acknowledge(String consumer, long seq) throws SQLException {
+        String sql = "UPDATE change_consumers SET acked_seq = MAX(acked_seq, ?) WHERE name = ?";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, seq);
+            ps.setString(2, consumer);
+            if (ps.executeUpdate() == 0)
+                throw new SQLException("Change log consumer not registered: " + consumer);
+        }
+        prune();
+    }
+
+    /**
+     * Delete entries acknowledged by all consumers (everything if there are none)
+     *
+     * @return number of entries deleted
+     */
+    public int prune() throws SQLException {
+        String sql = "DELETE FROM change_log WHERE seq <= " +
+                "(SELECT CASE WHEN COUNT(*) = 0 THEN (SELECT COALESCE(MAX(seq), 0) FROM change_log) " +
+                "ELSE MIN(acked_seq) END FROM change_consumers)";
+        try (Connection c = Database.getInstance().getConnection();
+                Statement st = c.createStatement()) {
+            return st.executeUpdate(sql);
+        }
+    }
+}
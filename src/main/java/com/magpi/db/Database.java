@@ -12,9 +12,15 @@ import java.sql.*;
 public class Database {
     private static final String APP_DIR = System.getProperty("user.home") + File.separator + "MagPi";
     private static final String DB_PATH = APP_DIR + File.separator + "magpi.db";
+    // Named in-memory database used with -Dmagpi.storage=memory. The memdb VFS
+    // shares it between connections with normal file locking, so busy_timeout
+    // applies (shared-cache mode would fail with table locks instead)
+    private static final String MEMORY_URL = "jdbc:sqlite:file:/magpi-mem?vfs=memdb";
 
     private static Database instance;
     private Connection connection;
+    // Keeps the in-memory database alive while callers open and close connections
+    private Connection memoryKeeper;
 
     private Database() {
     }
@@ -28,17 +34,36 @@ public class Database {
 
     public synchronized Connection getConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
-            ensureAppDir();
-            String url = "jdbc:sqlite:" + DB_PATH;
-            connection = DriverManager.getConnection(url);
-            // Enforce foreign keys
-            try (Statement st = connection.createStatement()) {
-                st.execute("PRAGMA foreign_keys = ON");
-            }
+            connection = openConnection();
         }
         return connection;
     }
 
+    /**
+     * Open a new connection that is not shared with other callers. Background
+     * readers use this so the shared connection cannot be closed under them.
+     */
+    public synchronized Connection openConnection() throws SQLException {
+        String url;
+        if (Storage.isInMemory()) {
+            url = MEMORY_URL;
+            if (memoryKeeper == null) {
+                memoryKeeper = DriverManager.getConnection(url);
+            }
+        } else {
+            ensureAppDir();
+            url = "jdbc:sqlite:" + DB_PATH;
+        }
+        Connection conn = DriverManager.getConnection(url);
+        // Enforce foreign keys; wait for short write locks held by other
+        // connections (e.g. the archive tool) instead of failing immediately
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA foreign_keys = ON");
+            st.execute("PRAGMA busy_timeout = 5000");
+        }
+        return conn;
+    }
+
     private void ensureAppDir() {
         try {
             Path p = Paths.get(APP_DIR);
@@ -55,122 +80,322 @@ public class Database {
      */
     public void init() throws SQLException {
         try (Connection conn = getConnection(); Statement st = conn.createStatement()) {
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS users (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "username TEXT NOT NULL UNIQUE, " +
-                    "password_hash TEXT NOT NULL, " +
-                    "role TEXT NOT NULL DEFAULT 'operator', " +
-                    "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_username ON users(username)");
-
-            // Operators
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS operators (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "name TEXT NOT NULL UNIQUE" +
-                    ")");
-
-            // Parts
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS parts (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "description TEXT NOT NULL UNIQUE" +
-                    ")");
-
-            // Current parameters per part
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS parameters (" +
-                    "part_id INTEGER PRIMARY KEY, " +
-                    "headshot REAL NOT NULL, " +
-                    "coilshot REAL NOT NULL, " +
-                    "updated_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
-                    ")");
-
-            // Parameter history per part
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS parameter_history (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "part_id INTEGER NOT NULL, " +
-                    "headshot REAL NOT NULL, " +
-                    "coilshot REAL NOT NULL, " +
-                    "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
-                    ")");
-
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_parts_desc ON parts(description)");
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_paramhist_part ON parameter_history(part_id)");
-
-            // Sessions of testing
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS sessions (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "company_name TEXT, " +
-                    "machine_id TEXT, " +
-                    "supervisor_id TEXT, " +
-                    "operator_name TEXT, " +
-                    "part_description TEXT, " +
-                    "headshot_threshold REAL, " +
-                    "coilshot_threshold REAL, " +
-                    "start_time TEXT NOT NULL, " +
-                    "end_time TEXT" +
-                    ")");
-
-            // Parts tested within a session
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS session_parts (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "session_id INTEGER NOT NULL, " +
-                    "part_number INTEGER NOT NULL, " +
-                    "part_description TEXT, " +
-                    "status TEXT, " +
-                    "crack_detected INTEGER, " +
-                    "crack_image_path TEXT, " +
-                    "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY(session_id) REFERENCES sessions(id) ON DELETE CASCADE" +
-                    ")");
-
-            // Attempt to add crack_detected and crack_image_path to existing DBs
-            try {
-                st.executeUpdate("ALTER TABLE session_parts ADD COLUMN crack_detected INTEGER");
-            } catch (Exception ignore) {
-            }
-            try {
-                st.executeUpdate("ALTER TABLE session_parts ADD COLUMN crack_image_path TEXT");
-            } catch (Exception ignore) {
-            }
-            try {
-                st.executeUpdate("ALTER TABLE session_parts ADD COLUMN demag_status TEXT");
-            } catch (Exception ignore) {
-            }
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_sess ON session_parts(session_id)");
-
-            // Individual measurements for a session part
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS measurements (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "session_part_id INTEGER NOT NULL, " +
-                    "meter_type TEXT NOT NULL, " +
-                    "shot_index INTEGER NOT NULL, " +
-                    "current REAL NOT NULL, " +
-                    "duration REAL NOT NULL, " +
-                    "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY(session_part_id) REFERENCES session_parts(id) ON DELETE CASCADE" +
-                    ")");
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_meas_part ON measurements(session_part_id)");
-
-            // Calibration logs table
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS calibration_logs (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "date TEXT NOT NULL, " +
-                    "machine_calibration_dvcon REAL NOT NULL, " +
-                    "black_light_intensity REAL NOT NULL, " +
-                    "magnetic_bath_concentration TEXT NOT NULL, " +
-                    "pie_gauge_status INTEGER NOT NULL, " +
-                    "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_calibration_date ON calibration_logs(date)");
-
+            // Only takes effect for a new database file; lets the archive tool
+            // return freed pages with incremental_vacuum
+            st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            // WAL lets readers and a chunked purge run alongside the live session
+            st.execute("PRAGMA journal_mode = WAL");
+            createSchema(st);
         }
         // Ensure there is a default admin
         com.magpi.db.UserDao userDao = new com.magpi.db.UserDao();
         userDao.ensureDefaultAdmin();
     }
 
+    /**
+     * Create all tables, indexes and views if they do not exist yet.
+     * Also used by the benchmarks to set up scratch databases.
+     */
+    public static void createSchema(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS users (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT NOT NULL UNIQUE, " +
+                "password_hash TEXT NOT NULL, " +
+                "role TEXT NOT NULL DEFAULT 'operator', " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_username ON users(username)");
+
+        // Operators
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS operators (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "name TEXT NOT NULL UNIQUE" +
+                ")");
+
+        // Parts
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS parts (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "description TEXT NOT NULL UNIQUE" +
+                ")");
+
+        // Current parameters per part
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS parameters (" +
+                "part_id INTEGER PRIMARY KEY, " +
+                "headshot REAL NOT NULL, " +
+                "coilshot REAL NOT NULL, " +
+                "updated_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
+                ")");
+
+        // Parameter history per part
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS parameter_history (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "part_id INTEGER NOT NULL, " +
+                "headshot REAL NOT NULL, " +
+                "coilshot REAL NOT NULL, " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
+                ")");
+
+        // Acceptance rules per part on top of the thresholds in parameters; NULL
+        // bounds are not checked (see com.magpi.model.AcceptanceRules)
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS acceptance_rules (" +
+                "part_id INTEGER PRIMARY KEY, " +
+                "headshot_max REAL, " +
+                "coilshot_max REAL, " +
+                "duration_min REAL, " +
+                "duration_max REAL, " +
+                "required_shots INTEGER NOT NULL DEFAULT 0, " +
+                "meters_agree INTEGER NOT NULL DEFAULT 0, " +
+                "updated_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
+                ")");
+
+        // Every saved version of a part's acceptance rules; each session keeps
+        // the version it started with (sessions.acceptance_rules_id)
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS acceptance_rules_history (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "part_id INTEGER NOT NULL, " +
+                "headshot_max REAL, " +
+                "coilshot_max REAL, " +
+                "duration_min REAL, " +
+                "duration_max REAL, " +
+                "required_shots INTEGER NOT NULL DEFAULT 0, " +
+                "meters_agree INTEGER NOT NULL DEFAULT 0, " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(part_id) REFERENCES parts(id) ON DELETE CASCADE" +
+                ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_rulehist_part ON acceptance_rules_history(part_id)");
+        // Rules saved before versioning become each part's first version
+        st.executeUpdate("INSERT INTO acceptance_rules_history(part_id, " + ParameterDao.RULE_COLUMNS + ", created_at) " +
+                "SELECT part_id, " + ParameterDao.RULE_COLUMNS + ", updated_at FROM acceptance_rules r " +
+                "WHERE NOT EXISTS (SELECT 1 FROM acceptance_rules_history h WHERE h.part_id = r.part_id)");
+
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_parts_desc ON parts(description)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_paramhist_part ON parameter_history(part_id)");
+
+        // Sessions of testing
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS sessions (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "company_name TEXT, " +
+                "machine_id TEXT, " +
+                "supervisor_id TEXT, " +
+                "operator_name TEXT, " +
+                "part_description TEXT, " +
+                "headshot_threshold REAL, " +
+                "coilshot_threshold REAL, " +
+                "start_time TEXT NOT NULL, " +
+                "end_time TEXT, " +
+                "acceptance_rules_id INTEGER REFERENCES acceptance_rules_history(id) ON DELETE SET NULL" +
+                ")");
+
+        // Parts tested within a session
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS session_parts (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "session_id INTEGER NOT NULL, " +
+                "part_number INTEGER NOT NULL, " +
+                "part_description TEXT, " +
+                "status TEXT, " +
+                "crack_detected INTEGER, " +
+                "crack_image_path TEXT, " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "recheck_count INTEGER NOT NULL DEFAULT 0, " +
+                "parent_session_part_id INTEGER REFERENCES session_parts(id) ON DELETE SET NULL, " +
+                "FOREIGN KEY(session_id) REFERENCES sessions(id) ON DELETE CASCADE" +
+                ")");
+
+        // Attempt to add crack_detected and crack_image_path to existing DBs
+        try {
+            st.executeUpdate("ALTER TABLE session_parts ADD COLUMN crack_detected INTEGER");
+        } catch (Exception ignore) {
+        }
+        try {
+            st.executeUpdate("ALTER TABLE session_parts ADD COLUMN crack_image_path TEXT");
+        } catch (Exception ignore) {
+        }
+        try {
+            st.executeUpdate("ALTER TABLE session_parts ADD COLUMN demag_status TEXT");
+        } catch (Exception ignore) {
+        }
+        // Retest lineage: n for the n-th retest of a part number within its
+        // session, and the test it repeats. The index serves the backfill
+        // below and the parent lookup when a retest is saved.
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_lineage " +
+                "ON session_parts(session_id, part_number, created_at)");
+        try {
+            st.executeUpdate("ALTER TABLE session_parts ADD COLUMN recheck_count INTEGER NOT NULL DEFAULT 0");
+        } catch (Exception ignore) {
+        }
+        try {
+            st.executeUpdate("ALTER TABLE session_parts ADD COLUMN parent_session_part_id INTEGER " +
+                    "REFERENCES session_parts(id) ON DELETE SET NULL");
+        } catch (Exception ignore) {
+        }
+        // One-off data migrations that have run to completion on this database
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "name TEXT PRIMARY KEY, " +
+                "applied_at DATETIME DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        // Number the parts saved before the columns existed. The marker is
+        // written in the same transaction, so an interrupted backfill runs
+        // again on the next start.
+        runMigration(st, "session_parts_lineage",
+                "WITH lineage AS (SELECT id, " +
+                "ROW_NUMBER() OVER w - 1 AS n, LAG(id) OVER w AS parent FROM session_parts " +
+                "WINDOW w AS (PARTITION BY session_id, part_number ORDER BY created_at, id)) " +
+                "UPDATE session_parts SET recheck_count = lineage.n, parent_session_part_id = lineage.parent " +
+                "FROM lineage WHERE lineage.id = session_parts.id AND lineage.n > 0");
+        // Acceptance rules version each session was started with, NULL for none
+        try {
+            st.executeUpdate("ALTER TABLE sessions ADD COLUMN acceptance_rules_id INTEGER " +
+                    "REFERENCES acceptance_rules_history(id) ON DELETE SET NULL");
+            // Older sessions get the only version known, the rules saved so far
+            st.executeUpdate("UPDATE sessions SET acceptance_rules_id = (SELECT MAX(h.id) " +
+                    "FROM acceptance_rules_history h JOIN parts p ON p.id = h.part_id " +
+                    "WHERE p.description = sessions.part_description)");
+        } catch (Exception ignore) {
+        }
+        // Parts of a session in created_at order; replaces idx_session_parts_sess(session_id)
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_sess_created ON session_parts(session_id, created_at)");
+        st.executeUpdate("DROP INDEX IF EXISTS idx_session_parts_sess");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_created ON session_parts(created_at)");
+        // History sort by part number
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_number ON session_parts(part_number, created_at)");
+        // Retests of a part, and the foreign key's ON DELETE SET NULL
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_parent ON session_parts(parent_session_part_id)");
+        // History filters and sorts (HistoryFilter); expressions must match its SQL
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_status " +
+                "ON session_parts(COALESCE(status, '') COLLATE NOCASE, created_at)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_session_parts_demag " +
+                "ON session_parts(COALESCE(demag_status, ''), created_at)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sessions_operator " +
+                "ON sessions(COALESCE(operator_name, '') COLLATE NOCASE)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sessions_machine ON sessions(machine_id COLLATE NOCASE)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sessions_description " +
+                "ON sessions(COALESCE(part_description, '') COLLATE NOCASE)");
+
+        // Part number blocks handed to each station (machine ID) by
+        // PartNumberAllocator; numbers already used are skipped when allocating
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS part_number_reservations (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "part_description TEXT NOT NULL, " +
+                "station TEXT NOT NULL, " +
+                "range_start INTEGER NOT NULL, " +
+                "range_end INTEGER NOT NULL, " +
+                "reserved_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_reservations_desc " +
+                "ON part_number_reservations(part_description, range_end)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_reservations_station " +
+                "ON part_number_reservations(part_description, station, id)");
+
+        // Individual measurements for a session part
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS measurements (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "session_part_id INTEGER NOT NULL, " +
+                "meter_type TEXT NOT NULL, " +
+                "shot_index INTEGER NOT NULL, " +
+                "current REAL NOT NULL, " +
+                "duration REAL NOT NULL, " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(session_part_id) REFERENCES session_parts(id) ON DELETE CASCADE" +
+                ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_meas_part ON measurements(session_part_id)");
+
+        // Optional packed layout: one row per part x meter holding the first five
+        // shots (meter 1 = Headshot, 2 = Coilshot, as sent by the Arduino)
+        StringBuilder packs = new StringBuilder("CREATE TABLE IF NOT EXISTS measurement_packs (" +
+                "session_part_id INTEGER NOT NULL, " +
+                "meter INTEGER NOT NULL, " +
+                "shot_count INTEGER NOT NULL DEFAULT 0, ");
+        for (int i = 1; i <= MeasurementDao.PACKED_SHOTS; i++) {
+            packs.append("current_").append(i).append(" REAL, duration_").append(i).append(" REAL, ");
+        }
+        packs.append("updated_at INTEGER NOT NULL, " +
+                "PRIMARY KEY(session_part_id, meter), " +
+                "FOREIGN KEY(session_part_id) REFERENCES session_parts(id) ON DELETE CASCADE" +
+                ") WITHOUT ROWID");
+        st.executeUpdate(packs.toString());
+
+        // Compatibility view with the shape of the measurements table over both layouts.
+        // shot_count is only the highest slot written, so a pack yields the slots
+        // that hold a shot. Recreated so databases with the older definition
+        // (filtered on shot_count) pick this up.
+        st.executeUpdate("DROP VIEW IF EXISTS measurement_shots");
+        StringBuilder shots = new StringBuilder("CREATE VIEW measurement_shots AS " +
+                "SELECT id, session_part_id, meter_type, shot_index, current, duration, created_at FROM measurements");
+        for (int i = 1; i <= MeasurementDao.PACKED_SHOTS; i++) {
+            shots.append(" UNION ALL SELECT NULL, session_part_id, ")
+                    .append("CASE meter WHEN 1 THEN 'Headshot' ELSE 'Coilshot' END, ")
+                    .append(i - 1).append(", current_").append(i).append(", duration_").append(i)
+                    .append(", datetime(updated_at, 'unixepoch') FROM measurement_packs WHERE current_")
+                    .append(i).append(" IS NOT NULL");
+        }
+        st.executeUpdate(shots.toString());
+
+        // Calibration logs table
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS calibration_logs (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "date TEXT NOT NULL, " +
+                "machine_calibration_dvcon REAL NOT NULL, " +
+                "black_light_intensity REAL NOT NULL, " +
+                "magnetic_bath_concentration TEXT NOT NULL, " +
+                "pie_gauge_status INTEGER NOT NULL, " +
+                "created_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_calibration_date ON calibration_logs(date)");
+
+        // Sessions already copied to the Parquet analytics store (no foreign key:
+        // the exported files outlive purged sessions)
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS analytics_exports (" +
+                "session_id INTEGER PRIMARY KEY, " +
+                "month TEXT NOT NULL, " +
+                "exported_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        // Parquet files of the analytics store that readers may use, relative to
+        // its root. A file is listed in the transaction that records its batch or
+        // merge; anything else in the store is a leftover and is removed.
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS analytics_files (" +
+                "path TEXT PRIMARY KEY, " +
+                "month TEXT NOT NULL" +
+                ")");
+
+        // Change-data-capture log and its triggers
+        ChangeLog.createSchema(st);
+    }
+
+    /**
+     * Run a one-off data migration unless schema_migrations records it as done.
+     * The update and its marker commit together; on failure both are rolled
+     * back and the migration is tried again on the next start.
+     */
+    private static void runMigration(Statement st, String name, String sql) throws SQLException {
+        Connection conn = st.getConnection();
+        try (PreparedStatement check = conn.prepareStatement(
+                "SELECT 1 FROM schema_migrations WHERE name = ?")) {
+            check.setString(1, name);
+            try (ResultSet rs = check.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement mark = conn.prepareStatement(
+                "INSERT INTO schema_migrations(name) VALUES (?)")) {
+            st.executeUpdate(sql);
+            mark.setString(1, name);
+            mark.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            System.err.println("Migration " + name + " failed, will retry on next start: " + e.getMessage());
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
     /**
      * Get all operator names from the database
      * 
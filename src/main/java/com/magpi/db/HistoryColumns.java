@@ -0,0 +1,372 @@
+package com.magpi.db;
+
+import com.magpi.model.AcceptanceEvaluator;
+
+import java.util.*;
+
+/**
+ * Column-oriented store of Part Test History rows, shared by the history
+ * table, the headshot/coilshot detail tables and the summary export.
+ *
+ * Numbers live in primitive arrays (shots as SHOTS consecutive slots per row,
+ * NaN where missing), repeated strings such as operator, company and status
+ * as int codes into a {@link Dictionary} that stores pages can share, and
+ * the crack and DeMag flags in bitsets. Shots are classified against the
+ * row's acceptance rules (by default its thresholds) as they are set, so the
+ * table colors are bit reads. Timestamps in the usual
+ * "yyyy-MM-dd HH:mm:ss" form are packed into a long of their digits; other
+ * forms and the rare crack image path fall back to sparse maps.
+ *
+ * Appending is done by one thread; reading by another is safe once the
+ * store has been handed over (e.g. through SwingWorker.publish).
+ */
+public class HistoryColumns {
+    /**
+     * Maps repeated strings to dense int codes; code 0 is null. Thread-safe so
+     * pages decoded on a worker thread can share it with the EDT. Pages that
+     * share it also share the acceptance rule versions they have read.
+     */
+    public static class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        // Acceptance rules of the pages sharing this dictionary
+        final HistoryDao.RuleVersions ruleVersions = new HistoryDao.RuleVersions();
+
+        public Dictionary() {
+            values.add(null);
+        }
+
+        public synchronized int encode(String s) {
+            if (s == null)
+                return 0;
+            Integer code = codes.get(s);
+            if (code == null) {
+                code = values.size();
+                values.add(s);
+                codes.put(s, code);
+            }
+            return code;
+        }
+
+        public synchronized String decode(int code) {
+            return values.get(code);
+        }
+
+        public synchronized int size() {
+            return values.size() - 1;
+        }
+    }
+
+    private static final String DONE = "Done";
+
+    private final Dictionary dict;
+    private int size;
+    private HistoryDao.Key endKey;
+
+    private long[] id;
+    private int[] partNumber;
+    private int[] recheckIndex;
+    // yyyyMMddHHmmss, or -(dictionary code) for timestamps in another form
+    private long[] createdAt;
+    private int[] status;
+    private int[] operator;
+    private int[] supervisor;
+    private int[] company;
+    private int[] machine;
+    private int[] description;
+    private int[] startTime;
+    private int[] endTime;
+    private double[] headThreshold;
+    private double[] coilThreshold;
+    private double[] headCurrent;
+    private double[] headDuration;
+    private double[] coilCurrent;
+    private double[] coilDuration;
+    // Compiled rules per row, shared by rows with the same rules and
+    // thresholds; null means the thresholds alone
+    private AcceptanceEvaluator[] acceptance;
+
+    private final BitSet crackKnown = new BitSet();
+    private final BitSet crack = new BitSet();
+    private final BitSet demagDone = new BitSet();
+    // Rows with a shot failing the meter's rules, and rows in ERROR
+    private final BitSet headRed = new BitSet();
+    private final BitSet coilRed = new BitSet();
+    private final BitSet error = new BitSet();
+    // DeMag values other than "Done" and empty; none are written today
+    private final Map<Integer, String> otherDemag = new HashMap<>();
+    private final Map<Integer, String> crackImagePath = new HashMap<>();
+
+    public HistoryColumns(Dictionary dict, int capacity) {
+        this.dict = dict;
+        allocate(Math.max(capacity, 16));
+    }
+
+    public HistoryColumns(int capacity) {
+        this(new Dictionary(), capacity);
+    }
+
+    public Dictionary dictionary() {
+        return dict;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a row; shots are set afterwards with {@link #setShot}
+     *
+     * @return the new row index
+     */
+    public int add(long rowId, int partNo, int recheck, String statusText, Integer crackDetected,
+            String imagePath, String demagStatus, String operatorName, String supervisorId, String created,
+            String companyName, String machineId, String partDescription, double headshotThreshold,
+            double coilshotThreshold, String start, String end) {
+        if (size == id.length)
+            allocate(size * 2);
+        int r = size++;
+        id[r] = rowId;
+        partNumber[r] = partNo;
+        recheckIndex[r] = recheck;
+        createdAt[r] = packTimestamp(created);
+        status[r] = dict.encode(statusText);
+        if ("ERROR".equalsIgnoreCase(statusText))
+            error.set(r);
+        operator[r] = dict.encode(operatorName);
+        supervisor[r] = dict.encode(supervisorId);
+        company[r] = dict.encode(companyName);
+        machine[r] = dict.encode(machineId);
+        description[r] = dict.encode(partDescription);
+        startTime[r] = dict.encode(start);
+        endTime[r] = dict.encode(end);
+        headThreshold[r] = headshotThreshold;
+        coilThreshold[r] = coilshotThreshold;
+        acceptance[r] = null;
+        Arrays.fill(headCurrent, r * HistoryDao.SHOTS, (r + 1) * HistoryDao.SHOTS, Double.NaN);
+        Arrays.fill(headDuration, r * HistoryDao.SHOTS, (r + 1) * HistoryDao.SHOTS, Double.NaN);
+        Arrays.fill(coilCurrent, r * HistoryDao.SHOTS, (r + 1) * HistoryDao.SHOTS, Double.NaN);
+        Arrays.fill(coilDuration, r * HistoryDao.SHOTS, (r + 1) * HistoryDao.SHOTS, Double.NaN);
+        if (crackDetected != null) {
+            crackKnown.set(r);
+            crack.set(r, crackDetected == 1);
+        }
+        if (DONE.equals(demagStatus)) {
+            demagDone.set(r);
+        } else if (demagStatus != null && !demagStatus.isEmpty()) {
+            otherDemag.put(r, demagStatus);
+        }
+        if (imagePath != null)
+            crackImagePath.put(r, imagePath);
+        return r;
+    }
+
+    /**
+     * Judge the row's shots with these rules instead of the thresholds alone;
+     * set before its shots
+     */
+    public void setAcceptance(int row, AcceptanceEvaluator evaluator) {
+        acceptance[row] = evaluator;
+    }
+
+    public void setShot(int row, boolean headshot, int shot, double current, double duration) {
+        int i = row * HistoryDao.SHOTS + shot;
+        (headshot ? headCurrent : coilCurrent)[i] = current;
+        (headshot ? headDuration : coilDuration)[i] = duration;
+        if (!Double.isNaN(current) && !passes(row, headshot, current, duration))
+            (headshot ? headRed : coilRed).set(row);
+    }
+
+    /**
+     * Whether a recorded shot passes the row's rules
+     */
+    public boolean shotPasses(int r, boolean headshot, int shot) {
+        return passes(r, headshot, current(r, headshot, shot), duration(r, headshot, shot));
+    }
+
+    /**
+     * Highest acceptable current of the row's rules, +Infinity if unchecked
+     */
+    public double maxCurrent(int r, boolean headshot) {
+        AcceptanceEvaluator e = acceptance[r];
+        if (e == null)
+            return Double.POSITIVE_INFINITY;
+        return headshot ? e.getHeadMax() : e.getCoilMax();
+    }
+
+    private boolean passes(int r, boolean headshot, double current, double duration) {
+        AcceptanceEvaluator e = acceptance[r];
+        return e != null ? e.shotPasses(headshot, current, duration) : current >= threshold(r, headshot);
+    }
+
+    public long id(int r) {
+        return id[r];
+    }
+
+    public int partNumber(int r) {
+        return partNumber[r];
+    }
+
+    /** 0 for the first test of the part number, n for its n-th retest in the session */
+    public int recheckIndex(int r) {
+        return recheckIndex[r];
+    }
+
+    public String status(int r) {
+        return dict.decode(status[r]);
+    }
+
+    /** 1 crack, 0 no crack, null not inspected */
+    public Integer crackDetected(int r) {
+        return crackKnown.get(r) ? (crack.get(r) ? 1 : 0) : null;
+    }
+
+    public String crackImagePath(int r) {
+        return crackImagePath.get(r);
+    }
+
+    /** Never null */
+    public String demagStatus(int r) {
+        if (demagDone.get(r))
+            return DONE;
+        String other = otherDemag.get(r);
+        return other != null ? other : "";
+    }
+
+    public boolean isDemagDone(int r) {
+        return demagDone.get(r);
+    }
+
+    public String operatorName(int r) {
+        return dict.decode(operator[r]);
+    }
+
+    public String supervisorId(int r) {
+        return dict.decode(supervisor[r]);
+    }
+
+    public String createdAt(int r) {
+        return unpackTimestamp(createdAt[r]);
+    }
+
+    public String companyName(int r) {
+        return dict.decode(company[r]);
+    }
+
+    public String machineId(int r) {
+        return dict.decode(machine[r]);
+    }
+
+    public String partDescription(int r) {
+        return dict.decode(description[r]);
+    }
+
+    public String startTime(int r) {
+        return dict.decode(startTime[r]);
+    }
+
+    public String endTime(int r) {
+        return dict.decode(endTime[r]);
+    }
+
+    public double threshold(int r, boolean headshot) {
+        return headshot ? headThreshold[r] : coilThreshold[r];
+    }
+
+    /** Current of shot 0..SHOTS-1, NaN if the shot is missing */
+    public double current(int r, boolean headshot, int shot) {
+        return (headshot ? headCurrent : coilCurrent)[r * HistoryDao.SHOTS + shot];
+    }
+
+    public double duration(int r, boolean headshot, int shot) {
+        return (headshot ? headDuration : coilDuration)[r * HistoryDao.SHOTS + shot];
+    }
+
+    /**
+     * True if any recorded shot of the meter is below its threshold
+     */
+    public boolean hasRed(int r, boolean headshot) {
+        return (headshot ? headRed : coilRed).get(r);
+    }
+
+    /** True if the status is ERROR, in any case */
+    public boolean isError(int r) {
+        return error.get(r);
+    }
+
+    /**
+     * Key of the last row read into the store in the filter's order, or null
+     * if nothing was read
+     */
+    public HistoryDao.Key endKey() {
+        return endKey;
+    }
+
+    void setEndKey(HistoryDao.Key key) {
+        endKey = key;
+    }
+
+    private void allocate(int capacity) {
+        id = id == null ? new long[capacity] : Arrays.copyOf(id, capacity);
+        partNumber = grow(partNumber, capacity);
+        recheckIndex = grow(recheckIndex, capacity);
+        createdAt = createdAt == null ? new long[capacity] : Arrays.copyOf(createdAt, capacity);
+        status = grow(status, capacity);
+        operator = grow(operator, capacity);
+        supervisor = grow(supervisor, capacity);
+        company = grow(company, capacity);
+        machine = grow(machine, capacity);
+        description = grow(description, capacity);
+        startTime = grow(startTime, capacity);
+        endTime = grow(endTime, capacity);
+        headThreshold = grow(headThreshold, capacity);
+        coilThreshold = grow(coilThreshold, capacity);
+        headCurrent = grow(headCurrent, capacity * HistoryDao.SHOTS);
+        headDuration = grow(headDuration, capacity * HistoryDao.SHOTS);
+        coilCurrent = grow(coilCurrent, capacity * HistoryDao.SHOTS);
+        coilDuration = grow(coilDuration, capacity * HistoryDao.SHOTS);
+        acceptance = acceptance == null ? new AcceptanceEvaluator[capacity] : Arrays.copyOf(acceptance, capacity);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static double[] grow(double[] a, int capacity) {
+        return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    /**
+     * "yyyy-MM-dd HH:mm:ss" as the long yyyyMMddHHmmss (same ordering), or
+     * minus the dictionary code for null and anything else
+     */
+    private long packTimestamp(String s) {
+        if (s == null || s.length() != 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != ' '
+                || s.charAt(13) != ':' || s.charAt(16) != ':')
+            return -dict.encode(s);
+        long v = 0;
+        for (int i = 0; i < 19; i++) {
+            if (i == 4 || i == 7 || i == 10 || i == 13 || i == 16)
+                continue;
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -dict.encode(s);
+            v = v * 10 + (c - '0');
+        }
+        // Keep 0 free for the null code
+        return v == 0 ? -dict.encode(s) : v;
+    }
+
+    private String unpackTimestamp(long v) {
+        if (v <= 0)
+            return dict.decode((int) -v);
+        char[] c = "0000-00-00 00:00:00".toCharArray();
+        for (int i = 18; i >= 0; i--) {
+            if (c[i] != '0')
+                continue;
+            c[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return new String(c);
+    }
+}
@@ -0,0 +1,344 @@
+package com.magpi.db;
+
+import com.magpi.model.AcceptanceEvaluator;
+import com.magpi.model.AcceptanceRules;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Read access to the Part Test History in (created_at, id) order, one page at
+ * a time, decoded straight into {@link HistoryColumns}. A page costs one
+ * query for the parts and one for their shots.
+ *
+ * One instance runs one query at a time; {@link #cancel()} interrupts it from
+ * another thread when its result is no longer wanted.
+ */
+public class HistoryDao {
+    /** Shots per meter shown in the history (Current 1..5) */
+    public static final int SHOTS = 5;
+
+    /**
+     * Position of a row in the filter's order: the values of its sort
+     * expressions and its id. Pages after a known key are read with keyset
+     * pagination instead of OFFSET.
+     */
+    public static class Key {
+        final Object[] values;
+        public final long id;
+
+        Key(Object[] values, long id) {
+            this.values = values;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Acceptance rule versions met during one history load, each read once
+     * and compiled once per threshold pair. Thread-safe.
+     */
+    static class RuleVersions {
+        private final Map<Long, AcceptanceRules> rules = new HashMap<>();
+        private final AcceptanceEvaluator.Cache evaluators = new AcceptanceEvaluator.Cache();
+
+        /**
+         * Evaluator of the row's session, null if it has no rules version;
+         * the version's columns start at RULES_COLUMN
+         */
+        synchronized AcceptanceEvaluator evaluator(ResultSet rs, double headMin, double coilMin)
+                throws SQLException {
+            long version = rs.getLong(RULES_COLUMN);
+            if (rs.wasNull())
+                return null;
+            AcceptanceRules r = rules.get(version);
+            if (r == null) {
+                r = ParameterDao.readRules(rs, RULES_COLUMN + 1);
+                rules.put(version, r);
+            }
+            return evaluators.get(r, headMin, coilMin);
+        }
+    }
+
+    private volatile Statement running;
+
+    private static final String SELECT = "SELECT sp.id, sp.part_number, sp.recheck_count, " +
+            "sp.status, sp.crack_detected, sp.crack_image_path, sp.demag_status, " +
+            "s.operator_name, s.supervisor_id, sp.created_at, s.company_name, s.machine_id, s.part_description, " +
+            "s.headshot_threshold, s.coilshot_threshold, s.start_time, s.end_time, " +
+            "ar.id, ar.headshot_max, ar.coilshot_max, ar.duration_min, ar.duration_max, ar.required_shots, ar.meters_agree";
+    private static final int RULES_COLUMN = 18;
+    private static final int SORT_COLUMN = 25;
+    private static final String FROM = " FROM session_parts sp JOIN sessions s ON s.id = sp.session_id";
+
+    /**
+     * Parts counted for a filter and the highest part id when they were
+     * counted. Parts saved later get higher ids, so
+     * {@link #countAfter(HistoryFilter, long)} with that id finds exactly the
+     * parts added since.
+     */
+    public static class Count {
+        public final int rows;
+        public final long maxId;
+
+        Count(int rows, long maxId) {
+            this.rows = rows;
+            this.maxId = maxId;
+        }
+    }
+
+    /**
+     * Number of parts matching the filter
+     */
+    public Count count(HistoryFilter filter) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        if (filter.isEmpty()) {
+            sql.append("SELECT COUNT(*) FROM session_parts");
+        } else {
+            sql.append("SELECT COUNT(*)").append(FROM);
+            filter.appendWhere(sql, params);
+        }
+        try (Connection c = Database.getInstance().openConnection()) {
+            // One transaction so the count and the id see the same parts
+            c.setAutoCommit(false);
+            try {
+                long maxId = queryLong(c, "SELECT COALESCE(MAX(id), 0) FROM session_parts",
+                        Collections.emptyList());
+                int rows = (int) queryLong(c, sql.toString(), params);
+                return new Count(rows, maxId);
+            } finally {
+                c.rollback();
+            }
+        }
+    }
+
+    /**
+     * Number of parts matching the filter with an id above afterId; costs
+     * time in proportion to the parts added since afterId, not to the history
+     */
+    public Count countAfter(HistoryFilter filter, long afterId) throws SQLException {
+        // Materialized so SQLite reads the new ids by rowid instead of
+        // walking a filter index over the whole history
+        StringBuilder sql = new StringBuilder("WITH sp AS MATERIALIZED (SELECT * FROM session_parts WHERE id > ?) ")
+                .append("SELECT COUNT(*), COALESCE(MAX(sp.id), 0) FROM sp JOIN sessions s ON s.id = sp.session_id");
+        List<Object> params = new ArrayList<>();
+        params.add(afterId);
+        filter.appendWhere(sql, params);
+        try (Connection c = Database.getInstance().openConnection();
+                PreparedStatement ps = prepare(c, sql.toString(), params)) {
+            running = ps;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next())
+                    return new Count(0, afterId);
+                return new Count(rs.getInt(1), Math.max(afterId, rs.getLong(2)));
+            } finally {
+                running = null;
+            }
+        }
+    }
+
+    /**
+     * Lowest part id of a session, 0 if it has no parts
+     */
+    public long firstPartId(long sessionId) throws SQLException {
+        try (Connection c = Database.getInstance().openConnection()) {
+            return queryLong(c, "SELECT COALESCE(MIN(id), 0) FROM session_parts WHERE session_id = ?",
+                    Collections.singletonList(sessionId));
+        }
+    }
+
+    private long queryLong(Connection c, String sql, List<?> params) throws SQLException {
+        try (PreparedStatement ps = prepare(c, sql, params)) {
+            running = ps;
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            } finally {
+                running = null;
+            }
+        }
+    }
+
+    /**
+     * Interrupt the query running on another thread, if any; it fails with an
+     * SQLException
+     */
+    public void cancel() {
+        Statement st = running;
+        if (st != null) {
+            try {
+                st.cancel();
+            } catch (SQLException e) {
+                System.err.println("Error cancelling history query: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read one page with its shots into a new store; its
+     * {@link HistoryColumns#endKey()} is where the next page starts.
+     *
+     * @param dict   dictionary the page shares with other pages
+     * @param after  key of the row before the page, or null to use offset
+     * @param offset row offset, used only when after is null
+     */
+    public HistoryColumns page(HistoryFilter filter, HistoryColumns.Dictionary dict, Key after, int offset,
+            int limit) throws SQLException {
+        HistoryColumns into = new HistoryColumns(dict, limit);
+        try (Connection c = Database.getInstance().openConnection()) {
+            page(c, filter, after, offset, limit, into, dict.ruleVersions);
+        }
+        return into;
+    }
+
+    /**
+     * Pass every matching part in history order to the consumer, a page at a
+     * time. Each page is a new store with its own dictionary, so nothing is
+     * kept from one page to the next and memory does not grow with the
+     * history.
+     */
+    public void forEachPage(HistoryFilter filter, int pageSize, Consumer<HistoryColumns> consumer)
+            throws SQLException {
+        try (Connection c = Database.getInstance().openConnection()) {
+            RuleVersions versions = new RuleVersions();
+            Key after = null;
+            while (true) {
+                HistoryColumns page = new HistoryColumns(pageSize);
+                int n = page(c, filter, after, 0, pageSize, page, versions);
+                if (n > 0)
+                    consumer.accept(page);
+                if (n < pageSize)
+                    return;
+                after = page.endKey();
+            }
+        }
+    }
+
+    /**
+     * Totals for a report header over the parts matching the filter:
+     * { total, retested, pass, crack, error }. A status containing CRACK
+     * counts as crack before PASS and ERROR are looked at.
+     */
+    public int[] reportCounts(HistoryFilter filter) throws SQLException {
+        String status = "UPPER(COALESCE(sp.status, ''))";
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*), " +
+                "COALESCE(SUM(sp.recheck_count > 0), 0), " +
+                "COALESCE(SUM(instr(" + status + ", 'CRACK') = 0 AND instr(" + status + ", 'PASS') > 0), 0), " +
+                "COALESCE(SUM(instr(" + status + ", 'CRACK') > 0), 0), " +
+                "COALESCE(SUM(instr(" + status + ", 'CRACK') = 0 AND instr(" + status + ", 'PASS') = 0 " +
+                "AND instr(" + status + ", 'ERROR') > 0), 0)").append(FROM);
+        List<Object> params = new ArrayList<>();
+        filter.appendWhere(sql, params);
+        try (Connection c = Database.getInstance().openConnection();
+                PreparedStatement ps = prepare(c, sql.toString(), params)) {
+            running = ps;
+            try (ResultSet rs = ps.executeQuery()) {
+                int[] counts = new int[5];
+                if (rs.next()) {
+                    for (int i = 0; i < counts.length; i++)
+                        counts[i] = rs.getInt(i + 1);
+                }
+                return counts;
+            } finally {
+                running = null;
+            }
+        }
+    }
+
+    /**
+     * @return number of rows appended
+     */
+    private int page(Connection c, HistoryFilter filter, Key after, int offset, int limit, HistoryColumns into,
+            RuleVersions versions) throws SQLException {
+        // Deferred join: the inner query finds the page's ids and sort keys
+        // from the indexes alone; display columns are only read for those
+        // rows. Selecting them in the inner query
+        // makes SQLite's planner prefer a full scan and sort.
+        StringBuilder keys = new StringBuilder("SELECT sp.id AS part_id");
+        filter.appendSortColumns(keys);
+        keys.append(FROM);
+        List<Object> params = new ArrayList<>();
+        filter.appendWhere(keys, params);
+        if (after != null)
+            filter.appendAfter(keys, params, after, !params.isEmpty());
+        filter.appendOrderBy(keys);
+        keys.append(" LIMIT ?");
+        params.add(limit);
+        if (after == null && offset > 0) {
+            keys.append(" OFFSET ?");
+            params.add(offset);
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT);
+        for (int i = 0; i < filter.sort.expressions.length; i++)
+            sql.append(", k.k").append(i);
+        sql.append(" FROM (").append(keys).append(") k JOIN session_parts sp ON sp.id = k.part_id ")
+                .append("JOIN sessions s ON s.id = sp.session_id ")
+                // Each session is judged by the rules it was started with
+                .append("LEFT JOIN acceptance_rules_history ar ON ar.id = s.acceptance_rules_id");
+        filter.appendOrderBy(sql, "k", "part_id");
+
+        Map<Long, Integer> rowById = new HashMap<>();
+        int sortColumns = filter.sort.expressions.length;
+        try (PreparedStatement ps = prepare(c, sql.toString(), params)) {
+            running = ps;
+            try (ResultSet rs = ps.executeQuery()) {
+                Object[] last = null;
+                while (rs.next()) {
+                    Object cd = rs.getObject(5);
+                    int r = into.add(rs.getLong(1), rs.getInt(2), rs.getInt(3), rs.getString(4),
+                            cd == null ? null : ((Number) cd).intValue(), rs.getString(6), rs.getString(7),
+                            rs.getString(8), rs.getString(9), rs.getString(10), rs.getString(11), rs.getString(12),
+                            rs.getString(13), rs.getDouble(14), rs.getDouble(15), rs.getString(16),
+                            rs.getString(17));
+                    rowById.put(into.id(r), r);
+                    AcceptanceEvaluator acceptance = versions.evaluator(rs, rs.getDouble(14), rs.getDouble(15));
+                    if (acceptance != null)
+                        into.setAcceptance(r, acceptance);
+                    last = new Object[sortColumns];
+                    for (int i = 0; i < sortColumns; i++)
+                        last[i] = rs.getObject(SORT_COLUMN + i);
+                }
+                if (last != null)
+                    into.setEndKey(new Key(last, into.id(into.size() - 1)));
+            } finally {
+                running = null;
+            }
+        }
+        if (!rowById.isEmpty())
+            loadShots(c, rowById, into);
+        return rowById.size();
+    }
+
+    private void loadShots(Connection c, Map<Long, Integer> rowById, HistoryColumns into) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT session_part_id, meter_type, shot_index, current, duration " +
+                "FROM measurement_shots WHERE shot_index < " + SHOTS + " AND session_part_id IN (");
+        for (int i = 0; i < rowById.size(); i++)
+            sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        try (PreparedStatement ps = prepare(c, sql.toString(), new ArrayList<>(rowById.keySet()))) {
+            running = ps;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Integer r = rowById.get(rs.getLong(1));
+                    int idx = rs.getInt(3);
+                    if (r == null || idx < 0)
+                        continue;
+                    boolean head = "Headshot".equals(rs.getString(2));
+                    if (!head && !"Coilshot".equals(rs.getString(2)))
+                        continue;
+                    into.setShot(r, head, idx, rs.getDouble(4), rs.getDouble(5));
+                }
+            } finally {
+                running = null;
+            }
+        }
+    }
+
+    private static PreparedStatement prepare(Connection c, String sql, List<?> params) throws SQLException {
+        PreparedStatement ps = c.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++)
+            ps.setObject(i + 1, params.get(i));
+        return ps;
+    }
+}
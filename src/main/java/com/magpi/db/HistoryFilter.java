@@ -0,0 +1,181 @@
+package com.magpi.db;
+
+import java.util.List;
+
+/**
+ * Criteria and order for the Part Test History, turned into parameterized SQL
+ * WHERE and ORDER BY clauses over session_parts sp JOIN sessions s. Empty
+ * fields do not filter. Everything but the free-text search is answered from
+ * an index.
+ */
+public class HistoryFilter {
+    /**
+     * Orders the history can be read in. Every order ends with sp.id, so rows
+     * have a unique position and pages can continue from the last row read
+     * (see {@link HistoryDao.Key}). Each order is served by an index; orders
+     * on a sessions column go session by session so SQLite can walk the
+     * sessions index and join the parts of each session in created_at order.
+     */
+    public enum Sort {
+        DATE(0, "sp.created_at"),
+        PART_NUMBER(0, "sp.part_number", "sp.created_at"),
+        STATUS(0, "COALESCE(sp.status, '') COLLATE NOCASE", "sp.created_at"),
+        DEMAG(0, "COALESCE(sp.demag_status, '')", "sp.created_at"),
+        DESCRIPTION(2, "COALESCE(s.part_description, '') COLLATE NOCASE", "s.id", "sp.created_at"),
+        OPERATOR(2, "COALESCE(s.operator_name, '') COLLATE NOCASE", "s.id", "sp.created_at");
+
+        final String[] expressions;
+        // Leading expressions that only read sessions columns
+        final int sessionExpressions;
+
+        Sort(int sessionExpressions, String... expressions) {
+            this.sessionExpressions = sessionExpressions;
+            this.expressions = expressions;
+        }
+    }
+
+    /** Case-insensitive text contained in any displayed column */
+    public String search = "";
+    /** Status, e.g. PASS, CRACK, ERROR, RETEST, compared case-insensitively; empty or "All" for any */
+    public String status = "";
+    /** Inclusive created_at bounds, "yyyy-MM-dd HH:mm:ss" */
+    public String from = "";
+    public String to = "";
+    /** Operator name, compared case-insensitively */
+    public String operator = "";
+    /** Machine ID, compared case-insensitively */
+    public String machine = "";
+    /** Part description, compared case-insensitively */
+    public String partDescription = "";
+    /** Part number, 0 for any */
+    public int partNumber;
+
+    public Sort sort = Sort.DATE;
+    public boolean descending;
+
+    /**
+     * Append " WHERE ..." (or nothing) to sql and the bind values to params
+     */
+    public void appendWhere(StringBuilder sql, List<Object> params) {
+        String glue = " WHERE ";
+        if (!search.isEmpty()) {
+            String like = "%" + escapeLike(search) + "%";
+            sql.append(glue).append("(CAST(sp.part_number AS TEXT) LIKE ? ESCAPE '\\' OR sp.status LIKE ? ESCAPE '\\' ")
+                    .append("OR sp.demag_status LIKE ? ESCAPE '\\' OR s.part_description LIKE ? ESCAPE '\\' ")
+                    .append("OR sp.created_at LIKE ? ESCAPE '\\' OR s.operator_name LIKE ? ESCAPE '\\')");
+            for (int i = 0; i < 6; i++)
+                params.add(like);
+            glue = " AND ";
+        }
+        if (!status.isEmpty() && !"All".equalsIgnoreCase(status)) {
+            // Same expression as idx_session_parts_status
+            sql.append(glue).append("COALESCE(sp.status, '') COLLATE NOCASE = ?");
+            params.add(status);
+            glue = " AND ";
+        }
+        if (!from.isEmpty()) {
+            sql.append(glue).append("sp.created_at >= ?");
+            params.add(from);
+            glue = " AND ";
+        }
+        if (!to.isEmpty()) {
+            sql.append(glue).append("sp.created_at <= ?");
+            params.add(to);
+            glue = " AND ";
+        }
+        if (!operator.isEmpty()) {
+            // Same expression as idx_sessions_operator
+            sql.append(glue).append("COALESCE(s.operator_name, '') COLLATE NOCASE = ?");
+            params.add(operator);
+            glue = " AND ";
+        }
+        if (!machine.isEmpty()) {
+            sql.append(glue).append("s.machine_id = ? COLLATE NOCASE");
+            params.add(machine);
+            glue = " AND ";
+        }
+        if (!partDescription.isEmpty()) {
+            // Same expression as idx_sessions_description
+            sql.append(glue).append("COALESCE(s.part_description, '') COLLATE NOCASE = ?");
+            params.add(partDescription);
+            glue = " AND ";
+        }
+        if (partNumber > 0) {
+            sql.append(glue).append("sp.part_number = ?");
+            params.add(partNumber);
+        }
+    }
+
+    /**
+     * Append ", expr1 AS k0, expr2 AS k1 ..." - the sort key columns, selected
+     * so the key of the last row read is known
+     */
+    void appendSortColumns(StringBuilder sql) {
+        for (int i = 0; i < sort.expressions.length; i++)
+            sql.append(", ").append(sort.expressions[i]).append(" AS k").append(i);
+    }
+
+    /**
+     * Append the condition for rows after the given key, joined with " WHERE "
+     * or " AND "
+     */
+    void appendAfter(StringBuilder sql, List<Object> params, HistoryDao.Key after, boolean hasWhere) {
+        sql.append(hasWhere ? " AND " : " WHERE ");
+        if (sort.sessionExpressions > 0) {
+            // Implied by the full comparison, but lets SQLite skip earlier
+            // sessions before joining their parts
+            sql.append('(');
+            for (int i = 0; i < sort.sessionExpressions; i++) {
+                sql.append(i == 0 ? "" : ", ").append(sort.expressions[i]);
+                params.add(after.values[i]);
+            }
+            sql.append(") ").append(descending ? "<=" : ">=").append(" (");
+            for (int i = 0; i < sort.sessionExpressions; i++)
+                sql.append(i == 0 ? "?" : ", ?");
+            sql.append(") AND ");
+        }
+        sql.append('(');
+        for (String e : sort.expressions)
+            sql.append(e).append(", ");
+        sql.append("sp.id) ").append(descending ? "<" : ">").append(" (");
+        for (Object v : after.values) {
+            sql.append("?, ");
+            params.add(v);
+        }
+        sql.append("?)");
+        params.add(after.id);
+    }
+
+    /**
+     * Append " ORDER BY ..."
+     */
+    void appendOrderBy(StringBuilder sql) {
+        String dir = descending ? " DESC" : "";
+        sql.append(" ORDER BY ");
+        for (String e : sort.expressions)
+            sql.append(e).append(dir).append(", ");
+        sql.append("sp.id").append(dir);
+    }
+
+    /**
+     * Append " ORDER BY ..." over the k0.. columns of a subquery aliased
+     * alias; the columns keep their collation
+     */
+    void appendOrderBy(StringBuilder sql, String alias, String idColumn) {
+        String dir = descending ? " DESC" : "";
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < sort.expressions.length; i++)
+            sql.append(alias).append(".k").append(i).append(dir).append(", ");
+        sql.append(alias).append('.').append(idColumn).append(dir);
+    }
+
+    public boolean isEmpty() {
+        return search.isEmpty() && (status.isEmpty() || "All".equalsIgnoreCase(status)) && from.isEmpty()
+                && to.isEmpty() && operator.isEmpty() && machine.isEmpty() && partDescription.isEmpty()
+                && partNumber <= 0;
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,109 @@
+package com.magpi.db;
+
+import com.magpi.model.TestPart;
+import com.magpi.util.IntBitmap;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Session part storage that keeps the used part numbers of each part
+ * description in an {@link IntBitmap}, so the next free number behind "Next
+ * Part" does not query the database.
+ *
+ * A description's numbers are loaded from the underlying storage the first
+ * time they are asked for (or by {@link #preload}) and every insert made
+ * through this repository adds to them. Parts purged by ArchivePurgeTool
+ * while the application runs stay marked as used until it is restarted.
+ * Parts saved by other stations sharing the database after the load are not
+ * in the bitmap, so {@link #existsPartNumberForDescription} asks the
+ * underlying storage whenever the bitmap does not have the number.
+ */
+public class IndexedSessionPartRepository implements SessionPartRepository {
+    private final SessionPartRepository delegate;
+    private final Map<String, IntBitmap> used = new HashMap<>();
+
+    public IndexedSessionPartRepository(SessionPartRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long insert(long sessionId, TestPart part) throws SQLException {
+        long id = delegate.insert(sessionId, part);
+        synchronized (this) {
+            IntBitmap numbers = used.get(part.getPartDescription());
+            if (numbers != null)
+                numbers.add(part.getPartNumber());
+        }
+        return id;
+    }
+
+    @Override
+    public void updateStatus(long partId, String status) throws SQLException {
+        delegate.updateStatus(partId, status);
+    }
+
+    @Override
+    public void updateCrackDetected(long partId, boolean crackDetected) throws SQLException {
+        delegate.updateCrackDetected(partId, crackDetected);
+    }
+
+    @Override
+    public void updateCrackImagePath(long partId, String imagePath) throws SQLException {
+        delegate.updateCrackImagePath(partId, imagePath);
+    }
+
+    @Override
+    public void updateDemagStatus(long partId, String demagStatus) throws SQLException {
+        delegate.updateDemagStatus(partId, demagStatus);
+    }
+
+    /**
+     * A number in the bitmap is used; any other is looked up in the
+     * underlying storage and added to the bitmap if another station used it
+     */
+    @Override
+    public boolean existsPartNumberForDescription(int partNumber, String partDescription)
+            throws SQLException {
+        synchronized (this) {
+            if (numbers(partDescription).contains(partNumber))
+                return true;
+        }
+        if (!delegate.existsPartNumberForDescription(partNumber, partDescription))
+            return false;
+        synchronized (this) {
+            numbers(partDescription).add(partNumber);
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachPartNumber(String partDescription, IntConsumer action) throws SQLException {
+        delegate.forEachPartNumber(partDescription, action);
+    }
+
+    @Override
+    public synchronized int nextFreePartNumber(int after, String partDescription) throws SQLException {
+        return SessionPartRepository.nextFree(numbers(partDescription), after);
+    }
+
+    @Override
+    public synchronized void preload(String partDescription) throws SQLException {
+        numbers(partDescription);
+    }
+
+    // Holding the lock while loading keeps an insert from slipping in between
+    // the read and the map update
+    private IntBitmap numbers(String partDescription) throws SQLException {
+        IntBitmap numbers = used.get(partDescription);
+        if (numbers == null) {
+            IntBitmap loaded = new IntBitmap();
+            delegate.forEachPartNumber(partDescription, loaded::add);
+            used.put(partDescription, loaded);
+            numbers = loaded;
+        }
+        return numbers;
+    }
+}
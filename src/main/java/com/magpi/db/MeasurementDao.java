@@ -2,8 +2,23 @@ package com.magpi.db;
 
 import java.sql.*;
 
-public class MeasurementDao {
+public class MeasurementDao implements MeasurementRepository {
+    /** Shots per part x meter held in a measurement_packs row (the UI shows five). */
+    public static final int PACKED_SHOTS = 5;
+
+    /**
+     * Write new shots into the packed layout (-Dmagpi.storage.packed=true).
+     * Reads always go through the measurement_shots view, so both layouts can
+     * coexist in one database and the flag can be switched at any time.
+     */
+    private static final boolean PACKED = Boolean.getBoolean("magpi.storage.packed");
+
     public void insert(long sessionPartId, String meterType, int shotIndex, double current, double duration) throws SQLException {
+        int meter = meterCode(meterType);
+        if (PACKED && meter != 0 && shotIndex >= 0 && shotIndex < PACKED_SHOTS) {
+            insertPacked(sessionPartId, meter, shotIndex, current, duration);
+            return;
+        }
         String sql = "INSERT INTO measurements(session_part_id, meter_type, shot_index, current, duration) VALUES(?,?,?,?,?)";
         try (Connection c = Database.getInstance().getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -15,4 +30,33 @@ public class MeasurementDao {
             ps.executeUpdate();
         }
     }
+
+    private void insertPacked(long sessionPartId, int meter, int shotIndex, double current, double duration) throws SQLException {
+        int slot = shotIndex + 1;
+        String sql = "INSERT INTO measurement_packs(session_part_id, meter, shot_count, current_" + slot + ", duration_" + slot
+                + ", updated_at) VALUES(?,?,?,?,?,strftime('%s','now')) " +
+                "ON CONFLICT(session_part_id, meter) DO UPDATE SET current_" + slot + "=excluded.current_" + slot
+                + ", duration_" + slot + "=excluded.duration_" + slot
+                + ", shot_count=max(shot_count, excluded.shot_count), updated_at=excluded.updated_at";
+        try (Connection c = Database.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, sessionPartId);
+            ps.setInt(2, meter);
+            ps.setInt(3, slot);
+            ps.setDouble(4, current);
+            ps.setDouble(5, duration);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Meter number used by the packed layout (1 = Headshot, 2 = Coilshot), 0 if unknown.
+     */
+    public static int meterCode(String meterType) {
+        if ("Headshot".equals(meterType))
+            return 1;
+        if ("Coilshot".equals(meterType))
+            return 2;
+        return 0;
+    }
 }
@@ -0,0 +1,10 @@
+package com.magpi.db;
+
+import java.sql.SQLException;
+
+/**
+ * Storage for individual shots of a session part
+ */
+public interface MeasurementRepository {
+    void insert(long sessionPartId, String meterType, int shotIndex, double current, double duration) throws SQLException;
+}
@@ -1,10 +1,14 @@
 package com.magpi.db;
 
+import com.magpi.model.AcceptanceRules;
+
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ParameterDao {
+public class ParameterDao implements ParameterRepository {
+    static final String RULE_COLUMNS = "headshot_max, coilshot_max, duration_min, duration_max, required_shots, meters_agree";
+
     public static class Param {
         public final double head;
         public final double coil;
@@ -67,6 +71,75 @@ public class ParameterDao {
         }
     }
 
+    public AcceptanceRules getRules(String partDescription) throws SQLException {
+        int partId = new PartDao().ensurePart(partDescription);
+        String sql = "SELECT " + RULE_COLUMNS + " FROM acceptance_rules WHERE part_id = ?";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, partId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readRules(rs, 1) : AcceptanceRules.NONE;
+            }
+        }
+    }
+
+    public AcceptanceRules getSessionRules(long sessionId) throws SQLException {
+        String sql = "SELECT " + RULE_COLUMNS + " FROM sessions s JOIN acceptance_rules_history h " +
+                "ON h.id = s.acceptance_rules_id WHERE s.id = ?";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, sessionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readRules(rs, 1) : AcceptanceRules.NONE;
+            }
+        }
+    }
+
+    public void saveRules(String partDescription, AcceptanceRules rules) throws SQLException {
+        int partId = new PartDao().ensurePart(partDescription);
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO acceptance_rules(part_id, " + RULE_COLUMNS + ") VALUES(?,?,?,?,?,?,?) " +
+                                "ON CONFLICT(part_id) DO UPDATE SET headshot_max=excluded.headshot_max, " +
+                                "coilshot_max=excluded.coilshot_max, duration_min=excluded.duration_min, " +
+                                "duration_max=excluded.duration_max, required_shots=excluded.required_shots, " +
+                                "meters_agree=excluded.meters_agree, updated_at=CURRENT_TIMESTAMP")) {
+            bindRules(ps, partId, rules);
+            ps.executeUpdate();
+        }
+        // Append to history
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO acceptance_rules_history(part_id, " + RULE_COLUMNS + ") VALUES(?,?,?,?,?,?,?)")) {
+            bindRules(ps, partId, rules);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void bindRules(PreparedStatement ps, int partId, AcceptanceRules rules) throws SQLException {
+        ps.setInt(1, partId);
+        ps.setObject(2, rules.getHeadMax());
+        ps.setObject(3, rules.getCoilMax());
+        ps.setObject(4, rules.getDurationMin());
+        ps.setObject(5, rules.getDurationMax());
+        ps.setInt(6, rules.getRequiredShots());
+        ps.setInt(7, rules.isMetersAgree() ? 1 : 0);
+    }
+
+    /**
+     * Rules from the RULE_COLUMNS starting at the given column
+     */
+    static AcceptanceRules readRules(ResultSet rs, int first) throws SQLException {
+        return new AcceptanceRules(nullableDouble(rs, first), nullableDouble(rs, first + 1),
+                nullableDouble(rs, first + 2), nullableDouble(rs, first + 3), rs.getInt(first + 4),
+                rs.getInt(first + 5) != 0);
+    }
+
+    private static Double nullableDouble(ResultSet rs, int column) throws SQLException {
+        double v = rs.getDouble(column);
+        return rs.wasNull() ? null : v;
+    }
+
     public void removeSpecific(String partDescription, double headshot, double coilshot) throws SQLException {
         int partId = new PartDao().ensurePart(partDescription);
         // Delete only the most recent matching entry from parameter_history
@@ -0,0 +1,38 @@
+package com.magpi.db;
+
+import com.magpi.model.AcceptanceRules;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Storage for the current and historical thresholds of each part description
+ */
+public interface ParameterRepository {
+    ParameterDao.Param getCurrent(String partDescription) throws SQLException;
+
+    void saveCurrent(String partDescription, double head, double coil) throws SQLException;
+
+    /**
+     * Parameter history, most recent first
+     */
+    List<ParameterDao.Param> getHistory(String partDescription) throws SQLException;
+
+    void removeSpecific(String partDescription, double headshot, double coilshot) throws SQLException;
+
+    /**
+     * Acceptance rules of the part, {@link AcceptanceRules#NONE} if it has none
+     */
+    AcceptanceRules getRules(String partDescription) throws SQLException;
+
+    /**
+     * Acceptance rules the session was started with,
+     * {@link AcceptanceRules#NONE} if its part had none then
+     */
+    AcceptanceRules getSessionRules(long sessionId) throws SQLException;
+
+    /**
+     * Save the part's rules as a new version; sessions started from now on use it
+     */
+    void saveRules(String partDescription, AcceptanceRules rules) throws SQLException;
+}
@@ -0,0 +1,69 @@
+package com.magpi.db;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Hands out part numbers for "Next Part" instead of asking the operator.
+ *
+ * Each station (machine ID) reserves a block of {@link #BLOCK_SIZE} numbers
+ * per part description in the database and allocates from it in memory, so
+ * stations sharing one database only meet when a block runs out. Numbers
+ * already used for the description are skipped using the session part
+ * index, so manual entries and older history are never handed out again;
+ * each number is confirmed against the database before it is handed out,
+ * since another station may have typed it in by hand.
+ * A number counts as used once its part is saved; until then the same
+ * number is offered again. After a restart the station resumes its last
+ * block.
+ */
+public class PartNumberAllocator {
+    public static final int BLOCK_SIZE = Math.max(1, Integer.getInteger("magpi.partnumber.block", 100));
+
+    private final PartNumberReservationRepository reservations;
+    private final SessionPartRepository sessionParts;
+    // Next candidate and end of the current block per "description|station"
+    private final Map<String, int[]> cursors = new HashMap<>();
+
+    public PartNumberAllocator(PartNumberReservationRepository reservations, SessionPartRepository sessionParts) {
+        this.reservations = reservations;
+        this.sessionParts = sessionParts;
+    }
+
+    /**
+     * The next free part number of the station's block
+     *
+     * @param taken Numbers to skip besides the saved ones, e.g. parts of the
+     *              live session that could not be saved
+     */
+    public synchronized int next(String partDescription, String station, IntPredicate taken) throws SQLException {
+        String key = partDescription + "|" + station;
+        int[] cursor = cursors.get(key);
+        if (cursor == null) {
+            PartNumberBlock latest = reservations.getLatest(partDescription, station);
+            cursor = latest == null ? new int[] { 1, 0 } : new int[] { latest.getStart(), latest.getEnd() };
+            cursors.put(key, cursor);
+        }
+        while (true) {
+            if (cursor[0] > cursor[1] || cursor[0] < 1) {
+                int floor = sessionParts.nextFreePartNumber(-1, partDescription);
+                PartNumberBlock block = reservations.reserve(partDescription, station, floor, BLOCK_SIZE);
+                cursor[0] = block.getStart();
+                cursor[1] = block.getEnd();
+            }
+            int n = sessionParts.nextFreePartNumber(cursor[0] - 1, partDescription);
+            if (n > cursor[1]) {
+                cursor[0] = n;
+                continue;
+            }
+            if (taken.test(n) || sessionParts.existsPartNumberForDescription(n, partDescription)) {
+                cursor[0] = n + 1;
+                continue;
+            }
+            cursor[0] = n;
+            return n;
+        }
+    }
+}
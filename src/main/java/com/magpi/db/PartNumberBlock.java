@@ -0,0 +1,23 @@
+package com.magpi.db;
+
+/**
+ * A range of part numbers, start to end inclusive, reserved by one station
+ * for one part description
+ */
+public class PartNumberBlock {
+    private final int start;
+    private final int end;
+
+    public PartNumberBlock(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,63 @@
+package com.magpi.db;
+
+import java.sql.*;
+
+public class PartNumberReservationDao implements PartNumberReservationRepository {
+    public PartNumberBlock getLatest(String partDescription, String station) throws SQLException {
+        String sql = "SELECT range_start, range_end FROM part_number_reservations " +
+                "WHERE part_description = ? AND station = ? ORDER BY id DESC LIMIT 1";
+        try (Connection c = Database.getInstance().getConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, partDescription);
+            ps.setString(2, station);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    return new PartNumberBlock(rs.getInt(1), rs.getInt(2));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs as one write transaction on its own connection, so two stations
+     * reserving at once get disjoint blocks
+     */
+    public PartNumberBlock reserve(String partDescription, String station, int floor, int size)
+            throws SQLException {
+        try (Connection c = Database.getInstance().openConnection()) {
+            try (Statement st = c.createStatement()) {
+                st.execute("BEGIN IMMEDIATE");
+            }
+            try {
+                int start = floor;
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT MAX(range_end) FROM part_number_reservations WHERE part_description = ?")) {
+                    ps.setString(1, partDescription);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next() && rs.getObject(1) != null)
+                            start = Math.max(start, rs.getInt(1) + 1);
+                    }
+                }
+                int end = (int) Math.min(Integer.MAX_VALUE, (long) start + size - 1);
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO part_number_reservations" +
+                        "(part_description, station, range_start, range_end) VALUES(?,?,?,?)")) {
+                    ps.setString(1, partDescription);
+                    ps.setString(2, station);
+                    ps.setInt(3, start);
+                    ps.setInt(4, end);
+                    ps.executeUpdate();
+                }
+                try (Statement st = c.createStatement()) {
+                    st.execute("COMMIT");
+                }
+                return new PartNumberBlock(start, end);
+            } catch (SQLException e) {
+                try (Statement st = c.createStatement()) {
+                    st.execute("ROLLBACK");
+                } catch (SQLException ignore) {
+                }
+                throw e;
+            }
+        }
+    }
+}
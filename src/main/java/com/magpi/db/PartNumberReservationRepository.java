@@ -0,0 +1,21 @@
+package com.magpi.db;
+
+import java.sql.SQLException;
+
+/**
+ * Blocks of part numbers reserved by each station (machine ID), so stations
+ * sharing one database hand out numbers without asking each other
+ */
+public interface PartNumberReservationRepository {
+    /**
+     * The block the station reserved last for this part description, or null
+     */
+    PartNumberBlock getLatest(String partDescription, String station) throws SQLException;
+
+    /**
+     * Reserve {@code size} numbers for the station above every block any
+     * station has reserved for this part description, starting no lower than
+     * {@code floor}
+     */
+    PartNumberBlock reserve(String partDescription, String station, int floor, int size) throws SQLException;
+}
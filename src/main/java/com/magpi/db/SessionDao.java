@@ -5,12 +5,14 @@ import com.magpi.model.TestSession;
 import java.sql.*;
 import java.time.format.DateTimeFormatter;
 
-public class SessionDao {
+public class SessionDao implements SessionRepository {
     private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public long insert(TestSession s) throws SQLException {
-        String sql = "INSERT INTO sessions(company_name, machine_id, supervisor_id, operator_name, part_description, headshot_threshold, coilshot_threshold, start_time) " +
-                "VALUES (?,?,?,?,?,?,?,?)";
+        // Keeps the part's current acceptance rules version with the session,
+        // as the thresholds are, so later rule changes do not rejudge it
+        String sql = "INSERT INTO sessions(company_name, machine_id, supervisor_id, operator_name, part_description, headshot_threshold, coilshot_threshold, start_time, acceptance_rules_id) " +
+                "VALUES (?,?,?,?,?,?,?,?,(SELECT MAX(h.id) FROM acceptance_rules_history h JOIN parts p ON p.id = h.part_id WHERE p.description = ?))";
         try (Connection c = Database.getInstance().getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, s.getCompanyName());
@@ -21,6 +23,7 @@ public class SessionDao {
             ps.setDouble(6, s.getHeadShotThreshold());
             ps.setDouble(7, s.getCoilShotThreshold());
             ps.setString(8, s.getStartTime().format(TS));
+            ps.setString(9, s.getPartDescription());
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) return rs.getLong(1);
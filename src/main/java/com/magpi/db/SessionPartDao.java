@@ -3,16 +3,25 @@ package com.magpi.db;
 import com.magpi.model.TestPart;
 
 import java.sql.*;
+import java.util.function.IntConsumer;
 
-public class SessionPartDao {
+public class SessionPartDao implements SessionPartRepository {
+    /**
+     * Save a part with its retest lineage: a retest (recheck count above 0)
+     * points to the latest earlier test of its part number in the session
+     */
     public long insert(long sessionId, TestPart part) throws SQLException {
-        String sql = "INSERT INTO session_parts(session_id, part_number, part_description, status) VALUES(?,?,?,?)";
+        String sql = "INSERT INTO session_parts(session_id, part_number, part_description, status, recheck_count, " +
+                "parent_session_part_id) SELECT ?1, ?2, ?3, ?4, ?5, CASE WHEN ?5 > 0 THEN " +
+                "(SELECT id FROM session_parts WHERE session_id = ?1 AND part_number = ?2 " +
+                "ORDER BY created_at DESC, id DESC LIMIT 1) END";
         try (Connection c = Database.getInstance().getConnection();
                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setLong(1, sessionId);
             ps.setInt(2, part.getPartNumber());
             ps.setString(3, part.getPartDescription());
             ps.setString(4, part.getStatus());
+            ps.setInt(5, part.getRecheckCount());
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next())
@@ -80,4 +89,21 @@ public class SessionPartDao {
             }
         }
     }
+
+    /**
+     * Reads on its own connection so a background load does not share the
+     * live session's connection.
+     */
+    public void forEachPartNumber(String partDescription, IntConsumer action) throws SQLException {
+        String sql = "SELECT part_number FROM session_parts WHERE part_description = ?";
+        try (Connection c = Database.getInstance().openConnection();
+                PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, partDescription);
+            ps.setFetchSize(10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    action.accept(rs.getInt(1));
+            }
+        }
+    }
 }
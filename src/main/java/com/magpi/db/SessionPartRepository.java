@@ -0,0 +1,58 @@
+package com.magpi.db;
+
+import com.magpi.model.TestPart;
+import com.magpi.util.IntBitmap;
+
+import java.sql.SQLException;
+import java.util.function.IntConsumer;
+
+/**
+ * Storage for the parts tested within a session
+ */
+public interface SessionPartRepository {
+    long insert(long sessionId, TestPart part) throws SQLException;
+
+    void updateStatus(long partId, String status) throws SQLException;
+
+    void updateCrackDetected(long partId, boolean crackDetected) throws SQLException;
+
+    void updateCrackImagePath(long partId, String imagePath) throws SQLException;
+
+    void updateDemagStatus(long partId, String demagStatus) throws SQLException;
+
+    /**
+     * Whether the part number has already been used for this part description
+     * in any session.
+     */
+    boolean existsPartNumberForDescription(int partNumber, String partDescription) throws SQLException;
+
+    /**
+     * Pass every part number used for this part description, in any session,
+     * to the action. Numbers may repeat.
+     */
+    void forEachPartNumber(String partDescription, IntConsumer action) throws SQLException;
+
+    /**
+     * Smallest part number above {@code after} not yet used for this part
+     * description. A negative {@code after} continues after the highest
+     * number used (from 1 when none is).
+     */
+    default int nextFreePartNumber(int after, String partDescription) throws SQLException {
+        IntBitmap used = new IntBitmap();
+        forEachPartNumber(partDescription, used::add);
+        return nextFree(used, after);
+    }
+
+    /**
+     * Get ready to answer the two checks above for this part description,
+     * e.g. from a background thread when a session starts
+     */
+    default void preload(String partDescription) throws SQLException {
+    }
+
+    static int nextFree(IntBitmap used, int after) {
+        if (after < 0)
+            after = used.isEmpty() ? 0 : Math.max(0, used.last());
+        return used.nextAbsent(after + 1);
+    }
+}
@@ -0,0 +1,14 @@
+package com.magpi.db;
+
+import com.magpi.model.TestSession;
+
+import java.sql.SQLException;
+
+/**
+ * Storage for test sessions
+ */
+public interface SessionRepository {
+    long insert(TestSession s) throws SQLException;
+
+    void setEndTime(long sessionId, String endTimeStr) throws SQLException;
+}
@@ -0,0 +1,74 @@
+package com.magpi.db;
+
+/**
+ * Storage backend chosen once at startup (singleton).
+ *
+ * -Dmagpi.storage=sqlite (default) uses the DAOs against ~/MagPi/magpi.db;
+ * -Dmagpi.storage=memory uses the same DAOs against an in-memory SQLite
+ * database ({@link Database}), so load tests measure the UI and serial
+ * pipeline without disk I/O while the repositories, history, SPC and every
+ * other reader still see one store.
+ */
+public class Storage {
+    public static final String PROPERTY = "magpi.storage";
+
+    private static Storage instance;
+
+    private final SessionRepository sessions;
+    private final SessionPartRepository sessionParts;
+    private final MeasurementRepository measurements;
+    private final ParameterRepository parameters;
+    private final CatalogRepository catalog;
+    private final CalibrationRepository calibration;
+    private final PartNumberAllocator partNumbers;
+
+    private Storage() {
+        sessions = new SessionDao();
+        sessionParts = new IndexedSessionPartRepository(new SessionPartDao());
+        measurements = new MeasurementDao();
+        parameters = new ParameterDao();
+        catalog = new CatalogDao();
+        calibration = new CalibrationDao();
+        partNumbers = new PartNumberAllocator(new PartNumberReservationDao(), sessionParts);
+    }
+
+    public static synchronized Storage get() {
+        if (instance == null) {
+            instance = new Storage();
+            System.out.println("Storage backend: " + (isInMemory() ? "memory" : "sqlite"));
+        }
+        return instance;
+    }
+
+    public static boolean isInMemory() {
+        return "memory".equalsIgnoreCase(System.getProperty(PROPERTY, "sqlite"));
+    }
+
+    public SessionRepository sessions() {
+        return sessions;
+    }
+
+    public SessionPartRepository sessionParts() {
+        return sessionParts;
+    }
+
+    public MeasurementRepository measurements() {
+        return measurements;
+    }
+
+    public ParameterRepository parameters() {
+        return parameters;
+    }
+
+    public CatalogRepository catalog() {
+        return catalog;
+    }
+
+    public CalibrationRepository calibration() {
+        return calibration;
+    }
+
+    public PartNumberAllocator partNumbers() {
+        return partNumbers;
+    }
+}
@@ -0,0 +1,113 @@
+package com.magpi.db.analytics;
+
+import com.magpi.db.Database;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report and trend queries answered by an in-process DuckDB over the Parquet
+ * store written by {@link ParquetExporter}, reading only the files listed in
+ * analytics_files
+ */
+public class AnalyticsQueries {
+    public static class MonthlyStat {
+        public final String month;
+        public final String partDescription;
+        public final long shots;
+        public final double avgCurrent;
+        public final double minCurrent;
+        public final double maxCurrent;
+        public final double avgDuration;
+
+        public MonthlyStat(String month, String partDescription, long shots, double avgCurrent,
+                double minCurrent, double maxCurrent, double avgDuration) {
+            this.month = month;
+            this.partDescription = partDescription;
+            this.shots = shots;
+            this.avgCurrent = avgCurrent;
+            this.minCurrent = minCurrent;
+            this.maxCurrent = maxCurrent;
+            this.avgDuration = avgDuration;
+        }
+    }
+
+    // Attempts per query; a merge may delete files a query is about to read
+    private static final int ATTEMPTS = 3;
+
+    private final Path root;
+    // Database listing the store's files, or null for the application's
+    private final Connection sqlite;
+
+    public AnalyticsQueries() {
+        this(ParquetExporter.DEFAULT_ROOT, null);
+    }
+
+    /**
+     * @param sqlite database whose analytics_files lists the store's files
+     */
+    public AnalyticsQueries(Path root, Connection sqlite) {
+        this.root = root;
+        this.sqlite = sqlite;
+    }
+
+    /**
+     * Current statistics per month and part description for one meter type.
+     *
+     * @param meterType "Headshot" or "Coilshot"
+     * @param fromMonth first month (YYYY-MM), inclusive
+     * @param toMonth   last month (YYYY-MM), inclusive
+     */
+    public List<MonthlyStat> monthlyCurrentByDescription(String meterType, String fromMonth, String toMonth)
+            throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            List<String> files = liveFiles();
+            List<MonthlyStat> list = new ArrayList<>();
+            if (files.isEmpty())
+                return list;
+            String sql = "SELECT month, part_description, count(*), avg(\"current\"), min(\"current\"), " +
+                    "max(\"current\"), avg(duration) FROM " + source(files) + " " +
+                    "WHERE meter_type = ? AND month BETWEEN ? AND ? " +
+                    "GROUP BY month, part_description ORDER BY month, part_description";
+            try (Connection c = DriverManager.getConnection("jdbc:duckdb:");
+                    PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, meterType);
+                ps.setString(2, fromMonth);
+                ps.setString(3, toMonth);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(new MonthlyStat(rs.getString(1), rs.getString(2), rs.getLong(3),
+                                rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7)));
+                    }
+                }
+                return list;
+            } catch (SQLException e) {
+                // Read the file list again in case a merge replaced it
+                if (attempt == ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * The given store files as a DuckDB table expression; the month column
+     * comes from the directory names, so month filters skip whole files.
+     */
+    private String source(List<String> files) {
+        return "read_parquet(" + ParquetExporter.fileList(root, files) + ", hive_partitioning = true)";
+    }
+
+    private List<String> liveFiles() throws SQLException {
+        if (sqlite != null)
+            return ParquetExporter.liveFiles(sqlite);
+        try (Connection c = Database.getInstance().openConnection()) {
+            return ParquetExporter.liveFiles(c);
+        }
+    }
+
+    public boolean hasData() throws SQLException {
+        return !liveFiles().isEmpty();
+    }
+}
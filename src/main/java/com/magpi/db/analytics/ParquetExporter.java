@@ -0,0 +1,400 @@
+package com.magpi.db.analytics;
+
+import com.magpi.db.Database;
+import com.magpi.db.Storage;
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies closed sessions from SQLite into a columnar Parquet store, one
+ * directory per month (MagPi/analytics/month=YYYY-MM/*.parquet), so trend
+ * queries over years of history can be answered by DuckDB without scanning
+ * the row-oriented SQLite tables. Each shot becomes one row, denormalized
+ * with its session and part columns.
+ *
+ * Exported session ids are recorded in the SQLite table analytics_exports,
+ * and the files readers may use in analytics_files, in the same transaction.
+ * A month's files are merged into one once there are enough of them; the
+ * merged file replaces them in analytics_files in one transaction, so a
+ * reader sees either the old files or the merged one. Files written by a
+ * batch or merge that did not commit are removed when the next export
+ * starts. Parquet files outlive the archive tool's purge, so trends keep
+ * covering history that is no longer in magpi.db.
+ */
+public class ParquetExporter {
+    public static final Path DEFAULT_ROOT = Paths.get(System.getProperty("user.home"), "MagPi", "analytics");
+
+    // Sessions per export batch
+    private static final int BATCH = 500;
+    // Files in one month directory before they are merged into one
+    private static final int COMPACT_AT = 16;
+
+    private static ParquetExporter instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "parquet-exporter");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private ParquetExporter() {
+    }
+
+    public static synchronized ParquetExporter getInstance() {
+        if (instance == null) {
+            instance = new ParquetExporter();
+        }
+        return instance;
+    }
+
+    /**
+     * Export all closed, not yet exported sessions on the background thread.
+     * Does nothing with the in-memory storage backend.
+     */
+    public void exportPendingAsync() {
+        if (Storage.isInMemory())
+            return;
+        executor.submit(() -> {
+            try {
+                int n = exportPending();
+                if (n > 0)
+                    System.out.println("Exported " + n + " session(s) to " + DEFAULT_ROOT);
+            } catch (Exception e) {
+                System.err.println("Parquet export failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Export all pending sessions of the application database to the default
+     * root on the calling thread.
+     *
+     * @return number of sessions exported
+     */
+    public synchronized int exportPending() throws SQLException, IOException {
+        // A connection of our own: export() toggles auto-commit and the
+        // try-with-resources closes it, neither of which may happen to the
+        // application's shared connection from the exporter thread
+        try (Connection sqlite = Database.getInstance().openConnection()) {
+            return export(sqlite, DEFAULT_ROOT);
+        }
+    }
+
+    /**
+     * Export all closed sessions of the given SQLite database that are not in
+     * analytics_exports yet. Switches auto-commit off while recording each
+     * batch, so pass a connection no other thread uses.
+     *
+     * @return number of sessions exported
+     */
+    public static int export(Connection sqlite, Path root) throws SQLException, IOException {
+        removeUnlisted(sqlite, root);
+        int total = 0;
+        try (Connection duck = DriverManager.getConnection("jdbc:duckdb:")) {
+            try (Statement st = duck.createStatement()) {
+                st.execute("CREATE TABLE stage (" +
+                        "session_id BIGINT, start_time VARCHAR, operator_name VARCHAR, machine_id VARCHAR, " +
+                        "part_description VARCHAR, headshot_threshold DOUBLE, coilshot_threshold DOUBLE, " +
+                        "session_part_id BIGINT, part_number INTEGER, status VARCHAR, " +
+                        "meter_type VARCHAR, shot_index INTEGER, \"current\" DOUBLE, duration DOUBLE)");
+            }
+            List<Long> ids;
+            while (!(ids = pendingSessions(sqlite)).isEmpty()) {
+                exportBatch(sqlite, (DuckDBConnection) duck, root, ids);
+                total += ids.size();
+            }
+        }
+        return total;
+    }
+
+    private static List<Long> pendingSessions(Connection sqlite) throws SQLException {
+        String sql = "SELECT id FROM sessions WHERE end_time IS NOT NULL " +
+                "AND id NOT IN (SELECT session_id FROM analytics_exports) ORDER BY id LIMIT " + BATCH;
+        List<Long> ids = new ArrayList<>();
+        try (Statement st = sqlite.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next())
+                ids.add(rs.getLong(1));
+        }
+        return ids;
+    }
+
+    private static void exportBatch(Connection sqlite, DuckDBConnection duck, Path root, List<Long> ids)
+            throws SQLException, IOException {
+        long first = ids.get(0);
+        long last = ids.get(ids.size() - 1);
+        // Read exactly the sessions that are recorded below; a session of the
+        // id range that closes meanwhile (e.g. at another station) waits for
+        // the next batch instead of being written without being recorded
+        try (Statement st = sqlite.createStatement()) {
+            st.execute("CREATE TEMP TABLE IF NOT EXISTS export_batch(id INTEGER PRIMARY KEY)");
+            st.execute("DELETE FROM export_batch");
+        }
+        try (PreparedStatement ps = sqlite.prepareStatement("INSERT INTO export_batch(id) VALUES(?)")) {
+            for (long id : ids) {
+                ps.setLong(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        String sql = "SELECT s.id, substr(s.start_time, 1, 7), s.start_time, s.operator_name, s.machine_id, " +
+                "COALESCE(p.part_description, s.part_description), s.headshot_threshold, s.coilshot_threshold, " +
+                "p.id, p.part_number, p.status, m.meter_type, m.shot_index, m.current, m.duration " +
+                "FROM sessions s JOIN session_parts p ON p.session_id = s.id " +
+                "JOIN measurement_shots m ON m.session_part_id = p.id " +
+                "WHERE s.id IN (SELECT id FROM export_batch) " +
+                "ORDER BY 2, 6, s.id, p.id, m.meter_type, m.shot_index";
+
+        List<String> months = new ArrayList<>();
+        List<String> written = new ArrayList<>();
+        try (PreparedStatement ps = sqlite.prepareStatement(sql)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                String month = null;
+                DuckDBAppender appender = null;
+                try {
+                    while (rs.next()) {
+                        String rowMonth = rs.getString(2);
+                        if (!rowMonth.equals(month)) {
+                            if (appender != null) {
+                                appender.close();
+                                written.add(writeMonth(duck, root, month, first, last));
+                            }
+                            month = rowMonth;
+                            months.add(month);
+                            appender = duck.createAppender(DuckDBConnection.DEFAULT_SCHEMA, "stage");
+                        }
+                        appender.beginRow();
+                        appender.append(rs.getLong(1));
+                        appender.append(rs.getString(3));
+                        appender.append(rs.getString(4));
+                        appender.append(rs.getString(5));
+                        appender.append(rs.getString(6));
+                        appender.append(rs.getDouble(7));
+                        appender.append(rs.getDouble(8));
+                        appender.append(rs.getLong(9));
+                        appender.append(rs.getInt(10));
+                        appender.append(rs.getString(11));
+                        appender.append(rs.getString(12));
+                        appender.append(rs.getInt(13));
+                        appender.append(rs.getDouble(14));
+                        appender.append(rs.getDouble(15));
+                        appender.endRow();
+                    }
+                } finally {
+                    if (appender != null)
+                        appender.close();
+                }
+                if (month != null)
+                    written.add(writeMonth(duck, root, month, first, last));
+            }
+        }
+
+        // Record the batch, including sessions that had no shots, and publish its files
+        boolean auto = sqlite.getAutoCommit();
+        sqlite.setAutoCommit(false);
+        try (PreparedStatement ps = sqlite.prepareStatement(
+                "INSERT OR IGNORE INTO analytics_exports(session_id, month) " +
+                        "SELECT id, substr(start_time, 1, 7) FROM sessions WHERE id = ?");
+                PreparedStatement files = sqlite.prepareStatement(
+                        "INSERT OR REPLACE INTO analytics_files(path, month) VALUES(?,?)")) {
+            for (long id : ids) {
+                ps.setLong(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            for (int i = 0; i < written.size(); i++) {
+                files.setString(1, written.get(i));
+                files.setString(2, months.get(i));
+                files.addBatch();
+            }
+            files.executeBatch();
+            sqlite.commit();
+        } catch (SQLException e) {
+            sqlite.rollback();
+            throw e;
+        } finally {
+            sqlite.setAutoCommit(auto);
+        }
+
+        for (String month : months) {
+            compactIfNeeded(sqlite, duck, root, month);
+        }
+    }
+
+    /**
+     * Write the staged rows of one month. The file name is derived from the
+     * batch's session id range; the file is not read until the batch is
+     * recorded, and a batch that was not is removed by the next export.
+     *
+     * @return the file's path relative to the root
+     */
+    private static String writeMonth(DuckDBConnection duck, Path root, String month, long first, long last)
+            throws SQLException, IOException {
+        String name = "month=" + month + "/sessions-" + first + "-" + last + ".parquet";
+        Path target = root.resolve(name);
+        Files.createDirectories(target.getParent());
+        copyToParquet(duck, "stage", target);
+        try (Statement st = duck.createStatement()) {
+            st.execute("DELETE FROM stage");
+        }
+        return name;
+    }
+
+    /**
+     * Merge a month's files into one when there are enough of them. The
+     * merged file replaces them in analytics_files in one transaction before
+     * they are deleted, so readers never see both.
+     */
+    private static void compactIfNeeded(Connection sqlite, DuckDBConnection duck, Path root, String month)
+            throws SQLException, IOException {
+        List<String> files = new ArrayList<>();
+        try (PreparedStatement ps = sqlite.prepareStatement("SELECT path FROM analytics_files WHERE month = ?")) {
+            ps.setString(1, month);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    files.add(rs.getString(1));
+            }
+        }
+        if (files.size() < COMPACT_AT)
+            return;
+        String merged = "month=" + month + "/merged-" + System.currentTimeMillis() + ".parquet";
+        // The month comes from the directory name when read, not from the file
+        copyToParquet(duck, "read_parquet(" + fileList(root, files) + ", hive_partitioning = false)",
+                root.resolve(merged));
+
+        boolean auto = sqlite.getAutoCommit();
+        sqlite.setAutoCommit(false);
+        try (PreparedStatement delete = sqlite.prepareStatement("DELETE FROM analytics_files WHERE path = ?");
+                PreparedStatement insert = sqlite.prepareStatement(
+                        "INSERT INTO analytics_files(path, month) VALUES(?,?)")) {
+            for (String file : files) {
+                delete.setString(1, file);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+            insert.setString(1, merged);
+            insert.setString(2, month);
+            insert.executeUpdate();
+            sqlite.commit();
+        } catch (SQLException e) {
+            sqlite.rollback();
+            throw e;
+        } finally {
+            sqlite.setAutoCommit(auto);
+        }
+
+        for (String file : files) {
+            try {
+                Files.deleteIfExists(root.resolve(file));
+            } catch (IOException e) {
+                // No longer listed; the next export removes it
+                System.err.println("Failed to delete merged Parquet file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Files readers may use, relative to the root
+     */
+    static List<String> liveFiles(Connection sqlite) throws SQLException {
+        List<String> files = new ArrayList<>();
+        try (Statement st = sqlite.createStatement();
+                ResultSet rs = st.executeQuery("SELECT path FROM analytics_files ORDER BY path")) {
+            while (rs.next())
+                files.add(rs.getString(1));
+        }
+        return files;
+    }
+
+    /**
+     * The files as a DuckDB list literal of absolute paths
+     */
+    static String fileList(Path root, List<String> files) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String file : files) {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append('\'').append(sqlPath(root.resolve(file))).append('\'');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Delete files of the store that are not in analytics_files: those of a
+     * batch or merge that did not commit, merged originals whose delete
+     * failed, and temporary files. A store written before analytics_files
+     * existed is adopted as it is.
+     */
+    private static void removeUnlisted(Connection sqlite, Path root) throws SQLException, IOException {
+        if (!Files.isDirectory(root))
+            return;
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> months = Files.newDirectoryStream(root, "month=*")) {
+            for (Path dir : months) {
+                if (!Files.isDirectory(dir))
+                    continue;
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                    for (Path f : files) {
+                        if (Files.isRegularFile(f))
+                            found.add(f);
+                    }
+                }
+            }
+        }
+        List<String> live = liveFiles(sqlite);
+        if (live.isEmpty() && hasExports(sqlite)) {
+            try (PreparedStatement ps = sqlite.prepareStatement(
+                    "INSERT OR IGNORE INTO analytics_files(path, month) VALUES(?,?)")) {
+                for (Path f : found) {
+                    if (!f.getFileName().toString().endsWith(".parquet"))
+                        continue;
+                    String dir = f.getParent().getFileName().toString();
+                    ps.setString(1, dir + "/" + f.getFileName());
+                    ps.setString(2, dir.substring("month=".length()));
+                    ps.executeUpdate();
+                }
+            }
+            live = liveFiles(sqlite);
+        }
+        Set<String> keep = new HashSet<>(live);
+        for (Path f : found) {
+            String name = f.getParent().getFileName() + "/" + f.getFileName();
+            if (!keep.contains(name))
+                Files.deleteIfExists(f);
+        }
+    }
+
+    private static boolean hasExports(Connection sqlite) throws SQLException {
+        try (Statement st = sqlite.createStatement();
+                ResultSet rs = st.executeQuery("SELECT EXISTS (SELECT 1 FROM analytics_exports)")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * COPY to a temporary name and rename, so readers never see a partial file
+     */
+    private static void copyToParquet(DuckDBConnection duck, String source, Path target)
+            throws SQLException, IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Statement st = duck.createStatement()) {
+            st.execute("COPY (SELECT * FROM " + source + ") TO '" + sqlPath(tmp) + "' "
+                    + "(FORMAT PARQUET, COMPRESSION ZSTD)");
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String sqlPath(Path p) {
+        return p.toAbsolutePath().toString().replace('\\', '/').replace("'", "''");
+    }
+}
@@ -0,0 +1,113 @@
+package com.magpi.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link AcceptanceRules} compiled with a pair of thresholds. Unchecked
+ * bounds become infinities, so judging a shot is four comparisons on
+ * primitive fields with no null checks or lookups, and judging a part reads
+ * the running aggregates of its {@link ShotBuffer}s.
+ *
+ * Immutable; one instance is shared by every shot and part it judges.
+ */
+public final class AcceptanceEvaluator {
+    private final double headMin;
+    private final double headMax;
+    private final double coilMin;
+    private final double coilMax;
+    private final double durationMin;
+    private final double durationMax;
+    private final int requiredShots;
+    private final boolean metersAgree;
+
+    AcceptanceEvaluator(AcceptanceRules rules, double headMin, double coilMin) {
+        this.headMin = headMin;
+        this.coilMin = coilMin;
+        this.headMax = orElse(rules.getHeadMax(), Double.POSITIVE_INFINITY);
+        this.coilMax = orElse(rules.getCoilMax(), Double.POSITIVE_INFINITY);
+        this.durationMin = orElse(rules.getDurationMin(), Double.NEGATIVE_INFINITY);
+        this.durationMax = orElse(rules.getDurationMax(), Double.POSITIVE_INFINITY);
+        this.requiredShots = rules.getRequiredShots();
+        this.metersAgree = rules.isMetersAgree();
+    }
+
+    /**
+     * Only the thresholds: a shot passes when current >= threshold
+     */
+    public static AcceptanceEvaluator of(double headMin, double coilMin) {
+        return AcceptanceRules.NONE.compile(headMin, coilMin);
+    }
+
+    private static double orElse(Double value, double unchecked) {
+        return value != null ? value : unchecked;
+    }
+
+    /**
+     * Whether one shot is within the current limits of its meter and the
+     * duration window. A missing (NaN) duration is not judged.
+     */
+    public boolean shotPasses(boolean headshot, double current, double duration) {
+        double min = headshot ? headMin : coilMin;
+        double max = headshot ? headMax : coilMax;
+        return current >= min && current <= max && !(duration < durationMin) && !(duration > durationMax);
+    }
+
+    /**
+     * Whether every shot of a part passes, each meter has the required number
+     * of shots and, if required, both meters have the same number
+     */
+    public boolean partPasses(ShotBuffer headshots, ShotBuffer coilshots) {
+        return shotsPass(headshots, headMin, headMax) && shotsPass(coilshots, coilMin, coilMax)
+                && countsPass(headshots.size(), coilshots.size());
+    }
+
+    public boolean countsPass(int headShots, int coilShots) {
+        return headShots >= requiredShots && coilShots >= requiredShots
+                && (!metersAgree || headShots == coilShots);
+    }
+
+    private boolean shotsPass(ShotBuffer shots, double min, double max) {
+        return shots.isEmpty() || (shots.getMin() >= min && shots.getMax() <= max
+                && shots.getMinDuration() >= durationMin && shots.getMaxDuration() <= durationMax);
+    }
+
+    public double getHeadMin() {
+        return headMin;
+    }
+
+    public double getCoilMin() {
+        return coilMin;
+    }
+
+    /** +Infinity if unchecked */
+    public double getHeadMax() {
+        return headMax;
+    }
+
+    /** +Infinity if unchecked */
+    public double getCoilMax() {
+        return coilMax;
+    }
+
+    /**
+     * Evaluators compiled so far, one per rule set and pair of thresholds.
+     * Not thread-safe; use one per thread or per load.
+     */
+    public static class Cache {
+        private final Map<AcceptanceRules, List<AcceptanceEvaluator>> compiled = new IdentityHashMap<>();
+
+        public AcceptanceEvaluator get(AcceptanceRules rules, double headMin, double coilMin) {
+            List<AcceptanceEvaluator> list = compiled.computeIfAbsent(rules, k -> new ArrayList<>(1));
+            for (AcceptanceEvaluator e : list) {
+                if (Double.compare(e.headMin, headMin) == 0 && Double.compare(e.coilMin, coilMin) == 0)
+                    return e;
+            }
+            AcceptanceEvaluator e = rules.compile(headMin, coilMin);
+            list.add(e);
+            return e;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.magpi.model;
+
+/**
+ * Acceptance rules of a part description on top of its thresholds. The
+ * thresholds stay the minimum current of each meter; these add a maximum
+ * current, a duration window, a minimum number of shots per meter and
+ * whether both meters must have fired the same number of shots. A null
+ * bound is not checked.
+ *
+ * Rules are compiled with the session's thresholds into an
+ * {@link AcceptanceEvaluator}, which the live table and the history share.
+ */
+public class AcceptanceRules {
+    /** No rules beyond the thresholds */
+    public static final AcceptanceRules NONE = new AcceptanceRules(null, null, null, null, 0, false);
+
+    private final Double headMax;
+    private final Double coilMax;
+    private final Double durationMin;
+    private final Double durationMax;
+    private final int requiredShots;
+    private final boolean metersAgree;
+
+    public AcceptanceRules(Double headMax, Double coilMax, Double durationMin, Double durationMax,
+            int requiredShots, boolean metersAgree) {
+        this.headMax = headMax;
+        this.coilMax = coilMax;
+        this.durationMin = durationMin;
+        this.durationMax = durationMax;
+        this.requiredShots = Math.max(0, requiredShots);
+        this.metersAgree = metersAgree;
+    }
+
+    public Double getHeadMax() {
+        return headMax;
+    }
+
+    public Double getCoilMax() {
+        return coilMax;
+    }
+
+    public Double getDurationMin() {
+        return durationMin;
+    }
+
+    public Double getDurationMax() {
+        return durationMax;
+    }
+
+    public int getRequiredShots() {
+        return requiredShots;
+    }
+
+    public boolean isMetersAgree() {
+        return metersAgree;
+    }
+
+    /**
+     * Compile with the minimum currents (the session's thresholds)
+     */
+    public AcceptanceEvaluator compile(double headMin, double coilMin) {
+        return new AcceptanceEvaluator(this, headMin, coilMin);
+    }
+}
@@ -0,0 +1,145 @@
+package com.magpi.model;
+
+import java.util.Arrays;
+
+/**
+ * The shots of one meter for one part, kept in primitive arrays.
+ *
+ * Max, min, mean and count of the currents, and the duration range, are
+ * updated as shots are added, so status logic and reports read them without
+ * walking the shots.
+ */
+public class ShotBuffer {
+    public static final byte HEADSHOT = 0;
+    public static final byte COILSHOT = 1;
+
+    // A part normally gets five shots per meter
+    private static final int INITIAL_CAPACITY = 5;
+
+    private final byte channel;
+    private double[] currents = new double[INITIAL_CAPACITY];
+    private double[] durations = new double[INITIAL_CAPACITY];
+    private long[] arrivals = new long[INITIAL_CAPACITY]; // epoch millis
+    private int count;
+    private double max = Double.NaN;
+    private double min = Double.NaN;
+    private double sum;
+    private double minDuration = Double.NaN;
+    private double maxDuration = Double.NaN;
+
+    public ShotBuffer(byte channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Channel id for a meter type, -1 if it is neither meter
+     */
+    public static byte channelOf(String meterType) {
+        if ("Headshot".equals(meterType))
+            return HEADSHOT;
+        if ("Coilshot".equals(meterType))
+            return COILSHOT;
+        return -1;
+    }
+
+    public static String meterTypeOf(byte channel) {
+        return channel == HEADSHOT ? "Headshot" : "Coilshot";
+    }
+
+    public void add(double current, double duration) {
+        add(current, duration, System.currentTimeMillis());
+    }
+
+    public void add(double current, double duration, long arrivalMillis) {
+        if (count == currents.length) {
+            int capacity = count * 2;
+            currents = Arrays.copyOf(currents, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            arrivals = Arrays.copyOf(arrivals, capacity);
+        }
+        currents[count] = current;
+        durations[count] = duration;
+        arrivals[count] = arrivalMillis;
+        count++;
+
+        if (count == 1) {
+            max = current;
+            min = current;
+            minDuration = duration;
+            maxDuration = duration;
+        } else {
+            max = Math.max(max, current);
+            min = Math.min(min, current);
+            minDuration = Math.min(minDuration, duration);
+            maxDuration = Math.max(maxDuration, duration);
+        }
+        sum += current;
+    }
+
+    public byte getChannel() {
+        return channel;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getCurrent(int index) {
+        checkIndex(index);
+        return currents[index];
+    }
+
+    public double getDuration(int index) {
+        checkIndex(index);
+        return durations[index];
+    }
+
+    public long getArrivalMillis(int index) {
+        checkIndex(index);
+        return arrivals[index];
+    }
+
+    /**
+     * Highest current, NaN when there are no shots
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Lowest current, NaN when there are no shots
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Shortest duration, NaN when there are no shots
+     */
+    public double getMinDuration() {
+        return minDuration;
+    }
+
+    /**
+     * Longest duration, NaN when there are no shots
+     */
+    public double getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * Mean current, NaN when there are no shots
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+    }
+}
@@ -1,8 +1,6 @@
 package com.magpi.model;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Represents a part being tested with its measurements and status
@@ -12,19 +10,21 @@ public class TestPart {
     private int partNumber;
     private String partDescription;
     private LocalDateTime testTime;
-    private List<Measurement> headshotMeasurements;
-    private List<Measurement> coilshotMeasurements;
+    private final ShotBuffer headshots;
+    private final ShotBuffer coilshots;
     private String status; // "PASS" or "ERROR"
     private int recheckCount; // 0 for original, >0 for rechecks
     private String crackImagePath; // Optional path to captured crack image
     private String demagStatus; // DeMag confirmation status ("Done")
+    private TestSession session; // Session that indexes this part, once added
+    private int index; // Position in the session's part list
 
     public TestPart(int partNumber, String partDescription) {
         this.partNumber = partNumber;
         this.partDescription = partDescription;
         this.testTime = LocalDateTime.now();
-        this.headshotMeasurements = new ArrayList<>();
-        this.coilshotMeasurements = new ArrayList<>();
+        this.headshots = new ShotBuffer(ShotBuffer.HEADSHOT);
+        this.coilshots = new ShotBuffer(ShotBuffer.COILSHOT);
         this.status = "";
         this.recheckCount = 0;
         this.crackImagePath = null;
@@ -32,11 +32,20 @@ public class TestPart {
     }
 
     public void addHeadshotMeasurement(Measurement measurement) {
-        headshotMeasurements.add(measurement);
+        headshots.add(measurement.getCurrent(), measurement.getDuration());
     }
 
     public void addCoilshotMeasurement(Measurement measurement) {
-        coilshotMeasurements.add(measurement);
+        coilshots.add(measurement.getCurrent(), measurement.getDuration());
+    }
+
+    void attach(TestSession session, int index) {
+        this.session = session;
+        this.index = index;
+    }
+
+    int getIndex() {
+        return index;
     }
 
     public Long getId() {
@@ -45,6 +54,8 @@ public class TestPart {
 
     public void setId(Long id) {
         this.id = id;
+        if (session != null)
+            session.partChanged(this, status);
     }
 
     public int getPartNumber() {
@@ -59,12 +70,12 @@ public class TestPart {
         return testTime;
     }
 
-    public List<Measurement> getHeadshotMeasurements() {
-        return headshotMeasurements;
+    public ShotBuffer getHeadshots() {
+        return headshots;
     }
 
-    public List<Measurement> getCoilshotMeasurements() {
-        return coilshotMeasurements;
+    public ShotBuffer getCoilshots() {
+        return coilshots;
     }
 
     public String getStatus() {
@@ -72,7 +83,10 @@ public class TestPart {
     }
 
     public void setStatus(String status) {
+        String old = this.status;
         this.status = status;
+        if (session != null)
+            session.partChanged(this, old);
     }
 
     public int getRecheckCount() {
@@ -81,6 +95,8 @@ public class TestPart {
 
     public void setRecheckCount(int recheckCount) {
         this.recheckCount = recheckCount;
+        if (session != null)
+            session.partChanged(this, status);
     }
 
     public String getCrackImagePath() {
@@ -107,10 +123,7 @@ public class TestPart {
      */
 
     public Measurement getHeadshotMeasurement(int index) {
-        if (index >= 0 && index < headshotMeasurements.size()) {
-            return headshotMeasurements.get(index);
-        }
-        return null;
+        return measurement(headshots, index);
     }
 
     /**
@@ -120,8 +133,13 @@ public class TestPart {
      * @return The measurement or null if out of bounds
      */
     public Measurement getCoilshotMeasurement(int index) {
-        if (index >= 0 && index < coilshotMeasurements.size()) {
-            return coilshotMeasurements.get(index);
+        return measurement(coilshots, index);
+    }
+
+    private static Measurement measurement(ShotBuffer shots, int index) {
+        if (index >= 0 && index < shots.size()) {
+            return new Measurement(ShotBuffer.meterTypeOf(shots.getChannel()),
+                    shots.getCurrent(index), shots.getDuration(index));
         }
         return null;
     }
@@ -130,19 +148,13 @@ public class TestPart {
      * Gets the highest current value from headshot measurements
      */
     public double getHighestHeadshotCurrent() {
-        return headshotMeasurements.stream()
-                .mapToDouble(Measurement::getCurrent)
-                .max()
-                .orElse(0);
+        return headshots.isEmpty() ? 0 : headshots.getMax();
     }
 
     /**
      * Gets the highest current value from coilshot measurements
      */
     public double getHighestCoilshotCurrent() {
-        return coilshotMeasurements.stream()
-                .mapToDouble(Measurement::getCurrent)
-                .max()
-                .orElse(0);
+        return coilshots.isEmpty() ? 0 : coilshots.getMax();
     }
 }
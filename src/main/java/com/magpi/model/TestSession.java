@@ -3,12 +3,25 @@ package com.magpi.model;
 import com.magpi.ui.HistoryPage;
 
 import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a testing session with session information and the collection of
- * parts tested
+ * parts tested.
+ *
+ * Parts are indexed by part number and counted by status as they are added
+ * and changed, so lookups and counts do not walk the part list. Each change
+ * also publishes an immutable {@link Snapshot} that other threads (reports,
+ * metrics) can read without locking the thread that runs the test.
+ *
+ * Only the most recent parts are kept in memory; {@link #evictOldest} drops
+ * older, already saved parts, which stay in the database and the history.
+ * Counts and part numbers still cover the whole session.
  */
 public class TestSession {
     private Long id; // DB id
@@ -24,6 +37,21 @@ public class TestSession {
     private List<TestPart> parts;
     private HistoryPage historyPanel;
 
+    // Parts dropped from the front of parts by evictOldest
+    private int evicted;
+
+    // Indexes kept by addPart and TestPart's setters
+    private final Map<Integer, TestPart> latestByNumber = new HashMap<>();
+    // Every part number of the session, evicted ones included
+    private final Map<Integer, Integer> rechecksByNumber = new HashMap<>();
+    private final Map<String, Integer> statusCounts = new HashMap<>();
+
+    // Part states in chunks of CHUNK; a status change copies only its chunk
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private PartState[][] chunks = new PartState[0][];
+    private volatile Snapshot snapshot = new Snapshot(0, 0, chunks, Collections.emptyMap());
+
     public TestSession() {
         this.startTime = LocalDateTime.now();
         this.parts = new ArrayList<>();
@@ -31,8 +59,93 @@ public class TestSession {
         this.coilShotThreshold = 0.0;
     }
 
-    public void addPart(TestPart part) {
+    public synchronized void addPart(TestPart part) {
+        int index = evicted + parts.size();
         parts.add(part);
+        part.attach(this, index);
+        latestByNumber.put(part.getPartNumber(), part);
+        countRecheck(part);
+        countStatus(part.getStatus(), 1);
+
+        int chunk = index >> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = java.util.Arrays.copyOf(chunks, chunk + 1);
+            chunks[chunk] = new PartState[CHUNK];
+        }
+        // Slots past a published snapshot's size are never read through it
+        chunks[chunk][index & (CHUNK - 1)] = new PartState(part);
+        publish();
+    }
+
+    /**
+     * Called by TestPart when its id, status or recheck count changes
+     */
+    synchronized void partChanged(TestPart part, String oldStatus) {
+        if (oldStatus != null && !oldStatus.equals(part.getStatus())) {
+            countStatus(oldStatus, -1);
+            countStatus(part.getStatus(), 1);
+        }
+        countRecheck(part);
+
+        int index = part.getIndex();
+        int chunk = index >> CHUNK_BITS;
+        PartState[] copy = chunks[chunk].clone();
+        copy[index & (CHUNK - 1)] = new PartState(part);
+        chunks = chunks.clone();
+        chunks[chunk] = copy;
+        publish();
+    }
+
+    private void countStatus(String status, int delta) {
+        if (status != null)
+            statusCounts.merge(status, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private void countRecheck(TestPart part) {
+        rechecksByNumber.merge(part.getPartNumber(), part.getRecheckCount(), Math::max);
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(evicted, evicted + parts.size(), chunks, new HashMap<>(statusCounts));
+    }
+
+    /**
+     * Drops the oldest parts so that at most {@code keep} remain in memory.
+     * Only parts saved to the database (with an id) are dropped, and eviction
+     * stops at the first unsaved one.
+     *
+     * @return The number of parts dropped from the front of {@link #getParts()}
+     */
+    public synchronized int evictOldest(int keep) {
+        int count = 0;
+        int excess = parts.size() - keep;
+        while (count < excess && parts.get(count).getId() != null) {
+            TestPart part = parts.get(count);
+            latestByNumber.remove(part.getPartNumber(), part);
+            part.attach(null, 0);
+            count++;
+        }
+        if (count == 0)
+            return 0;
+        parts.subList(0, count).clear();
+        evicted += count;
+        // Release chunks that hold only evicted parts; published snapshots keep
+        // reading the old array
+        int firstFull = (evicted - count) >> CHUNK_BITS;
+        if (firstFull < evicted >> CHUNK_BITS)
+            chunks = chunks.clone();
+        for (int c = firstFull; c < evicted >> CHUNK_BITS; c++)
+            chunks[c] = null;
+        publish();
+        return count;
+    }
+
+    /**
+     * The session's parts and counts as of the last change. Safe to read from
+     * any thread.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
     }
 
     /**
@@ -40,34 +153,40 @@ public class TestSession {
      * This is important when there are retests (e.g. 3, 3-1, 3-2) – we always
      * want the latest instance rather than the original.
      */
-    public TestPart getPartByNumber(int partNumber) {
-        for (int i = parts.size() - 1; i >= 0; i--) {
-            TestPart part = parts.get(i);
-            if (part.getPartNumber() == partNumber) {
-                return part;
-            }
-        }
-        return null;
+    public synchronized TestPart getPartByNumber(int partNumber) {
+        return latestByNumber.get(partNumber);
+    }
+
+    /**
+     * Whether the part number was used in this session, including parts no
+     * longer kept in memory
+     */
+    public synchronized boolean containsPartNumber(int partNumber) {
+        return rechecksByNumber.containsKey(partNumber);
+    }
+
+    /**
+     * Highest recheck count of the given base part number, 0 if it was never
+     * retested
+     */
+    public synchronized int getRecheckCount(int partNumber) {
+        return rechecksByNumber.getOrDefault(partNumber, 0);
     }
 
     public void endTest() {
         this.endTime = LocalDateTime.now();
     }
 
-    public int getTotalPartsCount() {
-        return parts.size();
+    public synchronized int getTotalPartsCount() {
+        return evicted + parts.size();
     }
 
-    public int getAcceptedPartsCount() {
-        return (int) parts.stream()
-                .filter(part -> "Accept".equals(part.getStatus()))
-                .count();
+    public synchronized int getAcceptedPartsCount() {
+        return statusCounts.getOrDefault("Accept", 0);
     }
 
-    public int getRejectedPartsCount() {
-        return (int) parts.stream()
-                .filter(part -> "Reject".equals(part.getStatus()))
-                .count();
+    public synchronized int getRejectedPartsCount() {
+        return statusCounts.getOrDefault("Reject", 0);
     }
 
     // Getters and setters
@@ -143,8 +262,12 @@ public class TestSession {
         return endTime;
     }
 
+    /**
+     * The parts kept in memory, in test order. Read-only; add parts with
+     * {@link #addPart}
+     */
     public List<TestPart> getParts() {
-        return parts;
+        return Collections.unmodifiableList(parts);
     }
 
     public HistoryPage getHistoryPanel() {
@@ -155,4 +278,91 @@ public class TestSession {
         this.historyPanel = historyPanel;
     }
 
-}
\ No newline at end of file
+    /**
+     * A part's identity and status at the time of a snapshot
+     */
+    public static final class PartState {
+        private final Long id;
+        private final int partNumber;
+        private final int recheckCount;
+        private final String status;
+
+        PartState(TestPart part) {
+            this.id = part.getId();
+            this.partNumber = part.getPartNumber();
+            this.recheckCount = part.getRecheckCount();
+            this.status = part.getStatus();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public int getPartNumber() {
+            return partNumber;
+        }
+
+        public int getRecheckCount() {
+            return recheckCount;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Immutable view of the session's in-memory parts and its status counts
+     */
+    public static final class Snapshot {
+        private final int first;
+        private final int end;
+        private final PartState[][] chunks;
+        private final Map<String, Integer> statusCounts;
+
+        Snapshot(int first, int end, PartState[][] chunks, Map<String, Integer> statusCounts) {
+            this.first = first;
+            this.end = end;
+            this.chunks = chunks;
+            this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        }
+
+        /**
+         * Parts tested in the session, including evicted ones
+         */
+        public int getTotalPartsCount() {
+            return end;
+        }
+
+        /**
+         * Number of parts whose status is exactly the given text
+         */
+        public int count(String status) {
+            return statusCounts.getOrDefault(status, 0);
+        }
+
+        public Map<String, Integer> getStatusCounts() {
+            return statusCounts;
+        }
+
+        /**
+         * The parts that were in memory, in test order
+         */
+        public List<PartState> getParts() {
+            return new AbstractList<PartState>() {
+                @Override
+                public PartState get(int index) {
+                    if (index < 0 || index >= size())
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                    int i = first + index;
+                    return chunks[i >> CHUNK_BITS][i & (CHUNK - 1)];
+                }
+
+                @Override
+                public int size() {
+                    return end - first;
+                }
+            };
+        }
+    }
+}
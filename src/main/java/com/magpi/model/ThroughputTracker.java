@@ -0,0 +1,124 @@
+package com.magpi.model;
+
+/**
+ * Rolling line-speed figures of a session, kept from event timestamps in
+ * fixed-size rings: parts per hour and shots per minute over the latest
+ * parts and shots, and the mean cycle time (Next Part to the part's last
+ * shot) and the time spent on retests over the latest completed parts.
+ *
+ * Each event and each read is O(1): the rings keep running sums and drop
+ * their oldest entry when full. Rates are measured up to the time they are
+ * read, so they fall while the line stands still.
+ */
+public class ThroughputTracker {
+    public static final int PART_WINDOW = 50;
+    public static final int SHOT_WINDOW = 200;
+
+    private final Ring partStarts = new Ring(PART_WINDOW);
+    private final Ring shots = new Ring(SHOT_WINDOW);
+    // Cycle time of each completed part, and the same for retests only (0 for first tests)
+    private final Ring cycles = new Ring(PART_WINDOW);
+    private final Ring retestCycles = new Ring(PART_WINDOW);
+
+    private long partStart = -1;
+    private long lastShot = -1;
+    private boolean retest;
+
+    /**
+     * Timestamps and values in a ring with a running sum of the values
+     */
+    private static final class Ring {
+        private final long[] times;
+        private final long[] values;
+        private int next;
+        private int count;
+        private long sum;
+
+        Ring(int capacity) {
+            times = new long[capacity];
+            values = new long[capacity];
+        }
+
+        void add(long time, long value) {
+            if (count == times.length)
+                sum -= values[next];
+            else
+                count++;
+            times[next] = time;
+            values[next] = value;
+            sum += value;
+            next = next + 1 == times.length ? 0 : next + 1;
+        }
+
+        long oldestTime() {
+            return times[count == times.length ? next : 0];
+        }
+
+        /** Events per millisecond from the oldest event up to now, 0 before two events */
+        double ratePerMilli(long now) {
+            if (count < 2)
+                return 0;
+            long span = now - oldestTime();
+            return span <= 0 ? 0 : (count - 1) / (double) span;
+        }
+    }
+
+    /**
+     * A part (or a retest of one) was started; completes the previous part
+     */
+    public synchronized void partStarted(long millis, boolean isRetest) {
+        completePart();
+        partStarts.add(millis, 1);
+        partStart = millis;
+        retest = isRetest;
+    }
+
+    public synchronized void shot(long millis) {
+        shots.add(millis, 1);
+        if (partStart >= 0)
+            lastShot = millis;
+    }
+
+    /**
+     * Count the current part's cycle now, e.g. when the session ends
+     */
+    public synchronized void completePart() {
+        if (partStart >= 0 && lastShot >= partStart) {
+            long cycle = lastShot - partStart;
+            cycles.add(lastShot, cycle);
+            retestCycles.add(lastShot, retest ? cycle : 0);
+        }
+        partStart = -1;
+        lastShot = -1;
+    }
+
+    public synchronized double getPartsPerHour(long now) {
+        return partStarts.ratePerMilli(now) * 3_600_000d;
+    }
+
+    public synchronized double getShotsPerMinute(long now) {
+        return shots.ratePerMilli(now) * 60_000d;
+    }
+
+    /**
+     * Mean time from Next Part to the part's last shot, NaN before the first
+     * completed part
+     */
+    public synchronized double getMeanCycleMillis() {
+        return cycles.count == 0 ? Double.NaN : cycles.sum / (double) cycles.count;
+    }
+
+    /**
+     * Time spent on retests among the latest completed parts
+     */
+    public synchronized long getRetestMillis() {
+        return retestCycles.sum;
+    }
+
+    /**
+     * Share of the latest parts' cycle time spent on retests, 0 to 1
+     */
+    public synchronized double getRetestShare() {
+        return cycles.sum == 0 ? 0 : retestCycles.sum / (double) cycles.sum;
+    }
+}
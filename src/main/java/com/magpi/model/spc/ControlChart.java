@@ -0,0 +1,295 @@
+package com.magpi.model.spc;
+
+/**
+ * X̄-R control chart of one part description and meter, kept incrementally.
+ *
+ * Each tested part is a subgroup of its shots. The process mean and the
+ * overall spread come from Welford accumulators over every shot; the
+ * within-subgroup sigma is the running mean of R/d2, so subgroups of
+ * different sizes combine. Control limits for a subgroup of n shots are
+ * mean ± 3·sigma/√n, and R is charted against D3·d2·sigma and D4·d2·sigma.
+ *
+ * Each new subgroup is checked against the limits it arrives to with the
+ * Western Electric rules, using the last 8 subgroups only, so adding a
+ * part costs the same however long the history is. The latest
+ * {@link #KEPT_POINTS} subgroups are kept for drawing.
+ *
+ * Not thread-safe; {@link SpcEngine} guards its charts.
+ */
+public class ControlChart {
+    /** One point beyond 3 sigma */
+    public static final int RULE_BEYOND_3_SIGMA = 1;
+    /** Two of three successive points beyond 2 sigma on the same side */
+    public static final int RULE_2_OF_3 = 1 << 1;
+    /** Four of five successive points beyond 1 sigma on the same side */
+    public static final int RULE_4_OF_5 = 1 << 2;
+    /** Eight successive points on the same side of the center line */
+    public static final int RULE_8_SAME_SIDE = 1 << 3;
+    /** Range above its upper control limit */
+    public static final int RULE_RANGE = 1 << 4;
+    static final int RULE_COUNT = 5;
+
+    public static final int KEPT_POINTS = 100;
+    // Subgroups needed before points are judged
+    static final int MIN_SUBGROUPS = 5;
+
+    // Control chart constants by subgroup size, index n (2..10)
+    private static final double[] D2 = { 0, 0, 1.128, 1.693, 2.059, 2.326, 2.534, 2.704, 2.847, 2.970, 3.078 };
+    private static final double[] D3 = { 0, 0, 0, 0, 0, 0, 0, 0.076, 0.136, 0.184, 0.223 };
+    private static final double[] D4 = { 0, 0, 3.267, 2.574, 2.282, 2.114, 2.004, 1.924, 1.864, 1.816, 1.777 };
+
+    /**
+     * A charted subgroup
+     */
+    public static final class Point {
+        private final int partNumber;
+        private final double mean;
+        private final double range;
+        private final int size;
+        private final int violations;
+
+        Point(int partNumber, double mean, double range, int size, int violations) {
+            this.partNumber = partNumber;
+            this.mean = mean;
+            this.range = range;
+            this.size = size;
+            this.violations = violations;
+        }
+
+        public int getPartNumber() {
+            return partNumber;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getRange() {
+            return range;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /** RULE_* bits broken by this point */
+        public int getViolations() {
+            return violations;
+        }
+    }
+
+    // Welford over individual shots
+    private long shots;
+    private double mean;
+    private double m2;
+    // Running mean of R/d2 over subgroups of two or more shots
+    private long subgroups;
+    private double sigmaWithin;
+
+    private double lowerSpec = Double.NEGATIVE_INFINITY;
+    private double upperSpec = Double.POSITIVE_INFINITY;
+
+    // Standardized means of the last 8 judged subgroups
+    private final double[] recentZ = new double[8];
+    private int recentNext;
+    private int recentCount;
+    private final long[] violationCounts = new long[RULE_COUNT];
+
+    private final Point[] points = new Point[KEPT_POINTS];
+    private int pointsNext;
+    private int pointsCount;
+
+    /**
+     * Add a part's shots. NaN values (missing shots) are skipped.
+     *
+     * @param lowerSpec Lowest acceptable current (the threshold)
+     * @param upperSpec Highest acceptable current, +Infinity if unchecked
+     */
+    public void add(int partNumber, double[] currents, int count, double lowerSpec, double upperSpec) {
+        this.lowerSpec = lowerSpec;
+        this.upperSpec = upperSpec;
+
+        int n = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double x = currents[i];
+            if (Double.isNaN(x))
+                continue;
+            n++;
+            sum += x;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        if (n < 2) {
+            // Feeds the process mean but has no range to chart
+            for (int i = 0; i < count; i++) {
+                if (!Double.isNaN(currents[i]))
+                    addShot(currents[i]);
+            }
+            return;
+        }
+        double subgroupMean = sum / n;
+        double range = max - min;
+
+        // Judge against the limits before this subgroup moves them
+        int violations = subgroups >= MIN_SUBGROUPS ? judge(subgroupMean, range, n) : 0;
+
+        for (int i = 0; i < count; i++) {
+            if (!Double.isNaN(currents[i]))
+                addShot(currents[i]);
+        }
+        subgroups++;
+        sigmaWithin += (range / d2(n) - sigmaWithin) / subgroups;
+
+        points[pointsNext] = new Point(partNumber, subgroupMean, range, n, violations);
+        pointsNext = (pointsNext + 1) % KEPT_POINTS;
+        if (pointsCount < KEPT_POINTS)
+            pointsCount++;
+    }
+
+    private void addShot(double x) {
+        shots++;
+        double delta = x - mean;
+        mean += delta / shots;
+        m2 += delta * (x - mean);
+    }
+
+    private int judge(double subgroupMean, double range, int n) {
+        int violations = 0;
+        double sigma = sigmaWithin;
+        if (sigma > 0) {
+            double z = (subgroupMean - mean) / (sigma / Math.sqrt(n));
+            recentZ[recentNext] = z;
+            recentNext = (recentNext + 1) % recentZ.length;
+            if (recentCount < recentZ.length)
+                recentCount++;
+
+            if (Math.abs(z) > 3)
+                violations |= RULE_BEYOND_3_SIGMA;
+            if (countSameSide(z, 3, 2) >= 2)
+                violations |= RULE_2_OF_3;
+            if (countSameSide(z, 5, 1) >= 4)
+                violations |= RULE_4_OF_5;
+            if (recentCount == recentZ.length && countSameSide(z, 8, 0) == 8)
+                violations |= RULE_8_SAME_SIDE;
+            if (range > upperRangeLimit(n))
+                violations |= RULE_RANGE;
+        }
+        for (int r = 0; r < RULE_COUNT; r++) {
+            if ((violations & (1 << r)) != 0)
+                violationCounts[r]++;
+        }
+        return violations;
+    }
+
+    /**
+     * How many of the last {@code window} points, including the newest z,
+     * lie beyond {@code sigmas} on the newest point's side
+     */
+    private int countSameSide(double z, int window, double sigmas) {
+        if (z == 0 || Math.abs(z) <= sigmas && sigmas > 0)
+            return 0;
+        int found = 0;
+        int available = Math.min(window, recentCount);
+        for (int k = 1; k <= available; k++) {
+            double v = recentZ[(recentNext - k + recentZ.length) % recentZ.length];
+            if (Math.signum(v) == Math.signum(z) && Math.abs(v) > sigmas)
+                found++;
+        }
+        return found;
+    }
+
+    private static double d2(int n) {
+        return D2[Math.min(n, D2.length - 1)];
+    }
+
+    public long getShotCount() {
+        return shots;
+    }
+
+    public long getSubgroupCount() {
+        return subgroups;
+    }
+
+    /** Process mean (center line of the X̄ chart), NaN before any shot */
+    public double getMean() {
+        return shots == 0 ? Double.NaN : mean;
+    }
+
+    /** Within-subgroup sigma, R̄/d2; NaN before any subgroup */
+    public double getSigmaWithin() {
+        return subgroups == 0 ? Double.NaN : sigmaWithin;
+    }
+
+    /** Sample standard deviation of every shot, NaN before two shots */
+    public double getSigmaOverall() {
+        return shots < 2 ? Double.NaN : Math.sqrt(m2 / (shots - 1));
+    }
+
+    public double upperControlLimit(int n) {
+        return getMean() + 3 * getSigmaWithin() / Math.sqrt(n);
+    }
+
+    public double lowerControlLimit(int n) {
+        return getMean() - 3 * getSigmaWithin() / Math.sqrt(n);
+    }
+
+    /** Center line of the R chart for subgroups of n */
+    public double rangeCenter(int n) {
+        return d2(n) * getSigmaWithin();
+    }
+
+    public double upperRangeLimit(int n) {
+        int i = Math.min(n, D4.length - 1);
+        return D4[i] * D2[i] * getSigmaWithin();
+    }
+
+    public double lowerRangeLimit(int n) {
+        int i = Math.min(n, D3.length - 1);
+        return D3[i] * D2[i] * getSigmaWithin();
+    }
+
+    public double getLowerSpec() {
+        return lowerSpec;
+    }
+
+    public double getUpperSpec() {
+        return upperSpec;
+    }
+
+    /** (USL - LSL) / 6 sigma; NaN unless both limits are set */
+    public double getCp() {
+        if (Double.isInfinite(lowerSpec) || Double.isInfinite(upperSpec))
+            return Double.NaN;
+        return (upperSpec - lowerSpec) / (6 * getSigmaWithin());
+    }
+
+    /** Distance from the mean to the nearer set limit over 3 sigma */
+    public double getCpk() {
+        double sigma = getSigmaWithin();
+        double cpk = Double.NaN;
+        if (!Double.isInfinite(lowerSpec))
+            cpk = (getMean() - lowerSpec) / (3 * sigma);
+        if (!Double.isInfinite(upperSpec)) {
+            double cpu = (upperSpec - getMean()) / (3 * sigma);
+            cpk = Double.isNaN(cpk) ? cpu : Math.min(cpk, cpu);
+        }
+        return cpk;
+    }
+
+    /** Subgroups that broke the rule, one of the RULE_* bits */
+    public long getViolationCount(int rule) {
+        return violationCounts[Integer.numberOfTrailingZeros(rule)];
+    }
+
+    /** The latest subgroups, oldest first */
+    public Point[] getPoints() {
+        Point[] copy = new Point[pointsCount];
+        int start = pointsCount < KEPT_POINTS ? 0 : pointsNext;
+        for (int i = 0; i < pointsCount; i++)
+            copy[i] = points[(start + i) % KEPT_POINTS];
+        return copy;
+    }
+}
@@ -0,0 +1,205 @@
+package com.magpi.model.spc;
+
+import com.magpi.db.Database;
+import com.magpi.db.HistoryColumns;
+import com.magpi.db.HistoryDao;
+import com.magpi.db.HistoryFilter;
+import com.magpi.model.AcceptanceEvaluator;
+import com.magpi.model.ShotBuffer;
+import com.magpi.model.TestPart;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link ControlChart}s per part description and meter type (singleton).
+ *
+ * The charts are filled once from history in one streaming pass in date
+ * order ({@link #backfill}), reading the parts saved up to the cutoff
+ * ({@link #takeCutoff}). Parts finished afterwards are added as they end;
+ * parts that end before the backfill is done wait and are added after it,
+ * so each chart sees its parts in order and none twice. TablePage takes the
+ * cutoff before its session saves a part, so the backfill never reads a
+ * part whose shots are still arriving, and then starts the backfill. A
+ * failed backfill leaves the charts empty and can be retried.
+ */
+public class SpcEngine {
+    private static final int BACKFILL_PAGE = 2000;
+
+    private static final SpcEngine instance = new SpcEngine();
+
+    // "description|meter", sorted for the chart picker
+    private final Map<String, ControlChart> charts = new TreeMap<>();
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean backfillStarted;
+    private boolean backfilled;
+    // Highest session part id read by the backfill, -1 until taken
+    private long backfillCutoff = -1;
+
+    private SpcEngine() {
+    }
+
+    public static SpcEngine get() {
+        return instance;
+    }
+
+    /**
+     * Fix the parts the backfill reads to those saved so far; only the first
+     * call counts. A single indexed lookup, cheap enough for the EDT.
+     */
+    public void takeCutoff() throws SQLException {
+        synchronized (this) {
+            if (backfillCutoff >= 0)
+                return;
+        }
+        long cutoff = 0;
+        try (Connection c = Database.getInstance().openConnection();
+                Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM session_parts")) {
+            if (rs.next())
+                cutoff = rs.getLong(1);
+        }
+        synchronized (this) {
+            if (backfillCutoff < 0)
+                backfillCutoff = cutoff;
+        }
+    }
+
+    /**
+     * Fill the charts from history, once; later calls return at once.
+     * Blocks while another thread's backfill runs. If it fails the charts
+     * are emptied and the next call tries again. Call off the EDT.
+     */
+    public void backfill() throws SQLException {
+        synchronized (this) {
+            while (backfillStarted && !backfilled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (backfilled)
+                return;
+            backfillStarted = true;
+        }
+        boolean done = false;
+        try {
+            takeCutoff();
+            long limit;
+            synchronized (this) {
+                limit = backfillCutoff;
+            }
+            double[] currents = new double[HistoryDao.SHOTS];
+            new HistoryDao().forEachPage(new HistoryFilter(), BACKFILL_PAGE, page -> {
+                synchronized (this) {
+                    for (int r = 0; r < page.size(); r++) {
+                        if (page.id(r) <= limit)
+                            addRow(page, r, currents);
+                    }
+                }
+            });
+            done = true;
+        } finally {
+            synchronized (this) {
+                if (done) {
+                    backfilled = true;
+                    for (Runnable r : pending)
+                        r.run();
+                    pending.clear();
+                } else {
+                    // Drop what was read so a retry does not count it twice;
+                    // finished parts stay queued for it
+                    charts.clear();
+                    backfillStarted = false;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void addRow(HistoryColumns page, int r, double[] currents) {
+        for (int m = 0; m < 2; m++) {
+            boolean headshot = m == 0;
+            int count = 0;
+            for (int shot = 0; shot < HistoryDao.SHOTS; shot++) {
+                double x = page.current(r, headshot, shot);
+                if (!Double.isNaN(x))
+                    currents[count++] = x;
+            }
+            if (count == 0)
+                continue;
+            chart(page.partDescription(r), headshot).add(page.partNumber(r), currents, count,
+                    page.threshold(r, headshot), page.maxCurrent(r, headshot));
+        }
+    }
+
+    /**
+     * Add a finished part of the live session. Costs O(shots) and nothing
+     * more however long the history is.
+     */
+    public synchronized void partFinished(TestPart part, AcceptanceEvaluator acceptance) {
+        Long id = part.getId();
+        double[] head = currents(part.getHeadshots());
+        double[] coil = currents(part.getCoilshots());
+        Runnable add = () -> {
+            if (id != null && id <= backfillCutoff)
+                return; // saved before the cutoff, so read by the backfill
+            if (head.length > 0)
+                chart(part.getPartDescription(), true).add(part.getPartNumber(), head, head.length,
+                        acceptance.getHeadMin(), acceptance.getHeadMax());
+            if (coil.length > 0)
+                chart(part.getPartDescription(), false).add(part.getPartNumber(), coil, coil.length,
+                        acceptance.getCoilMin(), acceptance.getCoilMax());
+        };
+        if (!backfilled)
+            pending.add(add);
+        else
+            add.run();
+    }
+
+    private static double[] currents(ShotBuffer shots) {
+        double[] values = new double[shots.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = shots.getCurrent(i);
+        return values;
+    }
+
+    private ControlChart chart(String partDescription, boolean headshot) {
+        return charts.computeIfAbsent(key(partDescription, headshot), k -> new ControlChart());
+    }
+
+    private static String key(String partDescription, boolean headshot) {
+        return (partDescription == null ? "" : partDescription) + "|" + ShotBuffer.meterTypeOf(
+                headshot ? ShotBuffer.HEADSHOT : ShotBuffer.COILSHOT);
+    }
+
+    /**
+     * Part descriptions with a chart, sorted
+     */
+    public synchronized List<String> getPartDescriptions() {
+        List<String> descriptions = new ArrayList<>();
+        for (String key : charts.keySet()) {
+            String description = key.substring(0, key.lastIndexOf('|'));
+            if (descriptions.isEmpty() || !descriptions.get(descriptions.size() - 1).equals(description))
+                descriptions.add(description);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Run the action with the chart while no part is being added, e.g. to
+     * paint it. The chart is null if there is no data for it.
+     */
+    public synchronized <T> T withChart(String partDescription, boolean headshot,
+            java.util.function.Function<ControlChart, T> action) {
+        return action.apply(charts.get(key(partDescription, headshot)));
+    }
+}
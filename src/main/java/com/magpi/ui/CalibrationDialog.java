@@ -1,6 +1,7 @@
 package com.magpi.ui;
 
-import com.magpi.db.CalibrationDao;
+import com.magpi.db.CalibrationRepository;
+import com.magpi.db.Storage;
 import com.magpi.model.CalibrationLog;
 
 import javax.swing.*;
@@ -50,7 +51,7 @@ public class CalibrationDialog extends JDialog {
      */
     private void loadTodaysCalibration() {
         try {
-            CalibrationDao dao = new CalibrationDao();
+            CalibrationRepository dao = Storage.get().calibration();
             CalibrationLog todaysLog = dao.getCalibrationForDate(LocalDate.now());
 
             if (todaysLog != null) {
@@ -175,7 +176,7 @@ public class CalibrationDialog extends JDialog {
                     pieGaugeStatus);
 
             // Save to database
-            CalibrationDao dao = new CalibrationDao();
+            CalibrationRepository dao = Storage.get().calibration();
             dao.insert(log);
 
             calibrationSaved = true;
@@ -0,0 +1,255 @@
+package com.magpi.ui;
+
+import com.magpi.model.spc.ControlChart;
+import com.magpi.model.spc.SpcEngine;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * X̄ and R control charts of a part description and meter, with Cp/Cpk and
+ * Western Electric rule counts, read from {@link SpcEngine}
+ */
+public class ControlChartDialog extends JDialog {
+    private static final Color LIMIT = new Color(231, 76, 60);
+    private static final Color CENTER = new Color(39, 174, 96);
+    private static final Color LINE = new Color(41, 128, 185);
+
+    private final JComboBox<String> descriptionCombo = new JComboBox<>();
+    private final JComboBox<String> meterCombo = new JComboBox<>(new String[] { "Headshot", "Coilshot" });
+    private final JLabel statsLabel = new JLabel(" ");
+    private final JLabel statusLabel = new JLabel(" ");
+    private final ChartPanel meanChart = new ChartPanel("X-bar (part mean)");
+    private final ChartPanel rangeChart = new ChartPanel("R (part range)");
+    // Whether the history has been read; Refresh retries a failed read
+    private boolean loaded;
+
+    /**
+     * What one chart draws, copied from the engine so painting does not hold
+     * its lock
+     */
+    private static class Series {
+        double[] values = new double[0];
+        int[] violations = new int[0];
+        double center = Double.NaN;
+        double upper = Double.NaN;
+        double lower = Double.NaN;
+    }
+
+    public ControlChartDialog(Frame owner) {
+        super(owner, "Control Charts", true);
+        setupUI();
+        setSize(900, 650);
+        setLocationRelativeTo(owner);
+        load();
+    }
+
+    private void setupUI() {
+        setLayout(new BorderLayout());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        controls.add(new JLabel("Part Description:"));
+        controls.add(descriptionCombo);
+        controls.add(new JLabel("Meter:"));
+        controls.add(meterCombo);
+        descriptionCombo.addActionListener(e -> refresh());
+        meterCombo.addActionListener(e -> refresh());
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> {
+            if (loaded)
+                refresh();
+            else
+                load();
+        });
+        controls.add(refreshButton);
+
+        JPanel north = new JPanel(new BorderLayout());
+        north.add(controls, BorderLayout.NORTH);
+        statsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        statsLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        north.add(statsLabel, BorderLayout.SOUTH);
+        add(north, BorderLayout.NORTH);
+
+        JPanel charts = new JPanel(new GridLayout(2, 1, 0, 10));
+        charts.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        charts.add(meanChart);
+        charts.add(rangeChart);
+        add(charts, BorderLayout.CENTER);
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Fill the engine from history if that has not happened yet, then list
+     * the part descriptions
+     */
+    private void load() {
+        statusLabel.setText("Reading history...");
+        new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() throws Exception {
+                SpcEngine.get().backfill();
+                return SpcEngine.get().getPartDescriptions();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<String> descriptions = get();
+                    loaded = true;
+                    descriptionCombo.removeAllItems();
+                    for (String description : descriptions)
+                        descriptionCombo.addItem(description);
+                    statusLabel.setText("Latest " + ControlChart.KEPT_POINTS + " parts shown; limits and "
+                            + "capability use the whole history");
+                    refresh();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    // No charts rather than ones missing part of the history
+                    statusLabel.setText("Failed to read history: " + cause.getMessage() + " - press Refresh to retry");
+                }
+            }
+        }.execute();
+    }
+
+    private void refresh() {
+        String description = (String) descriptionCombo.getSelectedItem();
+        boolean headshot = "Headshot".equals(meterCombo.getSelectedItem());
+        Series means = new Series();
+        Series ranges = new Series();
+        String stats = description == null ? " " : SpcEngine.get().withChart(description, headshot, chart -> {
+            if (chart == null)
+                return "No shots recorded for this meter";
+            ControlChart.Point[] points = chart.getPoints();
+            means.values = new double[points.length];
+            means.violations = new int[points.length];
+            ranges.values = new double[points.length];
+            ranges.violations = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                means.values[i] = points[i].getMean();
+                means.violations[i] = points[i].getViolations() & ~ControlChart.RULE_RANGE;
+                ranges.values[i] = points[i].getRange();
+                ranges.violations[i] = points[i].getViolations() & ControlChart.RULE_RANGE;
+            }
+            // Limits for the latest subgroup size
+            int n = points.length == 0 ? 2 : points[points.length - 1].getSize();
+            means.center = chart.getMean();
+            means.upper = chart.upperControlLimit(n);
+            means.lower = chart.lowerControlLimit(n);
+            ranges.center = chart.rangeCenter(n);
+            ranges.upper = chart.upperRangeLimit(n);
+            ranges.lower = chart.lowerRangeLimit(n);
+            return String.format("<html>Subgroups: %,d &nbsp; Shots: %,d &nbsp; Mean: %.2f &nbsp; "
+                    + "Sigma (within): %.3f &nbsp; Sigma (overall): %.3f &nbsp; Cp: %s &nbsp; Cpk: %s<br>"
+                    + "Rule violations - beyond 3 sigma: %d, 2 of 3 beyond 2 sigma: %d, "
+                    + "4 of 5 beyond 1 sigma: %d, 8 on one side: %d, range: %d</html>",
+                    chart.getSubgroupCount(), chart.getShotCount(), chart.getMean(), chart.getSigmaWithin(),
+                    chart.getSigmaOverall(), format(chart.getCp()), format(chart.getCpk()),
+                    chart.getViolationCount(ControlChart.RULE_BEYOND_3_SIGMA),
+                    chart.getViolationCount(ControlChart.RULE_2_OF_3),
+                    chart.getViolationCount(ControlChart.RULE_4_OF_5),
+                    chart.getViolationCount(ControlChart.RULE_8_SAME_SIDE),
+                    chart.getViolationCount(ControlChart.RULE_RANGE));
+        });
+        statsLabel.setText(stats);
+        meanChart.setSeries(means);
+        rangeChart.setSeries(ranges);
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "-" : String.format("%.2f", value);
+    }
+
+    /**
+     * A line chart of one series with its center line and control limits;
+     * points that broke a rule are drawn red
+     */
+    private static class ChartPanel extends JPanel {
+        private static final int PAD = 40;
+
+        private final String title;
+        private Series series = new Series();
+
+        ChartPanel(String title) {
+            this.title = title;
+            setBackground(Color.WHITE);
+            setBorder(BorderFactory.createLineBorder(new Color(180, 180, 180)));
+        }
+
+        void setSeries(Series series) {
+            this.series = series;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString(title, 8, 16);
+
+            double[] values = series.values;
+            if (values.length == 0) {
+                g2.dispose();
+                return;
+            }
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double v : values) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            for (double v : new double[] { series.center, series.upper, series.lower }) {
+                if (!Double.isNaN(v)) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+            if (max - min < 1e-9) {
+                max += 1;
+                min -= 1;
+            }
+            double margin = (max - min) * 0.05;
+            min -= margin;
+            max += margin;
+
+            int w = getWidth() - 2 * PAD;
+            int top = PAD / 2;
+            int h = getHeight() - PAD;
+
+            drawLimit(g2, series.upper, "UCL", LIMIT, min, max, top, h);
+            drawLimit(g2, series.center, "CL", CENTER, min, max, top, h);
+            drawLimit(g2, series.lower, "LCL", LIMIT, min, max, top, h);
+
+            int prevX = -1;
+            int prevY = -1;
+            for (int i = 0; i < values.length; i++) {
+                int x = PAD + (values.length == 1 ? w / 2 : (int) ((long) i * w / (values.length - 1)));
+                int y = top + (int) ((max - values[i]) / (max - min) * h);
+                if (prevX >= 0) {
+                    g2.setColor(LINE);
+                    g2.drawLine(prevX, prevY, x, y);
+                }
+                g2.setColor(series.violations[i] != 0 ? LIMIT : LINE);
+                g2.fillOval(x - 3, y - 3, 6, 6);
+                prevX = x;
+                prevY = y;
+            }
+            g2.dispose();
+        }
+
+        private void drawLimit(Graphics2D g2, double value, String label, Color color, double min, double max,
+                int top, int h) {
+            if (Double.isNaN(value))
+                return;
+            int y = top + (int) ((max - value) / (max - min) * h);
+            g2.setColor(color);
+            g2.drawLine(PAD, y, getWidth() - PAD, y);
+            g2.drawString(String.format("%s %.2f", label, value), getWidth() - PAD - 70, y - 3);
+        }
+    }
+}
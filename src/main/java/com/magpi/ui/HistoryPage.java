@@ -1,17 +1,22 @@
 package com.magpi.ui;
 
+import com.magpi.db.HistoryColumns;
+import com.magpi.db.HistoryDao;
+import com.magpi.db.HistoryFilter;
 import com.magpi.model.TestSession;
 import com.magpi.ui.table.CustomCellRenderer;
+import com.magpi.ui.table.PagedHistoryRowSorter;
+import com.magpi.ui.table.PagedHistoryTableModel;
 import com.magpi.ui.table.PersistentColorTableModel;
+import com.magpi.ui.util.PartIdCell;
 import com.magpi.util.PdfExporter;
 // Video recordings feature temporarily disabled
 // import com.magpi.video.RecordedVideosPage;
 // import com.magpi.video.VLCJVideoStream;
 
 import javax.swing.*;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 /**
  * Panel for displaying historical test data
@@ -19,34 +24,38 @@ import java.util.regex.Pattern;
 public class HistoryPage extends JPanel {
     private TestSession session;
 
-    // Visible aggregated table: Part Test History
+    // Visible aggregated table: Part Test History, paged from the database
     private JTable partHistoryTable;
-    private PersistentColorTableModel partHistoryTableModel;
-
-    // Hidden measurement tables reused for details dialog and full PDF export
-    private JTable headshotHistoryTable;
-    private JTable coilshotHistoryTable;
-    private PersistentColorTableModel headshotHistoryTableModel;
-    private PersistentColorTableModel coilshotHistoryTableModel;
+    private PagedHistoryTableModel partHistoryTableModel;
+    // Shown while history pages are read in the background
+    private JProgressBar loadProgressBar;
 
     // private RecordedVideosPage recordedVideosPage; // video feature disabled
 
-    // Per-part metadata aligned to model rows (index matches DB order / hidden
-    // tables)
-    private java.util.List<java.util.Map<String, Object>> parts = new java.util.ArrayList<>();
-
-    private java.util.List<String> operators = new java.util.ArrayList<>();
-    private java.util.List<String> supervisors = new java.util.ArrayList<>();
-    private java.util.List<String> dates = new java.util.ArrayList<>();
-    private java.util.List<String> companies = new java.util.ArrayList<>();
-    private java.util.List<String> machines = new java.util.ArrayList<>();
-    private java.util.List<String> partDescriptions = new java.util.ArrayList<>();
-    private java.util.List<String> startTimes = new java.util.ArrayList<>();
-    private java.util.List<String> endTimes = new java.util.ArrayList<>();
-    private java.util.List<Double> headThresholds = new java.util.ArrayList<>();
-    private java.util.List<Double> coilThresholds = new java.util.ArrayList<>();
-    private java.util.List<String> crackImagePaths = new java.util.ArrayList<>();
-    private java.util.List<String> demagStatuses = new java.util.ArrayList<>();
+    // Layout of the detail tables (same structure as live tables, plus Crack/Details)
+    private static final String[] MEASUREMENT_COLUMNS = {
+            "Part No", "Current 1", "T 1", "Current 2", "T 2",
+            "Current 3", "T 3", "Current 4", "T 4",
+            "Current 5", "T 5", "DeMag", "Status", "Crack", "Details"
+    };
+    private static final int DEMAG_COLUMN = 11;
+    // Rows read per query while a report is streamed from the database
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    // Current search text and status filter of the visible table
+    private String searchText = "";
+    private String statusFilter = "All";
+
+    // Further criteria, applied as SQL by the paged model
+    private JTextField searchField;
+    private JComboBox<String> operatorFilterBox;
+    private JTextField machineField;
+    private JTextField partField;
+    private JTextField fromDateField;
+    private JTextField toDateField;
+    // Typing restarts this timer; the query runs once typing pauses
+    private Timer filterTimer;
+    private static final int FILTER_DELAY_MS = 300;
 
     /**
      * Creates a new history page
@@ -60,29 +69,26 @@ public class HistoryPage extends JPanel {
     }
 
     private void initializeComponents() {
-        // Visible history table: one row per part
-        String[] historyColumns = {
-                "Part No", "Headshot", "CoilShot", "DeMag", "Part Description", "Date & Time", "Operator", "Details"
-        };
-        partHistoryTableModel = new PersistentColorTableModel(historyColumns, 0);
+        // Visible history table: one row per part. Rows are read page by page
+        // on a background worker; the table is usable once the first page is in.
+        partHistoryTableModel = new PagedHistoryTableModel();
         partHistoryTable = new JTable(partHistoryTableModel);
+        // Header clicks re-query the database in the chosen order
+        partHistoryTable.setRowSorter(new PagedHistoryRowSorter(partHistoryTableModel));
 
-        // Hidden detailed tables (same structure as live tables, plus Crack/Details)
-        String[] measurementColumns = {
-                "Part No", "Current 1", "T 1", "Current 2", "T 2",
-                "Current 3", "T 3", "Current 4", "T 4",
-                "Current 5", "T 5", "DeMag", "Status", "Crack", "Details"
-        };
-        headshotHistoryTableModel = new PersistentColorTableModel(measurementColumns, 0);
-        coilshotHistoryTableModel = new PersistentColorTableModel(measurementColumns, 0);
-        headshotHistoryTable = new JTable(headshotHistoryTableModel);
-        coilshotHistoryTable = new JTable(coilshotHistoryTableModel);
+        filterTimer = new Timer(FILTER_DELAY_MS, e -> {
+            searchText = searchField.getText().trim();
+            applyTableFilter();
+        });
+        filterTimer.setRepeats(false);
+
+        loadProgressBar = new JProgressBar();
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setPreferredSize(new Dimension(220, 18));
+        partHistoryTableModel.setLoadListener(this::showLoadProgress);
 
         // Set custom renderers / styling
         updateTableRenderers();
-
-        // Load all-time history from database
-        loadAllHistoryFromDb();
     }
 
     private void setupUI() {
@@ -114,7 +120,12 @@ public class HistoryPage extends JPanel {
         historyScrollPane.setBorder(BorderFactory.createEmptyBorder());
         historyScrollPane.getViewport().setBackground(Color.WHITE);
 
-        tablePanel.add(titleLabel, BorderLayout.NORTH);
+        JPanel titleRow = new JPanel(new BorderLayout());
+        titleRow.setOpaque(false);
+        titleRow.add(titleLabel, BorderLayout.WEST);
+        titleRow.add(loadProgressBar, BorderLayout.EAST);
+
+        tablePanel.add(titleRow, BorderLayout.NORTH);
         tablePanel.add(historyScrollPane, BorderLayout.CENTER);
 
         add(tablePanel, BorderLayout.CENTER);
@@ -131,8 +142,9 @@ public class HistoryPage extends JPanel {
         JLabel searchLabel = new JLabel("Search:");
         searchLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
 
-        JTextField searchField = new JTextField(15);
+        searchField = new JTextField(15);
         searchField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        searchField.addActionListener(e -> performSearch(searchField.getText()));
 
         JButton searchButton = new JButton("Search");
         styleButton(searchButton, new Color(41, 128, 185), Color.WHITE);
@@ -156,6 +168,16 @@ public class HistoryPage extends JPanel {
         styleButton(exportSummaryButton, new Color(52, 152, 219), Color.WHITE);
         exportSummaryButton.addActionListener(e -> exportSummaryPdf());
 
+        JButton trendsButton = new JButton("Monthly Trends");
+        styleButton(trendsButton, new Color(22, 160, 133), Color.WHITE);
+        trendsButton.addActionListener(
+                e -> new TrendsDialog((Frame) SwingUtilities.getWindowAncestor(this)).setVisible(true));
+
+        JButton controlChartsButton = new JButton("Control Charts");
+        styleButton(controlChartsButton, new Color(22, 160, 133), Color.WHITE);
+        controlChartsButton.addActionListener(
+                e -> new ControlChartDialog((Frame) SwingUtilities.getWindowAncestor(this)).setVisible(true));
+
         // JButton viewRecordingsButton = new JButton("View Recordings");
         // styleButton(viewRecordingsButton, new Color(46, 204, 113), Color.WHITE);
         // viewRecordingsButton.addActionListener(e -> viewRecordings());
@@ -172,10 +194,72 @@ public class HistoryPage extends JPanel {
         controlsPanel.add(filterComboBox);
         controlsPanel.add(exportButton);
         controlsPanel.add(exportSummaryButton);
+        controlsPanel.add(trendsButton);
+        controlsPanel.add(controlChartsButton);
         // controlsPanel.add(viewRecordingsButton); // disabled
         controlsPanel.add(backToTableButton);
 
-        add(controlsPanel, BorderLayout.SOUTH);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(createCriteriaPanel(), BorderLayout.NORTH);
+        southPanel.add(controlsPanel, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
+
+        // Re-query once typing in any text criterion pauses
+        javax.swing.event.DocumentListener debounce = new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                filterTimer.restart();
+            }
+        };
+        for (JTextField f : new JTextField[] { searchField, machineField, partField, fromDateField, toDateField }) {
+            f.getDocument().addDocumentListener(debounce);
+        }
+    }
+
+    /**
+     * Row of operator, machine, part and date criteria
+     */
+    private JPanel createCriteriaPanel() {
+        JPanel criteriaPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
+        criteriaPanel.setBackground(new Color(240, 240, 240));
+
+        java.util.List<String> operators = new java.util.ArrayList<>();
+        operators.add("All");
+        operators.addAll(com.magpi.db.Database.getInstance().getAllOperators());
+        operatorFilterBox = new JComboBox<>(operators.toArray(new String[0]));
+        operatorFilterBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        operatorFilterBox.setBackground(Color.WHITE);
+        operatorFilterBox.addActionListener(e -> applyTableFilter());
+
+        machineField = new JTextField(8);
+        partField = new JTextField(10);
+        partField.setToolTipText("Part number or part description");
+        fromDateField = new JTextField(9);
+        fromDateField.setToolTipText("yyyy-MM-dd");
+        toDateField = new JTextField(9);
+        toDateField.setToolTipText("yyyy-MM-dd");
+
+        Object[][] items = { { "Operator:", operatorFilterBox }, { "Machine:", machineField },
+                { "Part:", partField }, { "From:", fromDateField }, { "To:", toDateField } };
+        for (Object[] item : items) {
+            JLabel label = new JLabel((String) item[0]);
+            label.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            JComponent field = (JComponent) item[1];
+            field.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            criteriaPanel.add(label);
+            criteriaPanel.add(field);
+        }
+        return criteriaPanel;
     }
 
     /**
@@ -184,21 +268,9 @@ public class HistoryPage extends JPanel {
      * @param searchText The text to search for
      */
     private void performSearch(String searchText) {
-        // Create row filter and apply to the aggregated part history table
-        RowFilter<Object, Object> filter = null;
-        if (searchText.length() > 0) {
-            try {
-                // Create regex-based filter that searches all columns
-                filter = RowFilter.regexFilter("(?i)" + Pattern.quote(searchText));
-            } catch (java.util.regex.PatternSyntaxException e) {
-                // If an error in the regular expression, just return
-                return;
-            }
-        }
-
-        TableRowSorter<PersistentColorTableModel> sorter = new TableRowSorter<>(partHistoryTableModel);
-        sorter.setRowFilter(filter);
-        partHistoryTable.setRowSorter(sorter);
+        filterTimer.stop();
+        this.searchText = searchText.trim();
+        applyTableFilter();
     }
 
     /**
@@ -207,26 +279,57 @@ public class HistoryPage extends JPanel {
      * @param filterOption The status to filter by
      */
     private void filterResults(String filterOption) {
-        RowFilter<Object, Object> filter = null;
-
-        if (!"All".equalsIgnoreCase(filterOption)) {
-            // Filter based on Headshot / CoilShot status text (Pass/Crack/Error/Retest)
-            final int headCol = 1; // Headshot
-            final int coilCol = 2; // CoilShot
-            final String wanted = filterOption.toUpperCase();
-
-            filter = new RowFilter<Object, Object>() {
-                public boolean include(Entry entry) {
-                    String h = String.valueOf(entry.getValue(headCol)).toUpperCase();
-                    String c = String.valueOf(entry.getValue(coilCol)).toUpperCase();
-                    return h.contains(wanted) || c.contains(wanted);
-                }
-            };
+        this.statusFilter = filterOption;
+        applyTableFilter();
+    }
+
+    /**
+     * Runs the search text, status filter and criteria row as a database
+     * query; a query still running for the previous criteria is cancelled
+     */
+    private void applyTableFilter() {
+        filterTimer.stop();
+        HistoryFilter filter = new HistoryFilter();
+        filter.search = searchText;
+        filter.status = statusFilter == null ? "" : statusFilter;
+
+        String operator = (String) operatorFilterBox.getSelectedItem();
+        if (operator != null && !"All".equals(operator))
+            filter.operator = operator;
+        filter.machine = machineField.getText().trim();
+
+        String part = partField.getText().trim();
+        if (part.matches("\\d{1,9}")) {
+            filter.partNumber = Integer.parseInt(part);
+        } else {
+            filter.partDescription = part;
         }
 
-        TableRowSorter<PersistentColorTableModel> sorter = new TableRowSorter<>(partHistoryTableModel);
-        sorter.setRowFilter(filter);
-        partHistoryTable.setRowSorter(sorter);
+        String from = parseDate(fromDateField);
+        if (from != null)
+            filter.from = from + " 00:00:00";
+        String to = parseDate(toDateField);
+        if (to != null)
+            filter.to = to + " 23:59:59";
+
+        partHistoryTableModel.setFilter(filter);
+    }
+
+    /**
+     * The field's yyyy-MM-dd date, or null if it is empty or invalid (shown in
+     * red and ignored)
+     */
+    private static String parseDate(JTextField field) {
+        String text = field.getText().trim();
+        boolean valid = true;
+        try {
+            if (!text.isEmpty())
+                java.time.LocalDate.parse(text);
+        } catch (java.time.format.DateTimeParseException e) {
+            valid = false;
+        }
+        field.setForeground(valid ? Color.BLACK : Color.RED);
+        return valid && !text.isEmpty() ? text : null;
     }
 
     /**
@@ -372,107 +475,13 @@ public class HistoryPage extends JPanel {
     private void performFilteredExport(boolean isTodayOnly, String startDate, String endDate,
             String startTime, String endTime, String operatorFilter) {
         try {
-            // Build column names array from existing model
-            int colCount = headshotHistoryTableModel.getColumnCount();
-            String[] columnNames = new String[colCount];
-            for (int i = 0; i < colCount; i++) {
-                columnNames[i] = headshotHistoryTableModel.getColumnName(i);
-            }
-
-            // Build filtered hidden tables
-            PersistentColorTableModel filteredHeadModel = new PersistentColorTableModel(columnNames, 0);
-            PersistentColorTableModel filteredCoilModel = new PersistentColorTableModel(columnNames, 0);
-
-            String today = java.time.LocalDate.now().toString();
-
-            for (int i = 0; i < headshotHistoryTableModel.getRowCount(); i++) {
-                // Get date/time/operator for this row
-                String rowDate = (i < dates.size() && dates.get(i) != null) ? dates.get(i) : "";
-                String rowOperator = (i < operators.size() && operators.get(i) != null) ? operators.get(i) : "";
-
-                // Parse date and time from created_at (format: "YYYY-MM-DD HH:MM:SS")
-                String rowDateOnly = rowDate;
-                String rowTimeOnly = "";
-                int spaceIdx = rowDate.indexOf(' ');
-                if (spaceIdx >= 0) {
-                    rowDateOnly = rowDate.substring(0, spaceIdx);
-                    rowTimeOnly = rowDate.substring(spaceIdx + 1);
-                }
-
-                boolean include = true;
-
-                // Apply date filter
-                if (isTodayOnly) {
-                    if (!rowDateOnly.equals(today)) {
-                        include = false;
-                    }
-                } else {
-                    // Custom date range
-                    if (!startDate.isEmpty() && rowDateOnly.compareTo(startDate) < 0) {
-                        include = false;
-                    }
-                    if (!endDate.isEmpty() && rowDateOnly.compareTo(endDate) > 0) {
-                        include = false;
-                    }
-
-                    // Apply time filter if both date and time provided
-                    if (include && !startTime.isEmpty() && rowDateOnly.equals(startDate)) {
-                        if (rowTimeOnly.compareTo(startTime) < 0) {
-                            include = false;
-                        }
-                    }
-                    if (include && !endTime.isEmpty() && rowDateOnly.equals(endDate)) {
-                        if (rowTimeOnly.compareTo(endTime) > 0) {
-                            include = false;
-                        }
-                    }
-                }
-
-                // Apply operator filter
-                if (include && !operatorFilter.isEmpty()) {
-                    if (!rowOperator.equalsIgnoreCase(operatorFilter)) {
-                        include = false;
-                    }
-                }
-
-                // If row passes all filters, copy it to filtered models
-                if (include) {
-                    // Copy headshot row
-                    Object[] headRow = new Object[headshotHistoryTableModel.getColumnCount()];
-                    for (int col = 0; col < headRow.length; col++) {
-                        headRow[col] = headshotHistoryTableModel.getValueAt(i, col);
-                    }
-                    filteredHeadModel.addRow(headRow);
-                    // Copy colors
-                    for (int col = 0; col < headRow.length; col++) {
-                        Color c = headshotHistoryTableModel.getCellColor(i, col);
-                        if (c != null) {
-                            filteredHeadModel.setCellColor(filteredHeadModel.getRowCount() - 1, col, c);
-                        }
-                    }
-
-                    // Copy coilshot row
-                    Object[] coilRow = new Object[coilshotHistoryTableModel.getColumnCount()];
-                    for (int col = 0; col < coilRow.length; col++) {
-                        coilRow[col] = coilshotHistoryTableModel.getValueAt(i, col);
-                    }
-                    filteredCoilModel.addRow(coilRow);
-                    // Copy colors
-                    for (int col = 0; col < coilRow.length; col++) {
-                        Color c = coilshotHistoryTableModel.getCellColor(i, col);
-                        if (c != null) {
-                            filteredCoilModel.setCellColor(filteredCoilModel.getRowCount() - 1, col, c);
-                        }
-                    }
-                }
-            }
-
-            // Create temporary tables for export
-            JTable filteredHeadTable = new JTable(filteredHeadModel);
-            JTable filteredCoilTable = new JTable(filteredCoilModel);
+            // Totals come from one aggregate query; the rows are streamed from
+            // the database into the report page by page
+            HistoryFilter filter = exportFilter(isTodayOnly, startDate, endDate, startTime, endTime, operatorFilter);
+            int[] counts = new HistoryDao().reportCounts(filter);
 
             // Export filtered data
-            if (filteredHeadModel.getRowCount() == 0) {
+            if (counts[0] == 0) {
                 JOptionPane.showMessageDialog(this,
                         "No data matches the selected filters.",
                         "No Data",
@@ -506,8 +515,8 @@ public class HistoryPage extends JPanel {
                     }
                 }
 
-                PdfExporter.exportToPdf(session, filteredHeadTable, filteredCoilTable, this,
-                        filterDateRange, filterTimeRange, filterOperatorName, startDate, endDate);
+                PdfExporter.exportToPdf(session, measurementRows(filter, true), measurementRows(filter, false),
+                        counts, this, filterDateRange, filterTimeRange, filterOperatorName);
             }
 
         } catch (Exception ex) {
@@ -661,105 +670,17 @@ public class HistoryPage extends JPanel {
     private void performSummaryFilteredExport(boolean isTodayOnly, String startDate, String endDate,
             String startTime, String endTime, String operatorFilter) {
         try {
-            // Build filtered Part Test History table with new structure
-            String[] summaryColumns = { "Part No", "Headshot", "CoilShot", "DeMag", "Part Description", "Date & Time",
-                    "Operator" };
-            PersistentColorTableModel filteredSummaryModel = new PersistentColorTableModel(summaryColumns, 0);
-
-            String today = java.time.LocalDate.now().toString();
-
-            for (int i = 0; i < partHistoryTableModel.getRowCount(); i++) {
-                // Get date/time/operator from visible table
-                // New column structure: 0: Part No, 1: Headshot, 2: CoilShot, 3: DeMag,
-                // 4: Part Description, 5: Date & Time, 6: Operator, 7: Details
-                String rowDateTime = String.valueOf(partHistoryTableModel.getValueAt(i, 5)); // Date & Time column
-                                                                                             // (combined)
-                String rowOperator = String.valueOf(partHistoryTableModel.getValueAt(i, 6)); // Operator column
-                String rowPartDescription = String.valueOf(partHistoryTableModel.getValueAt(i, 4)); // Part Description
-
-                // Split date and time for filtering
-                String rowDate = rowDateTime;
-                String rowTime = "";
-                int spaceIdx = rowDateTime.indexOf(' ');
-                if (spaceIdx >= 0) {
-                    rowDate = rowDateTime.substring(0, spaceIdx);
-                    rowTime = rowDateTime.substring(spaceIdx + 1);
-                }
-
-                boolean include = true;
-
-                // Apply date filter
-                if (isTodayOnly) {
-                    if (!rowDate.equals(today)) {
-                        include = false;
-                    }
-                } else {
-                    // Custom date range
-                    if (!startDate.isEmpty() && rowDate.compareTo(startDate) < 0) {
-                        include = false;
-                    }
-                    if (!endDate.isEmpty() && rowDate.compareTo(endDate) > 0) {
-                        include = false;
-                    }
-
-                    // Apply time filter if both date and time provided
-                    if (include && !startTime.isEmpty() && rowDate.equals(startDate)) {
-                        if (rowTime.compareTo(startTime) < 0) {
-                            include = false;
-                        }
-                    }
-                    if (include && !endTime.isEmpty() && rowDate.equals(endDate)) {
-                        if (rowTime.compareTo(endTime) > 0) {
-                            include = false;
-                        }
-                    }
-                }
-
-                // Apply operator filter
-                if (include && !operatorFilter.isEmpty()) {
-                    if (!rowOperator.equalsIgnoreCase(operatorFilter)) {
-                        include = false;
-                    }
-                }
-
-                // If row passes all filters, copy it (exclude Details column)
-                if (include) {
-                    Object[] row = new Object[summaryColumns.length];
-                    row[0] = partHistoryTableModel.getValueAt(i, 0); // Part No
-                    row[1] = partHistoryTableModel.getValueAt(i, 1); // Headshot
-                    row[2] = partHistoryTableModel.getValueAt(i, 2); // CoilShot
-                    row[3] = partHistoryTableModel.getValueAt(i, 3); // DeMag
-                    row[4] = rowPartDescription; // Part Description
-                    row[5] = rowDateTime; // Date & Time (combined)
-                    row[6] = rowOperator; // Operator
-
-                    filteredSummaryModel.addRow(row);
-
-                    // Copy colors for Headshot, CoilShot, and DeMag
-                    Color headColor = partHistoryTableModel.getCellColor(i, 1);
-                    if (headColor != null) {
-                        filteredSummaryModel.setCellColor(filteredSummaryModel.getRowCount() - 1, 1, headColor);
-                    }
-                    Color coilColor = partHistoryTableModel.getCellColor(i, 2);
-                    if (coilColor != null) {
-                        filteredSummaryModel.setCellColor(filteredSummaryModel.getRowCount() - 1, 2, coilColor);
-                    }
-                    Color demagColor = partHistoryTableModel.getCellColor(i, 3);
-                    if (demagColor != null) {
-                        filteredSummaryModel.setCellColor(filteredSummaryModel.getRowCount() - 1, 3, demagColor);
-                    }
-                }
-            }
+            HistoryFilter filter = exportFilter(isTodayOnly, startDate, endDate, startTime, endTime, operatorFilter);
+            int[] counts = new HistoryDao().reportCounts(filter);
 
             // Export filtered summary data
-            if (filteredSummaryModel.getRowCount() == 0) {
+            if (counts[0] == 0) {
                 JOptionPane.showMessageDialog(this,
                         "No data matches the selected filters.",
                         "No Data",
                         JOptionPane.INFORMATION_MESSAGE);
             } else {
-                JTable filteredSummaryTable = new JTable(filteredSummaryModel);
-                PdfExporter.exportSummaryToPdf(session, filteredSummaryTable, this);
+                PdfExporter.exportSummaryToPdf(session, summaryRows(filter), counts, this);
             }
 
         } catch (Exception ex) {
@@ -846,58 +767,10 @@ public class HistoryPage extends JPanel {
     }
 
     private void updateTableRenderers() {
-        // Hidden detailed tables use the same cell renderer as live tables
-        headshotHistoryTable.setDefaultRenderer(Object.class,
-                new CustomCellRenderer(session.getHeadShotThreshold(), headshotHistoryTableModel));
-        coilshotHistoryTable.setDefaultRenderer(Object.class,
-                new CustomCellRenderer(session.getCoilShotThreshold(), coilshotHistoryTableModel));
-
-        // Improve table appearance
-        styleMeasurementTable(headshotHistoryTable);
-        styleMeasurementTable(coilshotHistoryTable);
-
         // Style the visible aggregated table
         stylePartHistoryTable(partHistoryTable);
     }
 
-    /**
-     * Applies modern styling to the given table
-     */
-    private void styleMeasurementTable(JTable table) {
-        // Set row height and spacing
-        table.setRowHeight(30);
-        table.setIntercellSpacing(new Dimension(5, 5));
-        table.setShowGrid(true);
-        table.setGridColor(new Color(120, 120, 120)); // Darker grid lines
-        table.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(new Color(100, 100, 100), 2),
-                BorderFactory.createEmptyBorder(1, 1, 1, 1)));
-
-        // Style the header
-        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
-        table.getTableHeader().setBackground(new Color(230, 230, 230));
-        table.getTableHeader().setForeground(new Color(44, 62, 80));
-        table.getTableHeader().setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(new Color(100, 100, 100), 2),
-                BorderFactory.createEmptyBorder(5, 5, 5, 5)));
-
-        // Set column widths
-        table.getColumnModel().getColumn(0).setPreferredWidth(80); // Part No
-        for (int i = 1; i < table.getColumnCount() - 3; i += 2) {
-            table.getColumnModel().getColumn(i).setPreferredWidth(100); // Current columns
-            table.getColumnModel().getColumn(i + 1).setPreferredWidth(80); // Time columns
-        }
-        table.getColumnModel().getColumn(getStatusColumnIndex((PersistentColorTableModel) table.getModel()))
-                .setPreferredWidth(90); // Status
-        table.getColumnModel().getColumn(getCrackColumnIndex((PersistentColorTableModel) table.getModel()))
-                .setPreferredWidth(80); // Crack
-        table.getColumnModel().getColumn(table.getColumnCount() - 1).setPreferredWidth(90); // Details
-
-        // Prevent column resizing and reordering
-        table.getTableHeader().setResizingAllowed(false);
-        table.getTableHeader().setReorderingAllowed(false);
-    }
-
     private void stylePartHistoryTable(JTable table) {
         table.setRowHeight(28);
         table.setIntercellSpacing(new Dimension(5, 5));
@@ -929,7 +802,7 @@ public class HistoryPage extends JPanel {
 
         // Use CustomCellRenderer so PASS/FAIL colors saved in the model are shown
         table.setDefaultRenderer(Object.class,
-                new CustomCellRenderer(0.0, partHistoryTableModel));
+                new CustomCellRenderer(partHistoryTableModel));
 
         // Render the Details column to look like a button
         int detailsColIndex = table.getColumnCount() - 1;
@@ -954,51 +827,35 @@ public class HistoryPage extends JPanel {
     }
 
     /**
-     * Gets the headshot history table model
-     * 
-     * @return The headshot history table model
+     * Reload the Part Test History from the database. Only the visible rows
+     * are read again.
      */
-    public PersistentColorTableModel getHeadshotHistoryTableModel() {
-        return headshotHistoryTableModel;
+    public void refreshHistory() {
+        partHistoryTableModel.refresh();
     }
 
     /**
-     * Gets the coilshot history table model
-     * 
-     * @return The coilshot history table model
+     * Add the parts of a session that just ended to the history without
+     * reloading the rows already shown
      */
-    public PersistentColorTableModel getCoilshotHistoryTableModel() {
-        return coilshotHistoryTableModel;
+    public void appendSession(long sessionId) {
+        partHistoryTableModel.appendSession(sessionId);
     }
 
-    /**
-     * Add metadata for a part (called when transferring from TablePage)
-     */
-    public void addPartMetadata(String operator, String supervisor, String createdAt,
-            String company, String machine, String partDesc,
-            double headThreshold, double coilThreshold,
-            String startTime, String endTime,
-            String crackImagePath, String demagStatus) {
-        operators.add(operator);
-        supervisors.add(supervisor);
-        dates.add(createdAt);
-        companies.add(company);
-        machines.add(machine);
-        partDescriptions.add(partDesc);
-        headThresholds.add(headThreshold);
-        coilThresholds.add(coilThreshold);
-        startTimes.add(startTime);
-        endTimes.add(endTime);
-        crackImagePaths.add(crackImagePath);
-        demagStatuses.add(demagStatus);
-    }
-
-    private int getStatusColumnIndex(PersistentColorTableModel model) {
-        return model.getColumnCount() - 3;
-    }
-
-    private int getCrackColumnIndex(PersistentColorTableModel model) {
-        return model.getColumnCount() - 2;
+    private void showLoadProgress(boolean loading, int loadedRows, int targetRows) {
+        loadProgressBar.setVisible(loading);
+        if (!loading)
+            return;
+        if (targetRows < 0 || loadedRows >= targetRows) {
+            // Row count not known yet, or reading pages scrolled to
+            loadProgressBar.setIndeterminate(true);
+            loadProgressBar.setString("Loading history...");
+        } else {
+            loadProgressBar.setIndeterminate(false);
+            loadProgressBar.setMaximum(targetRows);
+            loadProgressBar.setValue(loadedRows);
+            loadProgressBar.setString("Loading " + loadedRows + " / " + targetRows);
+        }
     }
 
     private void addDetailsClickListenerForPartTable() {
@@ -1009,360 +866,203 @@ public class HistoryPage extends JPanel {
                 int row = partHistoryTable.rowAtPoint(e.getPoint());
                 if (col == partHistoryTable.getColumnCount() - 1 && row >= 0) {
                     int modelRow = partHistoryTable.convertRowIndexToModel(row);
-                    if (modelRow < 0 || modelRow >= headshotHistoryTableModel.getRowCount())
+                    HistoryColumns p = partHistoryTableModel.getPage(modelRow);
+                    if (p == null)
                         return;
+                    int r = PagedHistoryTableModel.pageIndex(modelRow);
 
-                    Object partLabel = partHistoryTableModel.getValueAt(modelRow, 0);
-
-                    // Build meta map from per-part lists
+                    // Build meta map from the part's session
                     java.util.Map<String, String> meta = new java.util.LinkedHashMap<>();
-                    meta.put("Company Name", modelRow < companies.size() ? companies.get(modelRow) : "");
-                    meta.put("Machine ID", modelRow < machines.size() ? machines.get(modelRow) : "");
-                    meta.put("Part Description",
-                            modelRow < partDescriptions.size() ? partDescriptions.get(modelRow) : "");
-                    meta.put("Operator", modelRow < operators.size() ? operators.get(modelRow) : "");
-                    meta.put("Supervisor", modelRow < supervisors.size() ? supervisors.get(modelRow) : "");
-                    meta.put("Start Time", modelRow < startTimes.size() ? startTimes.get(modelRow) : "");
-                    meta.put("End Time", modelRow < endTimes.size() ? endTimes.get(modelRow) : "");
-                    meta.put("Headshot Threshold",
-                            modelRow < headThresholds.size() ? String.valueOf(headThresholds.get(modelRow)) : "");
-                    meta.put("Coilshot Threshold",
-                            modelRow < coilThresholds.size() ? String.valueOf(coilThresholds.get(modelRow)) : "");
-                    meta.put("DeMag Status",
-                            modelRow < demagStatuses.size() ? demagStatuses.get(modelRow) : "");
-
-                    // Optional crack image path (from DB or current session)
-                    if (modelRow < crackImagePaths.size()) {
-                        String imgPath = crackImagePaths.get(modelRow);
-                        if (imgPath != null && !imgPath.trim().isEmpty()) {
-                            meta.put("Crack Image Path", imgPath);
-                        }
+                    meta.put("Company Name", p.companyName(r));
+                    meta.put("Machine ID", p.machineId(r));
+                    meta.put("Part Description", p.partDescription(r));
+                    meta.put("Operator", p.operatorName(r));
+                    meta.put("Supervisor", p.supervisorId(r));
+                    meta.put("Start Time", p.startTime(r));
+                    meta.put("End Time", p.endTime(r));
+                    meta.put("Headshot Threshold", String.valueOf(p.threshold(r, true)));
+                    meta.put("Coilshot Threshold", String.valueOf(p.threshold(r, false)));
+                    meta.put("DeMag Status", p.demagStatus(r));
+
+                    // Optional crack image path
+                    String imgPath = p.crackImagePath(r);
+                    if (imgPath != null && !imgPath.trim().isEmpty()) {
+                        meta.put("Crack Image Path", imgPath);
                     }
 
-                    // Overall status / crack from hidden headshot table (if present)
-                    String status = "";
-                    String crack = "";
-                    try {
-                        int statusIdx = getStatusColumnIndex(headshotHistoryTableModel);
-                        status = String.valueOf(headshotHistoryTableModel.getValueAt(modelRow, statusIdx));
-                        int crackIdx = getCrackColumnIndex(headshotHistoryTableModel);
-                        if (crackIdx >= 0) {
-                            crack = String.valueOf(headshotHistoryTableModel.getValueAt(modelRow, crackIdx));
-                        }
-                    } catch (Exception ignored) {
-                    }
+                    meta.put("Status", nullToEmpty(p.status(r)));
+                    meta.put("Crack Status", crackText(p, r));
 
-                    meta.put("Status", status == null ? "" : status);
-                    meta.put("Crack Status", crack == null ? "" : crack);
+                    // Single-row detail tables for this part only
+                    JTable headTable = new JTable(buildMeasurementModel(p, r, r + 1, true));
+                    JTable coilTable = new JTable(buildMeasurementModel(p, r, r + 1, false));
 
                     java.awt.Window owner = javax.swing.SwingUtilities.getWindowAncestor(HistoryPage.this);
                     com.magpi.ui.PartDetailsDialog.show(owner,
-                            headshotHistoryTable,
-                            coilshotHistoryTable,
-                            modelRow,
-                            modelRow,
+                            headTable,
+                            coilTable,
+                            0,
+                            0,
                             meta,
-                            partLabel == null ? "" : partLabel.toString());
+                            String.valueOf(partHistoryTableModel.getValueAt(modelRow, 0)));
                 }
             }
         });
     }
 
     /**
-     * Rebuild the visible Part Test History table from the hidden headshot/coilshot
-     * history tables.
-     * This should be called after the hidden tables are populated (from DB or from
-     * TablePage transfer).
+     * Criteria of the export dialogs: today, or the date range with optional
+     * start time on the first day and end time on the last day
      */
-    public void rebuildPartHistoryTable() {
-        partHistoryTableModel.setRowCount(0);
-
-        int rowCount = Math.min(headshotHistoryTableModel.getRowCount(), coilshotHistoryTableModel.getRowCount());
-        int headStatusCol = getStatusColumnIndex(headshotHistoryTableModel);
-        int coilStatusCol = getStatusColumnIndex(coilshotHistoryTableModel);
-
-        // Track how many times each base part number has appeared to build retest
-        // suffixes (for DB-loaded data)
-        java.util.Map<Integer, Integer> partCounts = new java.util.HashMap<>();
-
-        for (int i = 0; i < rowCount; i++) {
-            // Part number from hidden table - use directly if PartIdCell, reconstruct if
-            // Integer
-            Object partObj = headshotHistoryTableModel.getValueAt(i, 0);
-            Object displayPartNo;
-
-            if (partObj instanceof com.magpi.ui.util.PartIdCell) {
-                // From Table page transfer - use as-is (already has correct display)
-                displayPartNo = partObj;
-            } else if (partObj instanceof Integer) {
-                // From DB load - reconstruct retest suffix
-                int basePartNo = (Integer) partObj;
-                int count = partCounts.getOrDefault(basePartNo, 0);
-                displayPartNo = (count == 0) ? String.valueOf(basePartNo) : basePartNo + "-" + count;
-                partCounts.put(basePartNo, count + 1);
-            } else {
-                // Fallback for other types
-                displayPartNo = (partObj == null) ? "" : partObj.toString();
-            }
-
-            // Status text and color from the Status columns of each hidden table
-            Object headTextObj = headshotHistoryTableModel.getValueAt(i, headStatusCol);
-            Object coilTextObj = coilshotHistoryTableModel.getValueAt(i, coilStatusCol);
-            String headStatus = (headTextObj == null) ? "" : formatStatusText(headTextObj.toString());
-            String coilStatus = (coilTextObj == null) ? "" : formatStatusText(coilTextObj.toString());
-
-            java.awt.Color headColor = headshotHistoryTableModel.getCellColor(i, headStatusCol);
-            java.awt.Color coilColor = coilshotHistoryTableModel.getCellColor(i, coilStatusCol);
-
-            // Date / Time from metadata - combine into single string
-            String createdAt = (i < dates.size() && dates.get(i) != null) ? dates.get(i) : "";
-            String dateTime = createdAt; // Keep full "YYYY-MM-DD HH:MM:SS" format
-
-            String operator = (i < operators.size() && operators.get(i) != null) ? operators.get(i) : "";
-            String demagStatus = (i < demagStatuses.size() && demagStatuses.get(i) != null) ? demagStatuses.get(i) : "";
-            String partDescription = (i < partDescriptions.size() && partDescriptions.get(i) != null)
-                    ? partDescriptions.get(i)
-                    : "";
-
-            Object[] row = new Object[partHistoryTableModel.getColumnCount()];
-            row[0] = displayPartNo; // Part No (PartIdCell or String with retest suffix)
-            row[1] = headStatus; // Headshot status text (Pass/Error/retest)
-            row[2] = coilStatus; // CoilShot status text (Pass/Error/retest)
-            row[3] = demagStatus; // DeMag status ("Done")
-            row[4] = partDescription; // Part Description
-            row[5] = dateTime; // Date & Time combined
-            row[6] = operator;
-            row[7] = "Details";
-
-            partHistoryTableModel.addRow(row);
-
-            // Set colors to match the Status columns
-            if (headColor != null) {
-                partHistoryTableModel.setCellColor(i, 1, headColor);
-            }
-            if (coilColor != null) {
-                partHistoryTableModel.setCellColor(i, 2, coilColor);
-            }
-            // Set green background for DeMag "Done" cells
-            if (demagStatus != null && !demagStatus.isEmpty() && "Done".equalsIgnoreCase(demagStatus)) {
-                partHistoryTableModel.setCellColor(i, 3, Color.GREEN);
-            }
+    private HistoryFilter exportFilter(boolean isTodayOnly, String startDate, String endDate,
+            String startTime, String endTime, String operatorFilter) {
+        HistoryFilter filter = new HistoryFilter();
+        if (isTodayOnly) {
+            String today = java.time.LocalDate.now().toString();
+            filter.from = today + " 00:00:00";
+            filter.to = today + " 23:59:59";
+        } else {
+            if (!startDate.isEmpty())
+                filter.from = startDate + " " + (startTime.isEmpty() ? "00:00:00" : startTime);
+            if (!endDate.isEmpty())
+                filter.to = endDate + " " + (endTime.isEmpty() ? "23:59:59" : endTime);
         }
+        filter.operator = operatorFilter;
+        return filter;
     }
 
     /**
-     * Format status text to match Table page style (Pass/Error/retest instead of
-     * PASS/ERROR)
+     * Detail rows of one meter for the parts matching the filter, read from
+     * the database while the report is written
      */
-    private String formatStatusText(String status) {
-        if (status == null || status.isEmpty())
-            return "";
-
-        String upper = status.toUpperCase();
-        if ("PASS".equals(upper))
-            return "Pass";
-        if ("ERROR".equals(upper))
-            return "Error";
-        if ("RETEST".equals(upper))
-            return "retest";
-
-        // Return as-is for other values
-        return status;
-    }
-
-    private void loadAllHistoryFromDb() {
-        // Clear existing rows
-        headshotHistoryTableModel.setRowCount(0);
-        coilshotHistoryTableModel.setRowCount(0);
-        partHistoryTableModel.setRowCount(0);
-
-        operators.clear();
-        supervisors.clear();
-        dates.clear();
-        companies.clear();
-        machines.clear();
-        partDescriptions.clear();
-        startTimes.clear();
-        endTimes.clear();
-        headThresholds.clear();
-        coilThresholds.clear();
-        crackImagePaths.clear();
-        demagStatuses.clear();
-        parts.clear();
-
-        try (java.sql.Connection c = com.magpi.db.Database.getInstance().getConnection()) {
-            String baseSql = "SELECT sp.id, sp.part_number, sp.status, " +
-                    "CASE WHEN (SELECT COUNT(*) FROM pragma_table_info('session_parts') WHERE name='crack_detected')>0 THEN sp.crack_detected ELSE NULL END AS crack_detected, "
-                    +
-                    "CASE WHEN (SELECT COUNT(*) FROM pragma_table_info('session_parts') WHERE name='crack_image_path')>0 THEN sp.crack_image_path ELSE NULL END AS crack_image_path, "
-                    +
-                    "CASE WHEN (SELECT COUNT(*) FROM pragma_table_info('session_parts') WHERE name='demag_status')>0 THEN sp.demag_status ELSE NULL END AS demag_status, "
-                    +
-                    "s.operator_name, s.supervisor_id, sp.created_at, s.company_name, s.machine_id, s.part_description, s.headshot_threshold, s.coilshot_threshold, s.start_time, s.end_time "
-                    +
-                    "FROM session_parts sp JOIN sessions s ON s.id = sp.session_id ORDER BY sp.created_at";
-
-            try (java.sql.PreparedStatement ps = c.prepareStatement(baseSql);
-                    java.sql.ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    java.util.Map<String, Object> m = new java.util.HashMap<>();
-                    m.put("id", rs.getLong(1));
-                    m.put("part_number", rs.getInt(2));
-                    m.put("status", rs.getString(3));
-                    m.put("crack_detected", rs.getObject(4));
-                    m.put("crack_image_path", rs.getString(5));
-                    m.put("demag_status", rs.getString(6));
-                    m.put("operator_name", rs.getString(7));
-                    m.put("supervisor_id", rs.getString(8));
-                    m.put("created_at", rs.getString(9));
-                    m.put("company_name", rs.getString(10));
-                    m.put("machine_id", rs.getString(11));
-                    m.put("part_description", rs.getString(12));
-                    m.put("headshot_threshold", rs.getDouble(13));
-                    m.put("coilshot_threshold", rs.getDouble(14));
-                    m.put("start_time", rs.getString(15));
-                    m.put("end_time", rs.getString(16));
-                    parts.add(m);
-
-                    operators.add(rs.getString(7));
-                    supervisors.add(rs.getString(8));
-                    dates.add(rs.getString(9));
-                    companies.add(rs.getString(10));
-                    machines.add(rs.getString(11));
-                    partDescriptions.add(rs.getString(12));
-                    headThresholds.add(rs.getDouble(13));
-                    coilThresholds.add(rs.getDouble(14));
-                    startTimes.add(rs.getString(15));
-                    endTimes.add(rs.getString(16));
-                    crackImagePaths.add(rs.getString(5));
-                    demagStatuses.add(rs.getString(6) != null ? rs.getString(6) : "");
-                }
+    private PdfExporter.RowSource measurementRows(HistoryFilter filter, boolean headshot) {
+        return new PdfExporter.RowSource() {
+            @Override
+            public String[] columnNames() {
+                return MEASUREMENT_COLUMNS;
             }
 
-            // Helper to fill one hidden measurement table by meter type
-            java.util.function.BiConsumer<PersistentColorTableModel, String> fill = (model, meterType) -> {
-                for (java.util.Map<String, Object> p : parts) {
-                    Object[] row = new Object[model.getColumnCount()];
-                    row[0] = p.get("part_number");
-                    int statusCol = getStatusColumnIndex(model);
-                    int crackCol = getCrackColumnIndex(model);
-
-                    // Find DeMag column index
-                    int demagCol = -1;
-                    for (int colIdx = 0; colIdx < model.getColumnCount(); colIdx++) {
-                        if ("DeMag".equals(model.getColumnName(colIdx))) {
-                            demagCol = colIdx;
-                            break;
-                        }
-                    }
-
-                    for (int i = 1; i < statusCol; i++) {
-                        if (i == demagCol) {
-                            String ds = (String) p.get("demag_status");
-                            row[i] = ds == null ? "" : ds;
-                            // Set color immediately (will be applied after adding row)
-                        } else {
-                            row[i] = "";
-                        }
-                    }
-
-                    // Determine threshold for this meter type
-                    double threshold = "Headshot".equals(meterType)
-                            ? (Double) p.get("headshot_threshold")
-                            : (Double) p.get("coilshot_threshold");
-
-                    boolean rowHasRed = false;
-
-                    // load up to 5 shots for this meter type
-                    try (java.sql.PreparedStatement ps2 = c.prepareStatement(
-                            "SELECT shot_index, current, duration FROM measurements WHERE session_part_id=? AND meter_type=? ORDER BY shot_index LIMIT 5")) {
-                        ps2.setLong(1, (Long) p.get("id"));
-                        ps2.setString(2, meterType);
-                        try (java.sql.ResultSet rs2 = ps2.executeQuery()) {
-                            while (rs2.next()) {
-                                int idx = rs2.getInt(1);
-                                if (idx < 5) {
-                                    int col = 1 + idx * 2;
-                                    double current = rs2.getDouble(2);
-                                    row[col] = current;
-                                    row[col + 1] = String.format(java.util.Locale.US, "%.3f", rs2.getDouble(3));
-
-                                    // Determine color based on threshold (same logic as CustomCellRenderer)
-                                    // >= threshold is GREEN, < threshold is RED
-                                    if (current >= threshold) {
-                                        // We can't set cell color here because row isn't added yet,
-                                        // but we can track if we found a red value.
-                                        // Actually we need to set it after adding row.
-                                    } else {
-                                        rowHasRed = true;
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Exception ignore) {
+            @Override
+            public void forEachRow(PdfExporter.RowSink sink) throws java.sql.SQLException {
+                Object[] row = new Object[MEASUREMENT_COLUMNS.length];
+                Color[] colors = new Color[row.length];
+                new HistoryDao().forEachPage(filter, EXPORT_PAGE_SIZE, p -> {
+                    for (int i = 0; i < p.size(); i++) {
+                        fillMeasurementRow(p, i, headshot, row, colors);
+                        sink.row(row, colors);
                     }
+                });
+            }
+        };
+    }
 
-                    String st = (String) p.get("status");
-                    row[statusCol] = st == null ? "" : st;
-                    Object cd = p.get("crack_detected");
-                    row[crackCol] = (cd == null) ? "" : (((Number) cd).intValue() == 1 ? "Yes" : "No");
-                    row[row.length - 1] = "Details";
-
-                    model.addRow(row);
-                    int currentRow = model.getRowCount() - 1;
-
-                    // Set colors for measurements
-                    // We need to re-iterate or store which cols were red.
-                    // Simpler: iterate columns now that row is added.
-                    for (int col = 1; col < statusCol; col += 2) {
-                        Object val = model.getValueAt(currentRow, col);
-                        if (val instanceof Number) {
-                            double d = ((Number) val).doubleValue();
-                            if (d >= threshold) {
-                                model.setCellColor(currentRow, col, java.awt.Color.GREEN);
-                            } else {
-                                model.setCellColor(currentRow, col, java.awt.Color.RED);
-                            }
-                        }
-                    }
+    /**
+     * Summary rows for the parts matching the filter, read from the database
+     * while the report is written
+     */
+    private PdfExporter.RowSource summaryRows(HistoryFilter filter) {
+        String[] summaryColumns = { "Part No", "Headshot", "CoilShot", "DeMag", "Part Description", "Date & Time",
+                "Operator" };
+        return new PdfExporter.RowSource() {
+            @Override
+            public String[] columnNames() {
+                return summaryColumns;
+            }
 
-                    // Set DeMag Color
-                    if (demagCol != -1) {
-                        Object val = model.getValueAt(currentRow, demagCol);
-                        if (val != null && "Done".equalsIgnoreCase(val.toString())) {
-                            model.setCellColor(currentRow, demagCol, java.awt.Color.GREEN);
-                        }
+            @Override
+            public void forEachRow(PdfExporter.RowSink sink) throws java.sql.SQLException {
+                Object[] row = new Object[summaryColumns.length];
+                Color[] colors = new Color[row.length];
+                new HistoryDao().forEachPage(filter, EXPORT_PAGE_SIZE, p -> {
+                    for (int i = 0; i < p.size(); i++) {
+                        String status = PagedHistoryTableModel.formatStatusText(p.status(i));
+                        row[0] = new PartIdCell(p.partNumber(i), p.recheckIndex(i)); // Part No
+                        row[1] = status; // Headshot
+                        row[2] = status; // CoilShot
+                        row[3] = p.demagStatus(i); // DeMag
+                        row[4] = nullToEmpty(p.partDescription(i)); // Part Description
+                        row[5] = nullToEmpty(p.createdAt(i)); // Date & Time (combined)
+                        row[6] = nullToEmpty(p.operatorName(i)); // Operator
+
+                        // Colors for Headshot, CoilShot, and DeMag
+                        colors[1] = PagedHistoryTableModel.statusColor(p, i, true);
+                        colors[2] = PagedHistoryTableModel.statusColor(p, i, false);
+                        colors[3] = p.isDemagDone(i) ? Color.GREEN : null;
+                        sink.row(row, colors);
                     }
+                });
+            }
+        };
+    }
 
-                    // Set Status Color
-                    // Logic: If any Red measurement OR Status is ERROR -> RED
-                    // Else -> GREEN
-                    // (This preserves Green for "Crack" if measurements were Green)
-                    java.awt.Color stColor;
-                    if (rowHasRed || "ERROR".equalsIgnoreCase(st)) {
-                        stColor = java.awt.Color.RED;
-                    } else {
-                        stColor = java.awt.Color.GREEN;
-                    }
+    private static String crackText(HistoryColumns p, int r) {
+        Integer crack = p.crackDetected(r);
+        if (crack == null)
+            return "";
+        return crack == 1 ? "Yes" : "No";
+    }
 
-                    model.setCellColor(currentRow, statusCol, stColor);
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
 
-                    if (cd != null) {
-                        model.setCellColor(currentRow, crackCol,
-                                ((Number) cd).intValue() == 1 ? java.awt.Color.RED : new java.awt.Color(224, 224, 224));
-                    }
+    /**
+     * Build a detail table in the live-table layout for one meter from rows
+     * [from, to) of the store, colored the same way as the live view
+     */
+    private PersistentColorTableModel buildMeasurementModel(HistoryColumns p, int from, int to,
+            boolean headshot) {
+        PersistentColorTableModel model = new PersistentColorTableModel(MEASUREMENT_COLUMNS, 0);
+        Object[] row = new Object[model.getColumnCount()];
+        Color[] colors = new Color[row.length];
+        for (int i = from; i < to; i++) {
+            fillMeasurementRow(p, i, headshot, row, colors);
+            model.addRow(row.clone());
+            int r = model.getRowCount() - 1;
+            for (int c = 0; c < colors.length; c++) {
+                if (colors[c] != null) {
+                    model.setCellColor(r, c, colors[c]);
                 }
-            };
-
-            fill.accept(headshotHistoryTableModel, "Headshot");
-            fill.accept(coilshotHistoryTableModel, "Coilshot");
-
-        } catch (Exception ex) {
-            // Ignore failures to keep app running
+            }
         }
+        return model;
+    }
 
-        // After loading hidden tables from DB, rebuild the aggregated Part Test History
-        // table
-        rebuildPartHistoryTable();
+    /**
+     * Values and cell colors of row i of the store in the live-table layout
+     * for one meter
+     */
+    private static void fillMeasurementRow(HistoryColumns p, int i, boolean headshot, Object[] row,
+            Color[] colors) {
+        int statusCol = row.length - 3;
+        int crackCol = row.length - 2;
+        java.util.Arrays.fill(colors, null);
+
+        row[0] = new PartIdCell(p.partNumber(i), p.recheckIndex(i));
+        for (int c = 1; c < statusCol; c++) {
+            row[c] = "";
+        }
+        // Measurements: GREEN when the shot passes the part's acceptance rules
+        // (by default current >= threshold), RED otherwise
+        for (int shot = 0; shot < HistoryDao.SHOTS; shot++) {
+            double current = p.current(i, headshot, shot);
+            if (!Double.isNaN(current)) {
+                row[1 + shot * 2] = current;
+                row[2 + shot * 2] = String.format(Locale.US, "%.3f", p.duration(i, headshot, shot));
+                colors[1 + shot * 2] = p.shotPasses(i, headshot, shot) ? Color.GREEN : Color.RED;
+            }
+        }
+        row[DEMAG_COLUMN] = p.demagStatus(i);
+        if (p.isDemagDone(i)) {
+            colors[DEMAG_COLUMN] = Color.GREEN;
+        }
+        row[statusCol] = nullToEmpty(p.status(i));
+        colors[statusCol] = PagedHistoryTableModel.statusColor(p, i, headshot);
+        row[crackCol] = crackText(p, i);
+        Integer crack = p.crackDetected(i);
+        if (crack != null) {
+            colors[crackCol] = crack == 1 ? Color.RED : new Color(224, 224, 224);
+        }
+        row[row.length - 1] = "Details";
     }
 }
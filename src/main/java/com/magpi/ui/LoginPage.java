@@ -1,5 +1,6 @@
 package com.magpi.ui;
 
+import com.magpi.model.AcceptanceRules;
 import com.magpi.model.TestSession;
 import com.magpi.util.PersistentLibrary;
 
@@ -425,7 +426,7 @@ public class LoginPage extends JPanel {
         paramGbc.gridy = 4;
         paramGbc.gridwidth = 2;
 
-        JPanel paramButtonPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        JPanel paramButtonPanel = new JPanel(new GridLayout(1, 3, 10, 0));
         JButton saveParametersButton = new JButton("Save Parameters");
         saveParametersButton.addActionListener(e -> saveParameters());
         saveParametersButton.setBackground(new Color(102, 255, 102));
@@ -435,8 +436,12 @@ public class LoginPage extends JPanel {
         removeParametersButton.setBackground(new Color(231, 76, 60));
         removeParametersButton.setForeground(Color.BLACK);
 
+        JButton rulesButton = new JButton("Acceptance Rules...");
+        rulesButton.addActionListener(e -> editAcceptanceRules());
+
         paramButtonPanel.add(saveParametersButton);
         paramButtonPanel.add(removeParametersButton);
+        paramButtonPanel.add(rulesButton);
         parametersPanel.add(paramButtonPanel, paramGbc);
 
         // Parameter history list
@@ -598,6 +603,62 @@ public class LoginPage extends JPanel {
         }
     }
 
+    /**
+     * Edit the selected part's acceptance rules. The thresholds stay the
+     * minimum currents; empty fields are not checked.
+     */
+    private void editAcceptanceRules() {
+        String partDescription = (String) partDescriptionComboBox.getSelectedItem();
+        if (partDescription == null || partDescription.trim().isEmpty())
+            return;
+        AcceptanceRules rules = library.getAcceptanceRules(partDescription);
+        JTextField headMax = new JTextField(format(rules.getHeadMax()), 8);
+        JTextField coilMax = new JTextField(format(rules.getCoilMax()), 8);
+        JTextField durationMin = new JTextField(format(rules.getDurationMin()), 8);
+        JTextField durationMax = new JTextField(format(rules.getDurationMax()), 8);
+        JSpinner requiredShots = new JSpinner(new SpinnerNumberModel(rules.getRequiredShots(), 0, 99, 1));
+        JCheckBox metersAgree = new JCheckBox("Headshot and coilshot shot counts must match",
+                rules.isMetersAgree());
+
+        JPanel form = new JPanel(new GridLayout(0, 2, 5, 5));
+        form.add(new JLabel("Headshot Max (kA):"));
+        form.add(headMax);
+        form.add(new JLabel("Coilshot Max (kA):"));
+        form.add(coilMax);
+        form.add(new JLabel("Duration Min:"));
+        form.add(durationMin);
+        form.add(new JLabel("Duration Max:"));
+        form.add(durationMax);
+        form.add(new JLabel("Required Shots per Meter:"));
+        form.add(requiredShots);
+        form.add(new JLabel());
+        form.add(metersAgree);
+
+        while (JOptionPane.showConfirmDialog(this, form, "Acceptance Rules - " + partDescription,
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+            try {
+                library.saveAcceptanceRules(partDescription, new AcceptanceRules(parse(headMax), parse(coilMax),
+                        parse(durationMin), parse(durationMax), (Integer) requiredShots.getValue(),
+                        metersAgree.isSelected()));
+                return;
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this,
+                        "Please enter valid numbers or leave the field empty",
+                        "Validation Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private static String format(Double value) {
+        return value == null ? "" : String.valueOf(value);
+    }
+
+    private static Double parse(JTextField field) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? null : Double.valueOf(text);
+    }
+
     private void addNewOperator() {
         String newOperator = JOptionPane.showInputDialog(this, "Enter new operator name:");
         if (newOperator != null && !newOperator.trim().isEmpty()) {
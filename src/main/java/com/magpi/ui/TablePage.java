@@ -1,15 +1,23 @@
 package com.magpi.ui;
 
+import com.magpi.model.AcceptanceEvaluator;
+import com.magpi.model.AcceptanceRules;
 import com.magpi.model.Measurement;
 import com.magpi.model.TestPart;
 import com.magpi.model.TestSession;
+import com.magpi.model.ThroughputTracker;
+import com.magpi.model.spc.SpcEngine;
 import com.magpi.ui.table.CustomCellRenderer;
 import com.magpi.ui.table.PersistentColorTableModel;
+import com.magpi.ui.util.NumericCell;
+import com.magpi.util.LiveTableMetrics;
 import com.magpi.util.SerialPortManager;
 // Video capture feature (VLCJ) temporarily disabled
 // import com.magpi.video.VLCJVideoStream;
 import com.magpi.util.PersistentLibrary;
-import com.magpi.db.CalibrationDao;
+import com.magpi.db.CalibrationRepository;
+import com.magpi.db.Storage;
+import com.magpi.db.analytics.ParquetExporter;
 
 import javax.swing.*;
 import javax.swing.table.TableColumn;
@@ -19,16 +27,34 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 /**
  * Panel that displays the measurement tables
  */
 public class TablePage extends JPanel {
+    // Parts kept in the live tables and the in-memory session
+    private static final int LIVE_WINDOW = Math.max(1, Integer.getInteger("magpi.live.window", 500));
+    // "Next Part" takes the next number from PartNumberAllocator instead of asking
+    private static final boolean AUTO_PART_NUMBERS = Boolean
+            .parseBoolean(System.getProperty("magpi.partnumber.auto", "true"));
+
     private JTable headshotTable;
     private JTable coilshotTable;
     private PersistentColorTableModel headshotTableModel;
     private PersistentColorTableModel coilshotTableModel;
+    // Rows of each part, kept by insertNewPartRow and removeTopRows
+    private PartRowIndex headshotRows;
+    private PartRowIndex coilshotRows;
+    // Model column indices, looked up once from the column names
+    private int demagColumn;
+    private int statusColumn;
+    // Part acceptance, compiled by updateParameters
+    private AcceptanceEvaluator acceptance;
     private JLabel dateLabel;
     private JLabel startTimeLabel;
     private JLabel endTimeLabel;
@@ -36,6 +62,15 @@ public class TablePage extends JPanel {
     private JLabel Part_D;
     private JLabel operatorLabel;
     private JLabel calibrationStatusLabel;
+    // Line speed, fed by addPart and handleMeasurement and shown by throughputTimer
+    private final ThroughputTracker throughput = new ThroughputTracker();
+    private JLabel partsPerHourLabel;
+    private JLabel shotsPerMinuteLabel;
+    private JLabel cycleTimeLabel;
+    private JLabel retestTimeLabel;
+    private Timer throughputTimer;
+    // Latest part given to the SPC charts
+    private TestPart lastRecordedPart;
     private TestSession session;
     private SerialPortManager serialPortManager;
 
@@ -46,18 +81,54 @@ public class TablePage extends JPanel {
      */
     public TablePage(TestSession session) {
         this.session = session;
+        preloadHistory();
         initializeComponents();
         setupUI();
         setupSerialPort();
         updateParameters(); // Update parameter display
     }
 
+    /**
+     * Off the EDT, load the used part numbers of the session's description,
+     * so the first "Next Part" does not wait on the database, then fill the
+     * SPC charts from history before this session's parts are added to them.
+     * The SPC cutoff is taken here, before the session can save a part, so
+     * the backfill never reads a part whose shots are still arriving.
+     */
+    private void preloadHistory() {
+        String partDescription = session.getPartDescription();
+        try {
+            SpcEngine.get().takeCutoff();
+        } catch (Exception e) {
+            System.err.println("Error reading SPC cutoff: " + e.getMessage());
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                Storage.get().sessionParts().preload(partDescription);
+            } catch (Exception e) {
+                System.err.println("Error loading used part numbers: " + e.getMessage());
+            }
+            try {
+                SpcEngine.get().backfill();
+            } catch (Exception e) {
+                System.err.println("Error loading SPC history: " + e.getMessage());
+            }
+        }, "history-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
     private void initializeComponents() {
         String[] columnNames = {
                 "Part No", "Current 1", "T 1", "Current 2", "T 2",
                 "Current 3", "T 3", "Current 4", "T 4",
                 "Current 5", "T 5", "DeMag", "Status"
         };
+        demagColumn = java.util.Arrays.asList(columnNames).indexOf("DeMag");
+        statusColumn = columnNames.length - 1; // Status is last column in live TablePage
+        headshotRows = new PartRowIndex();
+        coilshotRows = new PartRowIndex();
+        acceptance = AcceptanceEvaluator.of(session.getHeadShotThreshold(), session.getCoilShotThreshold());
 
         // Initialize table models
         headshotTableModel = new PersistentColorTableModel(columnNames, 0) {
@@ -92,6 +163,14 @@ public class TablePage extends JPanel {
         calibrationStatusLabel = new JLabel();
         updateCalibrationStatus();
 
+        partsPerHourLabel = new JLabel();
+        shotsPerMinuteLabel = new JLabel();
+        cycleTimeLabel = new JLabel();
+        retestTimeLabel = new JLabel();
+        updateThroughput();
+        throughputTimer = new Timer(1000, e -> updateThroughput());
+        throughputTimer.start();
+
         // Initialize serial port manager
         serialPortManager = new SerialPortManager();
     }
@@ -167,6 +246,20 @@ public class TablePage extends JPanel {
         // buttonsPanel.add(videoStreamButton); // disabled
         headerPanel.add(buttonsPanel, gbc);
 
+        // Third row of header - line speed
+        JPanel throughputPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 20, 0));
+        throughputPanel.setOpaque(false);
+        Font throughputFont = new Font("Segoe UI", Font.PLAIN, 13);
+        throughputPanel.add(createStyledLabel(partsPerHourLabel, throughputFont));
+        throughputPanel.add(createStyledLabel(shotsPerMinuteLabel, throughputFont));
+        throughputPanel.add(createStyledLabel(cycleTimeLabel, throughputFont));
+        throughputPanel.add(createStyledLabel(retestTimeLabel, throughputFont));
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.gridwidth = 3;
+        gbc.weightx = 1;
+        headerPanel.add(throughputPanel, gbc);
+
         add(headerPanel, BorderLayout.NORTH);
 
         // Set up table panel with more padding and modern styling
@@ -233,6 +326,24 @@ public class TablePage extends JPanel {
         return panel;
     }
 
+    /**
+     * Refreshes the line speed labels; rates decay while no parts or shots come in
+     */
+    private void updateThroughput() {
+        long now = System.currentTimeMillis();
+        partsPerHourLabel.setText(String.format("Parts/h: %.1f", throughput.getPartsPerHour(now)));
+        shotsPerMinuteLabel.setText(String.format("Shots/min: %.1f", throughput.getShotsPerMinute(now)));
+        double cycle = throughput.getMeanCycleMillis();
+        cycleTimeLabel.setText("Mean Cycle: " + (Double.isNaN(cycle) ? "-" : formatMillis((long) cycle)));
+        retestTimeLabel.setText(String.format("Retest: %s (%.0f%%)", formatMillis(throughput.getRetestMillis()),
+                throughput.getRetestShare() * 100));
+    }
+
+    private static String formatMillis(long millis) {
+        long seconds = Math.round(millis / 1000d);
+        return seconds < 60 ? seconds + "s" : String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+
     /**
      * Styles a JLabel with the given font
      */
@@ -259,7 +370,6 @@ public class TablePage extends JPanel {
      */
     private void initializeStatusColumn(JTable table) {
         PersistentColorTableModel model = (PersistentColorTableModel) table.getModel();
-        int statusColumn = getStatusColumnIndex(model);
 
         for (int row = 0; row < model.getRowCount(); row++) {
             // Default color is light gray (neutral)
@@ -296,55 +406,80 @@ public class TablePage extends JPanel {
      */
     private void processMeasurement(Measurement measurement) {
         SwingUtilities.invokeLater(() -> {
-            // Ignore incoming measurements until a part is explicitly created via "Next
-            // Part"
-            if (session.getParts().isEmpty()) {
-                return;
+            long start = System.nanoTime();
+            try {
+                handleMeasurement(measurement);
+            } finally {
+                LiveTableMetrics.get().shot(System.nanoTime() - start);
             }
+        });
+    }
 
-            // Get the current part (most recent part)
-            int currentPartNumber = getCurrentPartNumber();
-            TestPart part = session.getPartByNumber(currentPartNumber);
-            if (part == null) {
-                // Safety check: if no part matches, skip this measurement
-                return;
-            }
+    /**
+     * Handles one shot on the EDT
+     */
+    private void handleMeasurement(Measurement measurement) {
+        // Ignore incoming measurements until a part is explicitly created via "Next
+        // Part"
+        if (session.getParts().isEmpty()) {
+            return;
+        }
 
-            // Determine shot index before adding
-            int shotIndex;
-            if ("Headshot".equals(measurement.getMeterType())) {
-                shotIndex = part.getHeadshotMeasurements().size();
-                part.addHeadshotMeasurement(measurement);
-                updateTableWithMeasurement(headshotTableModel, currentPartNumber,
-                        measurement.getCurrent(), measurement.getDuration());
-                updateStatusColor(headshotTableModel, currentPartNumber);
-            } else if ("Coilshot".equals(measurement.getMeterType())) {
-                shotIndex = part.getCoilshotMeasurements().size();
-                part.addCoilshotMeasurement(measurement);
-                updateTableWithMeasurement(coilshotTableModel, currentPartNumber,
-                        measurement.getCurrent(), measurement.getDuration());
-                updateStatusColor(coilshotTableModel, currentPartNumber);
-            } else {
-                shotIndex = 0;
-            }
+        // Get the current part (most recent part)
+        int currentPartNumber = getCurrentPartNumber();
+        TestPart part = session.getPartByNumber(currentPartNumber);
+        if (part == null) {
+            // Safety check: if no part matches, skip this measurement
+            return;
+        }
 
-            // Persist measurement
-            try {
-                if (part.getId() != null) {
-                    new com.magpi.db.MeasurementDao().insert(
-                            part.getId(),
-                            measurement.getMeterType(),
-                            shotIndex,
-                            measurement.getCurrent(),
-                            measurement.getDuration());
-                }
-            } catch (Exception ex) {
-                javax.swing.JOptionPane.showMessageDialog(this,
-                        "Failed to save measurement: " + ex.getMessage(),
-                        "Database Error",
-                        javax.swing.JOptionPane.ERROR_MESSAGE);
+        // Determine shot index before adding
+        int shotIndex;
+        if ("Headshot".equals(measurement.getMeterType())) {
+            shotIndex = part.getHeadshots().size();
+            part.addHeadshotMeasurement(measurement);
+            writeShot(headshotTableModel, currentPartNumber, measurement, true);
+        } else if ("Coilshot".equals(measurement.getMeterType())) {
+            shotIndex = part.getCoilshots().size();
+            part.addCoilshotMeasurement(measurement);
+            writeShot(coilshotTableModel, currentPartNumber, measurement, false);
+        } else {
+            shotIndex = 0;
+        }
+        throughput.shot(System.currentTimeMillis());
+
+        // Persist measurement
+        try {
+            if (part.getId() != null) {
+                Storage.get().measurements().insert(
+                        part.getId(),
+                        measurement.getMeterType(),
+                        shotIndex,
+                        measurement.getCurrent(),
+                        measurement.getDuration());
             }
-        });
+        } catch (Exception ex) {
+            javax.swing.JOptionPane.showMessageDialog(this,
+                    "Failed to save measurement: " + ex.getMessage(),
+                    "Database Error",
+                    javax.swing.JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Writes the shot and the row's status color as one batch, so the row
+     * is repainted once
+     */
+    private void writeShot(PersistentColorTableModel tableModel, int partNumber, Measurement measurement,
+            boolean headshot) {
+        tableModel.begin();
+        try {
+            updateTableWithMeasurement(tableModel, partNumber,
+                    measurement.getCurrent(), measurement.getDuration(), headshot);
+            updateStatusColor(tableModel, partNumber);
+        } finally {
+            tableModel.commit();
+        }
     }
 
     private int getCurrentPartNumber() {
@@ -358,100 +493,155 @@ public class TablePage extends JPanel {
         // Part identifier cell that can display recheck suffix
         rowData[0] = new com.magpi.ui.util.PartIdCell(part.getPartNumber(), part.getRecheckCount());
 
-        int statusCol = getStatusColumnIndex(tableModel);
-
         // Clear measurement cells
-        for (int i = 1; i < statusCol; i++) {
-            if ("DeMag".equals(tableModel.getColumnName(i))) {
-                rowData[i] = "No";
-            } else {
-                rowData[i] = "";
-            }
+        for (int i = 1; i < statusColumn; i++) {
+            rowData[i] = i == demagColumn ? "No" : NumericCell.EMPTY;
         }
 
         // Default status only (live page)
-        rowData[statusCol] = "";
+        rowData[statusColumn] = "";
 
         tableModel.addRow(rowData);
+        rowsOf(tableModel).add(part.getPartNumber(), tableModel.getRowCount() - 1);
+    }
+
+    /**
+     * Adds the part to the session and both tables, then drops the oldest
+     * parts beyond the live window from memory. They are already saved, so
+     * the history still shows them.
+     */
+    private void addPart(TestPart part) {
+        recordFinishedPart();
+        throughput.partStarted(System.currentTimeMillis(), part.getRecheckCount() > 0);
+        session.addPart(part);
+        persistPartIfPossible(part);
+        insertNewPartRow(headshotTableModel, part);
+        insertNewPartRow(coilshotTableModel, part);
+
+        int evicted = session.evictOldest(LIVE_WINDOW);
+        if (evicted > 0) {
+            removeTopRows(headshotTableModel, evicted);
+            removeTopRows(coilshotTableModel, evicted);
+        }
+    }
+
+    /**
+     * Adds the latest part to the SPC charts, once, when it is done
+     */
+    private void recordFinishedPart() {
+        if (session.getParts().isEmpty())
+            return;
+        TestPart last = session.getParts().get(session.getParts().size() - 1);
+        if (last != lastRecordedPart) {
+            lastRecordedPart = last;
+            SpcEngine.get().partFinished(last, acceptance);
+        }
+    }
+
+    private void removeTopRows(PersistentColorTableModel tableModel, int count) {
+        count = Math.min(count, tableModel.getRowCount());
+        if (count <= 0)
+            return;
+        PartRowIndex rows = rowsOf(tableModel);
+        for (int r = 0; r < count; r++) {
+            Object id = tableModel.getValueAt(r, 0);
+            rows.removeTop(((com.magpi.ui.util.PartIdCell) id).getBasePartNumber());
+        }
+        // One DELETE event instead of a removeRow per row
+        tableModel.getDataVector().subList(0, count).clear();
+        tableModel.fireTableRowsDeleted(0, count - 1);
+    }
+
+    private PartRowIndex rowsOf(PersistentColorTableModel tableModel) {
+        return tableModel == headshotTableModel ? headshotRows : coilshotRows;
+    }
+
+    /**
+     * Latest row (highest recheck) for a base part number, or -1
+     */
+    private int latestRow(PersistentColorTableModel tableModel, int partNumber) {
+        return rowsOf(tableModel).latest(partNumber);
     }
 
+    /**
+     * Write a shot into the part's row and classify it right away: GREEN when
+     * it passes the acceptance rules (by default current >= threshold), RED
+     * otherwise. The renderer only paints the saved color.
+     */
     private void updateTableWithMeasurement(PersistentColorTableModel tableModel,
-            int partNumber, double current, double duration) {
-        // Find the row for this part
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            if (tableModel.getValueAt(i, 0).equals(partNumber)) {
-                // Find the first empty current column
-                for (int col = 1; col < tableModel.getColumnCount() - 1; col += 2) {
-                    if (tableModel.getValueAt(i, col).equals("")) {
-                        tableModel.setValueAt(current, i, col);
-                        tableModel.setValueAt(String.format("%.3f", duration), i, col + 1);
-                        return;
-                    }
+            int partNumber, double current, double duration, boolean headshot) {
+        // Rows of this part, original first
+        PartRowIndex rows = rowsOf(tableModel);
+        for (int k = 0, n = rows.count(partNumber); k < n; k++) {
+            int i = rows.row(partNumber, k);
+            // Find the first empty current column
+            for (int col = 1; col < statusColumn; col += 2) {
+                if (NumericCell.isEmpty(tableModel.getValueAt(i, col))) {
+                    tableModel.setValueAt(NumericCell.of(current, 2), i, col);
+                    tableModel.setValueAt(NumericCell.of(duration, 3), i, col + 1);
+                    tableModel.setCellColor(i, col, acceptance.shotPasses(headshot, current, duration) ? Color.GREEN : Color.RED);
+                    return;
                 }
             }
         }
     }
 
     private void updateStatusColor(PersistentColorTableModel tableModel, int partNumber) {
-        // Find the row for this part (search from bottom so latest retest row is used)
-        for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-            if (tableModel.getValueAt(i, 0).equals(partNumber)) {
-                int statusCol = getStatusColumnIndex(tableModel);
-
-                // Check if status text is "Crack" - if so, set orange and return
-                Object statusValue = tableModel.getValueAt(i, statusCol);
-                if (statusValue != null && "Crack".equalsIgnoreCase(statusValue.toString())) {
-                    tableModel.setCellColor(i, statusCol, new Color(255, 165, 0)); // Orange
-                    return;
-                }
+        // Latest retest row for this part
+        int i = latestRow(tableModel, partNumber);
+        if (i < 0)
+            return;
 
-                boolean hasRedValue = false;
-                boolean hasValidValue = false;
-
-                // Check if any current value is red
-                for (int col = 1; col < statusCol; col += 2) {
-                    Object value = tableModel.getValueAt(i, col);
-                    if (value != null && !value.equals("")) {
-                        hasValidValue = true;
-                        Color color = tableModel.getCellColor(i, col);
-                        if (color != null && Color.RED.equals(color)) {
-                            hasRedValue = true;
-                            break;
-                        }
-                    }
-                }
+        // Check if status text is "Crack" - if so, set orange and return
+        Object statusValue = tableModel.getValueAt(i, statusColumn);
+        if (statusValue != null && "Crack".equalsIgnoreCase(statusValue.toString())) {
+            tableModel.setCellColor(i, statusColumn, new Color(255, 165, 0)); // Orange
+            return;
+        }
 
-                // Update status cell background color only (text is controlled by workflow)
-                if (hasValidValue) {
-                    if (hasRedValue) {
-                        tableModel.setCellColor(i, statusCol, Color.RED);
-                    } else {
-                        tableModel.setCellColor(i, statusCol, Color.GREEN);
-                    }
+        boolean hasRedValue = false;
+        boolean hasValidValue = false;
+
+        // Check if any current value is red
+        for (int col = 1; col < statusColumn; col += 2) {
+            Object value = tableModel.getValueAt(i, col);
+            if (!NumericCell.isEmpty(value)) {
+                hasValidValue = true;
+                Color color = tableModel.getCellColor(i, col);
+                if (color != null && Color.RED.equals(color)) {
+                    hasRedValue = true;
+                    break;
                 }
+            }
+        }
 
-                // Update part status in the model and DB (PASS/ERROR based on measurements
-                // only)
-                TestPart part = session.getPartByNumber(partNumber);
-                if (part != null) {
-                    // FIX: Don't overwrite if status is already "Crack" or "Retest"
-                    String currentStatus = part.getStatus();
-                    if ("Crack".equalsIgnoreCase(currentStatus) || "Retest".equalsIgnoreCase(currentStatus)) {
-                        return;
-                    }
-
-                    String st = hasRedValue ? "ERROR" : "PASS";
-                    part.setStatus(st);
-                    if (part.getId() != null) {
-                        try {
-                            new com.magpi.db.SessionPartDao().updateStatus(part.getId(), st);
-                        } catch (Exception ignored) {
-                        }
-                    }
-                }
+        // Update status cell background color only (text is controlled by workflow)
+        if (hasValidValue) {
+            if (hasRedValue) {
+                tableModel.setCellColor(i, statusColumn, Color.RED);
+            } else {
+                tableModel.setCellColor(i, statusColumn, Color.GREEN);
+            }
+        }
 
+        // Update part status in the model and DB (PASS/ERROR based on measurements
+        // only)
+        TestPart part = session.getPartByNumber(partNumber);
+        if (part != null) {
+            // FIX: Don't overwrite if status is already "Crack" or "Retest"
+            String currentStatus = part.getStatus();
+            if ("Crack".equalsIgnoreCase(currentStatus) || "Retest".equalsIgnoreCase(currentStatus)) {
                 return;
             }
+
+            String st = hasRedValue ? "ERROR" : "PASS";
+            part.setStatus(st);
+            if (part.getId() != null) {
+                try {
+                    Storage.get().sessionParts().updateStatus(part.getId(), st);
+                } catch (Exception ignored) {
+                }
+            }
         }
     }
 
@@ -459,8 +649,7 @@ public class TablePage extends JPanel {
         // Determine current part and evaluate status before moving on
         if (!session.getParts().isEmpty()) {
             int currentPartNumber = getCurrentPartNumber();
-            boolean hasRed = hasAnyRedForPart(headshotTableModel, currentPartNumber) ||
-                    hasAnyRedForPart(coilshotTableModel, currentPartNumber);
+            boolean hasRed = failsAcceptance(currentPartNumber);
 
             if (hasRed) {
                 // Any red cell -> mark status as Error with RED background
@@ -473,7 +662,7 @@ public class TablePage extends JPanel {
                     part.setStatus("ERROR");
                     if (part.getId() != null) {
                         try {
-                            new com.magpi.db.SessionPartDao().updateStatus(part.getId(), "ERROR");
+                            Storage.get().sessionParts().updateStatus(part.getId(), "ERROR");
                         } catch (Exception ignored) {
                         }
                     }
@@ -497,18 +686,15 @@ public class TablePage extends JPanel {
                         part.setStatus("Retest");
                         if (part.getId() != null) {
                             try {
-                                new com.magpi.db.SessionPartDao().updateStatus(part.getId(), "Retest");
+                                Storage.get().sessionParts().updateStatus(part.getId(), "Retest");
                             } catch (Exception ignored) {
                             }
                         }
                     }
 
                     TestPart newRecheckPart = new TestPart(currentPartNumber, session.getPartDescription());
-                    newRecheckPart.setRecheckCount(countRechecksFor(currentPartNumber) + 1);
-                    session.addPart(newRecheckPart);
-                    persistPartIfPossible(newRecheckPart);
-                    insertNewPartRow(headshotTableModel, newRecheckPart);
-                    insertNewPartRow(coilshotTableModel, newRecheckPart);
+                    newRecheckPart.setRecheckCount(session.getRecheckCount(currentPartNumber) + 1);
+                    addPart(newRecheckPart);
                     return;
                 }
             } else {
@@ -542,7 +728,7 @@ public class TablePage extends JPanel {
                         part.setStatus(st);
                         if (part.getId() != null) {
                             try {
-                                com.magpi.db.SessionPartDao dao = new com.magpi.db.SessionPartDao();
+                                com.magpi.db.SessionPartRepository dao = Storage.get().sessionParts();
                                 dao.updateStatus(part.getId(), st);
                                 dao.updateCrackDetected(part.getId(), cracksFound);
                             } catch (Exception ignored) {
@@ -567,7 +753,7 @@ public class TablePage extends JPanel {
                                 part.setCrackImagePath(imagePath);
                                 if (part.getId() != null) {
                                     try {
-                                        new com.magpi.db.SessionPartDao().updateCrackImagePath(part.getId(), imagePath);
+                                        Storage.get().sessionParts().updateCrackImagePath(part.getId(), imagePath);
                                     } catch (Exception ignored) {
                                     }
                                 }
@@ -596,7 +782,7 @@ public class TablePage extends JPanel {
 
                         if (part.getId() != null) {
                             try {
-                                new com.magpi.db.SessionPartDao().updateDemagStatus(part.getId(), "Done");
+                                Storage.get().sessionParts().updateDemagStatus(part.getId(), "Done");
                             } catch (Exception ignored) {
                             }
                         }
@@ -611,7 +797,7 @@ public class TablePage extends JPanel {
                         part.setStatus("Retest");
                         if (part.getId() != null) {
                             try {
-                                new com.magpi.db.SessionPartDao().updateStatus(part.getId(), "Retest");
+                                Storage.get().sessionParts().updateStatus(part.getId(), "Retest");
                             } catch (Exception ignored) {
                             }
                         }
@@ -620,23 +806,37 @@ public class TablePage extends JPanel {
                     // Create a new row for the same part number, with a recheck suffix (e.g. 124-1,
                     // 124-2)
                     TestPart retestPart = new TestPart(currentPartNumber, session.getPartDescription());
-                    retestPart.setRecheckCount(countRechecksFor(currentPartNumber) + 1);
-                    session.addPart(retestPart);
-                    persistPartIfPossible(retestPart);
-                    insertNewPartRow(headshotTableModel, retestPart);
-                    insertNewPartRow(coilshotTableModel, retestPart);
+                    retestPart.setRecheckCount(session.getRecheckCount(currentPartNumber) + 1);
+                    addPart(retestPart);
                     // Skip prompting for a new part number; user will now measure this retest row
                     return;
                 }
             }
         }
 
-        // Now prompt for the new part number (re-prompt on invalid/duplicate)
+        if (AUTO_PART_NUMBERS) {
+            try {
+                int partNumber = Storage.get().partNumbers().next(session.getPartDescription(), station(),
+                        session::containsPartNumber);
+                addPart(new TestPart(partNumber, session.getPartDescription()));
+                return;
+            } catch (Exception e) {
+                // Fall back to asking the operator
+                System.err.println("Error allocating a part number: " + e.getMessage());
+            }
+        }
+
+        // Now prompt for the new part number (re-prompt on invalid/duplicate),
+        // offering the next number not used for this description
+        String suggestion = suggestPartNumber();
         while (true) {
-            String input = JOptionPane.showInputDialog(this,
+            String input = (String) JOptionPane.showInputDialog(this,
                     "Enter Part Number:",
                     "New Part",
-                    JOptionPane.QUESTION_MESSAGE);
+                    JOptionPane.QUESTION_MESSAGE,
+                    null,
+                    null,
+                    suggestion);
 
             // User cancelled or closed dialog
             if (input == null || input.trim().isEmpty()) {
@@ -647,7 +847,7 @@ public class TablePage extends JPanel {
                 int partNumber = Integer.parseInt(input.trim());
 
                 // Check if part already exists in the current session
-                if (session.getPartByNumber(partNumber) != null) {
+                if (session.containsPartNumber(partNumber)) {
                     JOptionPane.showMessageDialog(this,
                             "Part number " + partNumber + " already exists in this session.",
                             "Duplicate Part",
@@ -659,7 +859,7 @@ public class TablePage extends JPanel {
                 // Check if part number/description already exists in history (any previous
                 // session)
                 try {
-                    com.magpi.db.SessionPartDao dao = new com.magpi.db.SessionPartDao();
+                    com.magpi.db.SessionPartRepository dao = Storage.get().sessionParts();
                     if (dao.existsPartNumberForDescription(partNumber, session.getPartDescription())) {
                         JOptionPane.showMessageDialog(this,
                                 "Part number " + partNumber + " for part '" + session.getPartDescription()
@@ -680,12 +880,7 @@ public class TablePage extends JPanel {
 
                 // Create new part
                 TestPart part = new TestPart(partNumber, session.getPartDescription());
-                session.addPart(part);
-                persistPartIfPossible(part);
-
-                // Add to tables
-                insertNewPartRow(headshotTableModel, part);
-                insertNewPartRow(coilshotTableModel, part);
+                addPart(part);
 
                 // Successfully created part, exit loop
                 break;
@@ -700,13 +895,35 @@ public class TablePage extends JPanel {
         }
     }
 
+    private String station() {
+        return session.getMachineId() == null ? "" : session.getMachineId().trim();
+    }
+
+    /**
+     * The first part number after the current one that is free in this
+     * session and in history, empty if it cannot be determined
+     */
+    private String suggestPartNumber() {
+        try {
+            com.magpi.db.SessionPartRepository dao = Storage.get().sessionParts();
+            int after = session.getParts().isEmpty() ? -1 : getCurrentPartNumber();
+            int next = dao.nextFreePartNumber(after, session.getPartDescription());
+            while (session.containsPartNumber(next))
+                next = dao.nextFreePartNumber(next, session.getPartDescription());
+            return String.valueOf(next);
+        } catch (Exception e) {
+            System.err.println("Error suggesting a part number: " + e.getMessage());
+            return "";
+        }
+    }
+
     /**
      * Ensures a TestPart is persisted to the database and has an ID if possible.
      */
     private void persistPartIfPossible(TestPart part) {
         try {
             if (part != null && part.getId() == null && session.getId() != null) {
-                long pid = new com.magpi.db.SessionPartDao().insert(session.getId(), part);
+                long pid = Storage.get().sessionParts().insert(session.getId(), part);
                 part.setId(pid);
             }
         } catch (Exception ex) {
@@ -724,26 +941,23 @@ public class TablePage extends JPanel {
      * the latest row for that base part number is updated.
      */
     private void updateStatusWithCrackInfo(PersistentColorTableModel tableModel, int partNumber, boolean cracksFound) {
-        for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-            if (tableModel.getValueAt(i, 0).equals(partNumber)) {
-                int statusCol = getStatusColumnIndex(tableModel);
-
-                // Update the text only; keep whatever background color is already set
-                // Show "Crack" when user explicitly reports a crack, otherwise "Pass".
-                String statusText = cracksFound ? "Crack" : "Pass";
-                tableModel.setValueAt(statusText, i, statusCol);
-
-                // Set color: Orange for crack, Green for pass (if no color set yet)
-                if (cracksFound) {
-                    // Always set orange for crack status
-                    tableModel.setCellColor(i, statusCol, new Color(255, 165, 0));
-                } else {
-                    // Only set green if no color exists yet
-                    if (tableModel.getCellColor(i, statusCol) == null) {
-                        tableModel.setCellColor(i, statusCol, Color.GREEN);
-                    }
-                }
-                return;
+        int i = latestRow(tableModel, partNumber);
+        if (i < 0)
+            return;
+
+        // Update the text only; keep whatever background color is already set
+        // Show "Crack" when user explicitly reports a crack, otherwise "Pass".
+        String statusText = cracksFound ? "Crack" : "Pass";
+        tableModel.setValueAt(statusText, i, statusColumn);
+
+        // Set color: Orange for crack, Green for pass (if no color set yet)
+        if (cracksFound) {
+            // Always set orange for crack status
+            tableModel.setCellColor(i, statusColumn, new Color(255, 165, 0));
+        } else {
+            // Only set green if no color exists yet
+            if (tableModel.getCellColor(i, statusColumn) == null) {
+                tableModel.setCellColor(i, statusColumn, Color.GREEN);
             }
         }
     }
@@ -755,19 +969,26 @@ public class TablePage extends JPanel {
 
         parametersLabel.setText(String.format("Parameters: Headshot (%.2f), Coilshot (%.2f)",
                 session.getHeadShotThreshold(), session.getCoilShotThreshold()));
-
-        // Update table renderers with new thresholds
-        updateTableRenderers();
+        // New shots are classified with these thresholds and the rules the
+        // session was started with, as the history judges them later
+        AcceptanceRules rules = AcceptanceRules.NONE;
+        try {
+            rules = session.getId() != null ? Storage.get().parameters().getSessionRules(session.getId())
+                    : Storage.get().parameters().getRules(session.getPartDescription());
+        } catch (Exception e) {
+            System.err.println("Failed to load acceptance rules: " + e.getMessage());
+        }
+        acceptance = rules.compile(session.getHeadShotThreshold(), session.getCoilShotThreshold());
     }
 
     private void updateTableRenderers() {
-        headshotTable.setDefaultRenderer(Object.class,
-                new CustomCellRenderer(session.getHeadShotThreshold(), headshotTableModel));
-        coilshotTable.setDefaultRenderer(Object.class,
-                new CustomCellRenderer(session.getCoilShotThreshold(), coilshotTableModel));
+        headshotTable.setDefaultRenderer(Object.class, new CustomCellRenderer(headshotTableModel));
+        coilshotTable.setDefaultRenderer(Object.class, new CustomCellRenderer(coilshotTableModel));
     }
 
     private void endTest() {
+        throughput.completePart();
+        recordFinishedPart();
         // Only ask about cracks for the last part if it exists
         if (!session.getParts().isEmpty()) {
             // Get the last part (this will be the latest retest if any exist)
@@ -779,8 +1000,7 @@ public class TablePage extends JPanel {
                 int partNumber = lastPart.getPartNumber();
 
                 // NEW REQUIREMENT: Check for red cells first
-                boolean hasRed = hasAnyRedForPart(headshotTableModel, partNumber) ||
-                        hasAnyRedForPart(coilshotTableModel, partNumber);
+                boolean hasRed = failsAcceptance(partNumber);
 
                 if (hasRed) {
                     // If clicked when any cell is red, don't ask for crack found, just put Error
@@ -793,7 +1013,7 @@ public class TablePage extends JPanel {
 
                     if (lastPart.getId() != null) {
                         try {
-                            new com.magpi.db.SessionPartDao().updateStatus(lastPart.getId(), st);
+                            Storage.get().sessionParts().updateStatus(lastPart.getId(), st);
                         } catch (Exception ignored) {
                         }
                     }
@@ -833,7 +1053,7 @@ public class TablePage extends JPanel {
                                 lastPart.setCrackImagePath(imagePath);
                                 if (lastPart.getId() != null) {
                                     try {
-                                        new com.magpi.db.SessionPartDao().updateCrackImagePath(lastPart.getId(),
+                                        Storage.get().sessionParts().updateCrackImagePath(lastPart.getId(),
                                                 imagePath);
                                     } catch (Exception ignored) {
                                     }
@@ -862,7 +1082,7 @@ public class TablePage extends JPanel {
 
                     if (lastPart.getId() != null) {
                         try {
-                            new com.magpi.db.SessionPartDao().updateDemagStatus(lastPart.getId(), "Done");
+                            Storage.get().sessionParts().updateDemagStatus(lastPart.getId(), "Done");
                         } catch (Exception ignored) {
                         }
                     }
@@ -872,7 +1092,7 @@ public class TablePage extends JPanel {
                     lastPart.setStatus(st);
                     if (lastPart.getId() != null) {
                         try {
-                            new com.magpi.db.SessionPartDao().updateStatus(lastPart.getId(), st);
+                            Storage.get().sessionParts().updateStatus(lastPart.getId(), st);
                         } catch (Exception ignored) {
                         }
                     }
@@ -880,9 +1100,6 @@ public class TablePage extends JPanel {
             }
         }
 
-        // Transfer all data to history before ending session
-        transferCurrentPartsToHistory();
-
         session.endTest();
         endTimeLabel.setText("End Time: " +
                 session.getEndTime().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
@@ -891,10 +1108,13 @@ public class TablePage extends JPanel {
             if (session.getId() != null) {
                 String ts = session.getEndTime()
                         .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                new com.magpi.db.SessionDao().setEndTime(session.getId(), ts);
+                Storage.get().sessions().setEndTime(session.getId(), ts);
+                ParquetExporter.getInstance().exportPendingAsync();
             }
         } catch (Exception ignored) {
         }
+        // After the end time is saved, so the history reads it with the parts
+        transferCurrentPartsToHistory();
 
         JOptionPane.showMessageDialog(this,
                 "Session ended. All data has been transferred to the history page.\nYou can now view the history and export reports.",
@@ -903,155 +1123,17 @@ public class TablePage extends JPanel {
     }
 
     /**
-     * Transfer all existing parts in the table to history
+     * Show the session's parts in the history. They were saved to the database
+     * as they were tested, so the history only appends this session's rows.
      */
     private void transferCurrentPartsToHistory() {
-        // Process headshot table
-        transferTableToHistory(headshotTableModel, session.getHistoryPanel().getHeadshotHistoryTableModel());
-
-        // Process coilshot table
-        transferTableToHistory(coilshotTableModel, session.getHistoryPanel().getCoilshotHistoryTableModel());
-
-        // Add metadata for each part from the current session
-        java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter
-                .ofPattern("yyyy-MM-dd HH:mm:ss");
-        for (com.magpi.model.TestPart part : session.getParts()) {
-            session.getHistoryPanel().addPartMetadata(
-                    session.getOperatorName(),
-                    session.getSupervisorId(),
-                    part.getTestTime().format(formatter),
-                    session.getCompanyName(),
-                    session.getMachineId(),
-                    session.getPartDescription(),
-                    session.getHeadShotThreshold(),
-                    session.getCoilShotThreshold(),
-                    session.getStartTime().format(formatter),
-                    session.getEndTime() != null ? session.getEndTime().format(formatter) : "",
-                    part.getCrackImagePath(),
-                    part.getDemagStatus());
-        }
-
-        // Rebuild the visible Part Test History table from the updated hidden tables
-        session.getHistoryPanel().rebuildPartHistoryTable();
-    }
-
-    /**
-     * Transfer all rows from source table to history table
-     */
-    private void transferTableToHistory(PersistentColorTableModel sourceModel,
-            PersistentColorTableModel historyModel) {
-        // Process each row in the source table
-        for (int sourceRow = 0; sourceRow < sourceModel.getRowCount(); sourceRow++) {
-            // Get the part number for this row (support PartIdCell)
-            Object partObj = sourceModel.getValueAt(sourceRow, 0);
-
-            // Skip rows that don't have any data
-            boolean hasData = false;
-            for (int col = 1; col < sourceModel.getColumnCount() - 1; col += 2) {
-                Object value = sourceModel.getValueAt(sourceRow, col);
-                if (value != null && !value.toString().isEmpty()) {
-                    hasData = true;
-                    break;
-                }
-            }
-
-            if (!hasData) {
-                continue;
-            }
-
-            // Always append to history (don't check for duplicates)
-            // Each row in the table represents a unique test (including retests)
-            copyRowToHistoryTable(sourceModel, sourceRow, historyModel);
-        }
-    }
-
-    /**
-     * Updates values in an existing history row
-     */
-    private void updateHistoryRow(PersistentColorTableModel sourceModel, int sourceRow,
-            PersistentColorTableModel historyModel, int historyRow) {
-        int srcStatusCol = getStatusColumnIndex(sourceModel);
-        int histStatusCol = historyModel.getColumnCount() - 3;
-        int histCrackCol = historyModel.getColumnCount() - 2;
-        int histDetailsCol = historyModel.getColumnCount() - 1;
-
-        // Part number
-        historyModel.setValueAt(sourceModel.getValueAt(sourceRow, 0), historyRow, 0);
-        Color c0 = sourceModel.getCellColor(sourceRow, 0);
-        if (c0 != null)
-            historyModel.setCellColor(historyRow, 0, c0);
-
-        // Measurements
-        for (int col = 1; col < srcStatusCol; col++) {
-            Object v = sourceModel.getValueAt(sourceRow, col);
-            historyModel.setValueAt(v, historyRow, col);
-            Color cc = sourceModel.getCellColor(sourceRow, col);
-            if (cc != null)
-                historyModel.setCellColor(historyRow, col, cc);
-        }
-
-        // Status
-        Object st = sourceModel.getValueAt(sourceRow, srcStatusCol);
-        historyModel.setValueAt(st, historyRow, histStatusCol);
-        Color sc = sourceModel.getCellColor(sourceRow, srcStatusCol);
-        if (sc != null)
-            historyModel.setCellColor(historyRow, histStatusCol, sc);
-
-        // Crack and Details defaults
-        historyModel.setValueAt("", historyRow, histCrackCol);
-        historyModel.setValueAt("Details", historyRow, histDetailsCol);
-
-        // Fire table changed to update the UI
-        historyModel.fireTableRowsUpdated(historyRow, historyRow);
-    }
-
-    /**
-     * Copies a row from a source table to a history table
-     * 
-     * @param sourceModel  The source table model
-     * @param sourceRow    The row to copy
-     * @param historyModel The destination table model
-     */
-    private void copyRowToHistoryTable(PersistentColorTableModel sourceModel,
-            int sourceRow,
-            PersistentColorTableModel historyModel) {
-        int srcStatusCol = getStatusColumnIndex(sourceModel);
-        int histStatusCol = historyModel.getColumnCount() - 3;
-        int histCrackCol = historyModel.getColumnCount() - 2;
-        int histDetailsCol = historyModel.getColumnCount() - 1;
-
-        Object[] rowData = new Object[historyModel.getColumnCount()];
-        // Part number
-        rowData[0] = sourceModel.getValueAt(sourceRow, 0);
-        // Measurements
-        for (int col = 1; col < srcStatusCol; col++) {
-            rowData[col] = sourceModel.getValueAt(sourceRow, col);
-        }
-        // Status
-        rowData[histStatusCol] = sourceModel.getValueAt(sourceRow, srcStatusCol);
-        // Defaults for new columns
-        rowData[histCrackCol] = "";
-        rowData[histDetailsCol] = "Details";
-
-        // Add the row to the history table
-        historyModel.addRow(rowData);
-
-        // Copy cell colors
-        int historyRow = historyModel.getRowCount() - 1;
-        // Part number color
-        Color c0 = sourceModel.getCellColor(sourceRow, 0);
-        if (c0 != null)
-            historyModel.setCellColor(historyRow, 0, c0);
-        // Measurement colors
-        for (int col = 1; col < srcStatusCol; col++) {
-            Color cc = sourceModel.getCellColor(sourceRow, col);
-            if (cc != null)
-                historyModel.setCellColor(historyRow, col, cc);
+        if (session.getHistoryPanel() == null)
+            return;
+        if (session.getId() != null) {
+            session.getHistoryPanel().appendSession(session.getId());
+        } else {
+            session.getHistoryPanel().refreshHistory();
         }
-        // Status color
-        Color sc = sourceModel.getCellColor(sourceRow, srcStatusCol);
-        if (sc != null)
-            historyModel.setCellColor(historyRow, histStatusCol, sc);
     }
 
     private void styleTable(JTable table) {
@@ -1080,8 +1162,7 @@ public class TablePage extends JPanel {
             // Time columns
             table.getColumnModel().getColumn(i + 1).setPreferredWidth(80);
         }
-        table.getColumnModel().getColumn(getStatusColumnIndex((PersistentColorTableModel) table.getModel()))
-                .setPreferredWidth(100); // Status
+        table.getColumnModel().getColumn(statusColumn).setPreferredWidth(100); // Status
 
         // Prevent column resizing and reordering
         table.getTableHeader().setResizingAllowed(false);
@@ -1146,31 +1227,21 @@ public class TablePage extends JPanel {
      * Shuts down the table page and releases resources
      */
     public void shutdown() {
+        throughputTimer.stop();
         if (serialPortManager != null) {
             serialPortManager.stopReading();
             serialPortManager.closeConnection();
         }
     }
 
-    private int getStatusColumnIndex(PersistentColorTableModel model) {
-        return model.getColumnCount() - 1; // Status is last column in live TablePage
-    }
-
-    private boolean hasAnyRedForPart(PersistentColorTableModel model, int partNumber) {
-        // Search from bottom so we inspect the latest row for this part (e.g., 3-2 over
-        // 3-1 over 3)
-        for (int i = model.getRowCount() - 1; i >= 0; i--) {
-            if (model.getValueAt(i, 0).equals(partNumber)) {
-                int statusCol = getStatusColumnIndex(model);
-                for (int col = 1; col < statusCol; col += 2) {
-                    Color c = model.getCellColor(i, col);
-                    if (Color.RED.equals(c))
-                        return true;
-                }
-                return false;
-            }
-        }
-        return false;
+    /**
+     * Whether the latest test of the part (e.g. 3-2 over 3-1 over 3) fails the
+     * acceptance rules: a red shot, too few shots or meters that disagree.
+     * Reads the running aggregates of its shots, not the table.
+     */
+    private boolean failsAcceptance(int partNumber) {
+        TestPart part = session.getPartByNumber(partNumber);
+        return part != null && !acceptance.partPasses(part.getHeadshots(), part.getCoilshots());
     }
 
     /**
@@ -1181,64 +1252,35 @@ public class TablePage extends JPanel {
      * (e.g., 3, 3-1, 3-2), the latest row gets updated.
      */
     private void setStatusText(PersistentColorTableModel model, int partNumber, String text) {
-        for (int i = model.getRowCount() - 1; i >= 0; i--) {
-            if (model.getValueAt(i, 0).equals(partNumber)) {
-                int statusCol = getStatusColumnIndex(model);
-                model.setValueAt(text, i, statusCol);
-                return;
-            }
-        }
+        int i = latestRow(model, partNumber);
+        if (i >= 0)
+            model.setValueAt(text, i, statusColumn);
     }
 
     private void setDeMagStatus(PersistentColorTableModel model, int partNumber, String status) {
-        for (int i = model.getRowCount() - 1; i >= 0; i--) {
-            if (model.getValueAt(i, 0).equals(partNumber)) {
-                // Find DeMag column index in model
-                int demagCol = -1;
-                for (int c = 0; c < model.getColumnCount(); c++) {
-                    if ("DeMag".equals(model.getColumnName(c))) {
-                        demagCol = c;
-                        break;
-                    }
-                }
-                if (demagCol != -1) {
-                    model.setValueAt(status, i, demagCol);
-                    if ("Done".equalsIgnoreCase(status)) {
-                        model.setCellColor(i, demagCol, Color.GREEN);
-                    }
-                }
-                return;
-            }
+        int i = latestRow(model, partNumber);
+        if (i < 0 || demagColumn == -1)
+            return;
+        model.setValueAt(status, i, demagColumn);
+        if ("Done".equalsIgnoreCase(status)) {
+            model.setCellColor(i, demagColumn, Color.GREEN);
         }
     }
 
     private void applyErrorStatusForPart(PersistentColorTableModel model, int partNumber) {
         // Apply error to the latest row for this base part number
-        for (int i = model.getRowCount() - 1; i >= 0; i--) {
-            if (model.getValueAt(i, 0).equals(partNumber)) {
-                int statusCol = getStatusColumnIndex(model);
-                model.setValueAt("Error", i, statusCol);
-                model.setCellColor(i, statusCol, Color.RED);
-                return;
-            }
-        }
-    }
-
-    private int countRechecksFor(int basePartNumber) {
-        int count = 0;
-        for (com.magpi.model.TestPart p : session.getParts()) {
-            if (p.getPartNumber() == basePartNumber && p.getRecheckCount() > 0) {
-                count = Math.max(count, p.getRecheckCount());
-            }
-        }
-        return count;
+        int i = latestRow(model, partNumber);
+        if (i < 0)
+            return;
+        model.setValueAt("Error", i, statusColumn);
+        model.setCellColor(i, statusColumn, Color.RED);
     }
 
     /**
      * Update the calibration status indicator
      */
     private void updateCalibrationStatus() {
-        CalibrationDao dao = new CalibrationDao();
+        CalibrationRepository dao = Storage.get().calibration();
         boolean hasCalibration = dao.hasCalibrationForToday();
 
         if (hasCalibration) {
@@ -1258,4 +1300,46 @@ public class TablePage extends JPanel {
     public void refreshCalibrationStatus() {
         updateCalibrationStatus();
     }
+
+    /**
+     * Model rows of the live table by base part number. Rows are appended in
+     * test order and only removed from the top, so a part's rows run from the
+     * original (recheck 0) to its latest retest.
+     */
+    private static final class PartRowIndex {
+        // Rows are stored counting evicted ones, so removing rows from the
+        // top does not renumber the index
+        private final Map<Integer, List<Integer>> byBase = new HashMap<>();
+        private int removed;
+
+        void add(int partNumber, int row) {
+            byBase.computeIfAbsent(partNumber, k -> new ArrayList<>(1)).add(removed + row);
+        }
+
+        int latest(int partNumber) {
+            List<Integer> rows = byBase.get(partNumber);
+            return rows != null ? rows.get(rows.size() - 1) - removed : -1;
+        }
+
+        int count(int partNumber) {
+            List<Integer> rows = byBase.get(partNumber);
+            return rows != null ? rows.size() : 0;
+        }
+
+        /** The part's k-th row, original first */
+        int row(int partNumber, int k) {
+            return byBase.get(partNumber).get(k) - removed;
+        }
+
+        /** Forget the top row of the model, which belongs to the given part */
+        void removeTop(int partNumber) {
+            List<Integer> rows = byBase.get(partNumber);
+            if (rows != null) {
+                rows.remove(0);
+                if (rows.isEmpty())
+                    byBase.remove(partNumber);
+            }
+            removed++;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.magpi.ui;
+
+import com.magpi.db.analytics.AnalyticsQueries;
+import com.magpi.db.analytics.ParquetExporter;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Monthly current trends per part description, read from the Parquet
+ * analytics store
+ */
+public class TrendsDialog extends JDialog {
+    private final JComboBox<String> meterCombo = new JComboBox<>(new String[] { "Headshot", "Coilshot" });
+    private final JTextField fromField = new JTextField(YearMonth.now().minusYears(3).toString(), 7);
+    private final JTextField toField = new JTextField(YearMonth.now().toString(), 7);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final DefaultTableModel model = new DefaultTableModel(
+            new String[] { "Month", "Part Description", "Shots", "Avg Current", "Min Current", "Max Current",
+                    "Avg Duration" },
+            0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public TrendsDialog(Frame owner) {
+        super(owner, "Monthly Trends", true);
+        setupUI();
+        setSize(800, 500);
+        setLocationRelativeTo(owner);
+    }
+
+    private void setupUI() {
+        setLayout(new BorderLayout());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        controls.add(new JLabel("Meter:"));
+        controls.add(meterCombo);
+        controls.add(new JLabel("From (YYYY-MM):"));
+        controls.add(fromField);
+        controls.add(new JLabel("To:"));
+        controls.add(toField);
+        JButton runButton = new JButton("Run");
+        runButton.addActionListener(e -> runQuery(runButton));
+        controls.add(runButton);
+        add(controls, BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    private void runQuery(JButton runButton) {
+        String meter = (String) meterCombo.getSelectedItem();
+        String from = fromField.getText().trim();
+        String to = toField.getText().trim();
+        runButton.setEnabled(false);
+        statusLabel.setText("Exporting new sessions and querying...");
+
+        new SwingWorker<List<AnalyticsQueries.MonthlyStat>, Void>() {
+            private long elapsedMs;
+
+            @Override
+            protected List<AnalyticsQueries.MonthlyStat> doInBackground() throws Exception {
+                ParquetExporter.getInstance().exportPending();
+                long t0 = System.nanoTime();
+                List<AnalyticsQueries.MonthlyStat> stats = new AnalyticsQueries()
+                        .monthlyCurrentByDescription(meter, from, to);
+                elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+                return stats;
+            }
+
+            @Override
+            protected void done() {
+                runButton.setEnabled(true);
+                try {
+                    List<AnalyticsQueries.MonthlyStat> stats = get();
+                    model.setRowCount(0);
+                    for (AnalyticsQueries.MonthlyStat s : stats) {
+                        model.addRow(new Object[] { s.month, s.partDescription, s.shots,
+                                String.format("%.1f", s.avgCurrent), String.format("%.1f", s.minCurrent),
+                                String.format("%.1f", s.maxCurrent), String.format("%.2f", s.avgDuration) });
+                    }
+                    statusLabel.setText(stats.size() + " row(s) in " + elapsedMs + " ms");
+                } catch (Exception ex) {
+                    statusLabel.setText("Query failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+}
@@ -0,0 +1,13 @@
+package com.magpi.ui.table;
+
+import java.awt.*;
+
+/**
+ * Supplies the saved background color of a table cell
+ */
+public interface CellColorSource {
+    /**
+     * @return the color of the cell (model indices), or null if none is set
+     */
+    Color getCellColor(int row, int col);
+}
@@ -0,0 +1,114 @@
+package com.magpi.ui.table;
+
+import com.magpi.db.HistoryFilter;
+
+import javax.swing.*;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Row sorter for {@link PagedHistoryTableModel} that sorts in the database:
+ * clicking a header changes the ORDER BY of the model's filter instead of
+ * sorting rows in memory. View and model rows are always the same, and the
+ * header still shows the sort arrow.
+ */
+public class PagedHistoryRowSorter extends RowSorter<PagedHistoryTableModel> {
+    private final PagedHistoryTableModel model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+
+    public PagedHistoryRowSorter(PagedHistoryTableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public PagedHistoryTableModel getModel() {
+        return model;
+    }
+
+    /**
+     * First click sorts ascending, further clicks flip the direction
+     */
+    @Override
+    public void toggleSortOrder(int column) {
+        if (PagedHistoryTableModel.sortForColumn(column) == null)
+            return;
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        setSortKeys(Collections.singletonList(new SortKey(column, order)));
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        HistoryFilter.Sort sort = HistoryFilter.Sort.DATE;
+        boolean descending = false;
+        if (keys != null && !keys.isEmpty()) {
+            SortKey key = keys.get(0);
+            HistoryFilter.Sort s = PagedHistoryTableModel.sortForColumn(key.getColumn());
+            if (s != null && key.getSortOrder() != SortOrder.UNSORTED) {
+                sort = s;
+                descending = key.getSortOrder() == SortOrder.DESCENDING;
+                sortKeys = Collections.singletonList(key);
+            } else {
+                sortKeys = Collections.emptyList();
+            }
+        } else {
+            sortKeys = Collections.emptyList();
+        }
+        model.setSort(sort, descending);
+        fireSortOrderChanged();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return index;
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        return index;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    // Rows come back from the database already in order; nothing to redo
+
+    @Override
+    public void modelStructureChanged() {
+    }
+
+    @Override
+    public void allRowsChanged() {
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+    }
+}
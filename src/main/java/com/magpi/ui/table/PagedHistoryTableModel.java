@@ -0,0 +1,618 @@
+package com.magpi.ui.table;
+
+import com.magpi.db.HistoryColumns;
+import com.magpi.db.HistoryDao;
+import com.magpi.db.HistoryFilter;
+import com.magpi.ui.util.PartIdCell;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Part Test History model that reads rows from the database on demand.
+ * Nothing is read on the event dispatch thread: a {@link PageLoader} worker
+ * per filter fetches the first page, then the row count, then a few pages
+ * ahead, and afterwards any page the table asks for, publishing each page as
+ * it arrives. Rows that are not loaded yet show a placeholder. Pages are
+ * {@link HistoryColumns} stores sharing one string dictionary per filter,
+ * kept in a small LRU cache; pages following a known row are read by keyset
+ * (created_at, id) and jumps fall back to OFFSET. Parts saved after the
+ * filter was read are added with {@link #appendSession(long)}.
+ *
+ * Must be used on the event dispatch thread.
+ */
+public class PagedHistoryTableModel extends AbstractTableModel implements CellColorSource {
+    public static final String[] COLUMNS = {
+            "Part No", "Headshot", "CoilShot", "DeMag", "Part Description", "Date & Time", "Operator", "Details"
+    };
+    public static final int PAGE_SIZE = 200;
+    public static final String LOADING = "Loading...";
+    private static final int MAX_CACHED_PAGES = 16;
+    // Pages read after the first one when a filter is applied
+    private static final int READ_AHEAD_PAGES = 4;
+    // Older page requests are dropped when scrolling faster than pages load
+    private static final int MAX_QUEUED_PAGES = 4;
+    // Wait before reading a page again after its query failed, e.g. on a
+    // write lock held by the archive tool or another station
+    private static final int RETRY_DELAY_MS = 2000;
+
+    /**
+     * Notified on the event dispatch thread while pages are loading
+     */
+    public interface LoadListener {
+        /**
+         * @param loading    true while pages are being read
+         * @param loadedRows rows read so far for the current filter
+         * @param targetRows rows the current load is heading for, -1 while the
+         *                   row count is not known yet
+         */
+        void loadProgress(boolean loading, int loadedRows, int targetRows);
+    }
+
+    private HistoryFilter filter = new HistoryFilter();
+    private int rowCount;
+    private boolean countKnown;
+    // Highest part id covered by rowCount; parts saved later have higher ids
+    private long maxId;
+    private AppendLoader appender;
+    // Bumped on refresh so results of an older loader are dropped
+    private int generation;
+    private PageLoader loader;
+    private LoadListener loadListener;
+    private boolean loading;
+    private int loadedRows;
+    private int targetRows;
+
+    // Strings of all pages read for the current filter
+    private HistoryColumns.Dictionary dictionary;
+    private final Map<Integer, HistoryColumns> pages = new LinkedHashMap<Integer, HistoryColumns>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HistoryColumns> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // Key of the last row before page n, recorded whenever page n-1 is read;
+    // read by the loader thread
+    private final Map<Integer, HistoryDao.Key> anchors = new ConcurrentHashMap<>();
+    private final Set<Integer> requested = new HashSet<>();
+    // Requested pages that are only prefetches, so they do not prefetch again
+    private final Set<Integer> prefetches = new HashSet<>();
+    // Requested pages that may have been read before an append; dropped on
+    // arrival and read again when shown
+    private final Set<Integer> staleRequests = new HashSet<>();
+
+    public PagedHistoryTableModel() {
+        refresh();
+    }
+
+    /**
+     * Set the progress listener; it is told the current state right away
+     */
+    public void setLoadListener(LoadListener listener) {
+        this.loadListener = listener;
+        notifyProgress(loading);
+    }
+
+    /**
+     * Cancel any running load, drop all cached pages and start reading the
+     * current filter again
+     */
+    public void refresh() {
+        if (loader != null) {
+            loader.cancel(true);
+            loader.cancelQuery();
+        }
+        generation++;
+        dictionary = new HistoryColumns.Dictionary();
+        pages.clear();
+        anchors.clear();
+        requested.clear();
+        prefetches.clear();
+        staleRequests.clear();
+        rowCount = 0;
+        countKnown = false;
+        maxId = 0;
+        appender = null;
+        loadedRows = 0;
+        targetRows = -1;
+        fireTableDataChanged();
+
+        loader = new PageLoader(generation, filter, dictionary);
+        notifyProgress(true);
+        loader.execute();
+    }
+
+    /**
+     * Add the parts saved since the filter was read, normally those of the
+     * session that just ended, without reading the rest of the history again.
+     * In date order they follow the last row: one count over the new ids and
+     * a single rows-inserted event, and the rows load like any other page
+     * once shown. Cached pages holding earlier parts of the session are
+     * dropped so their status and end time are read again. Other orders, or
+     * a filter whose count is still loading, are refreshed instead.
+     */
+    public void appendSession(long sessionId) {
+        if (!countKnown || appender != null || filter.sort != HistoryFilter.Sort.DATE || filter.descending) {
+            refresh();
+            return;
+        }
+        appender = new AppendLoader(generation, filter, maxId, sessionId);
+        appender.execute();
+    }
+
+    private void appended(long firstId, HistoryDao.Count added) {
+        int old = rowCount;
+        List<Integer> dropped = new ArrayList<>();
+        for (Map.Entry<Integer, HistoryColumns> e : pages.entrySet()) {
+            // The partial last page continues with the new rows
+            boolean stale = (e.getKey() + 1) * PAGE_SIZE > old;
+            HistoryColumns page = e.getValue();
+            for (int r = 0; r < page.size() && !stale && firstId > 0; r++)
+                stale = page.id(r) >= firstId;
+            if (stale)
+                dropped.add(e.getKey());
+        }
+        for (Integer pageNo : dropped)
+            pages.remove(pageNo);
+        staleRequests.addAll(requested);
+
+        rowCount = old + added.rows;
+        maxId = added.maxId;
+        if (added.rows > 0)
+            fireTableRowsInserted(old, rowCount - 1);
+        for (Integer pageNo : dropped) {
+            int first = pageNo * PAGE_SIZE;
+            if (first < old)
+                fireTableRowsUpdated(first, Math.min(first + PAGE_SIZE, old) - 1);
+        }
+    }
+
+    /**
+     * Apply new criteria; the current sort order is kept
+     */
+    public void setFilter(HistoryFilter filter) {
+        filter.sort = this.filter.sort;
+        filter.descending = this.filter.descending;
+        this.filter = filter;
+        refresh();
+    }
+
+    public HistoryFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Read the current filter in another order
+     */
+    public void setSort(HistoryFilter.Sort sort, boolean descending) {
+        if (filter.sort == sort && filter.descending == descending)
+            return;
+        filter.sort = sort;
+        filter.descending = descending;
+        refresh();
+    }
+
+    /**
+     * Database order for a column, or null if the column cannot be sorted
+     */
+    public static HistoryFilter.Sort sortForColumn(int col) {
+        switch (col) {
+            case 0:
+                return HistoryFilter.Sort.PART_NUMBER;
+            case 1:
+            case 2:
+                return HistoryFilter.Sort.STATUS;
+            case 3:
+                return HistoryFilter.Sort.DEMAG;
+            case 4:
+                return HistoryFilter.Sort.DESCRIPTION;
+            case 5:
+                return HistoryFilter.Sort.DATE;
+            case 6:
+                return HistoryFilter.Sort.OPERATOR;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The loaded page holding the given model row, or null while it is
+     * loading; the row is at {@link #pageIndex(int)} in the page
+     */
+    public HistoryColumns getPage(int row) {
+        if (row < 0 || row >= rowCount)
+            return null;
+        int pageNo = row / PAGE_SIZE;
+        HistoryColumns page = pages.get(pageNo);
+        if (page == null) {
+            request(pageNo, true);
+            return null;
+        }
+        return pageIndex(row) < page.size() ? page : null;
+    }
+
+    public static int pageIndex(int row) {
+        return row % PAGE_SIZE;
+    }
+
+    private void request(int pageNo, boolean urgent) {
+        if (pageNo < 0 || (countKnown && pageNo * PAGE_SIZE >= rowCount) || pages.containsKey(pageNo)
+                || !requested.add(pageNo))
+            return;
+        if (!urgent)
+            prefetches.add(pageNo);
+        loader.request(pageNo, urgent);
+        notifyProgress(true);
+    }
+
+    /**
+     * Apply a page published by the loader
+     */
+    private void pageLoaded(int pageNo, HistoryColumns page) {
+        requested.remove(pageNo);
+        boolean prefetch = prefetches.remove(pageNo);
+        if (staleRequests.remove(pageNo)) {
+            int first = pageNo * PAGE_SIZE;
+            if (first < rowCount)
+                fireTableRowsUpdated(first, Math.min(first + PAGE_SIZE, rowCount) - 1);
+            return;
+        }
+        pages.put(pageNo, page);
+        if (page.size() == PAGE_SIZE)
+            anchors.put(pageNo + 1, page.endKey());
+        loadedRows += page.size();
+
+        int first = pageNo * PAGE_SIZE;
+        int last = first + page.size() - 1;
+        if (!countKnown && last >= rowCount) {
+            // Rows become visible before the count query has finished
+            int old = rowCount;
+            rowCount = last + 1;
+            fireTableRowsInserted(old, rowCount - 1);
+        } else if (page.size() > 0) {
+            fireTableRowsUpdated(first, last);
+        }
+        // Past the read-ahead window, pages are read on demand; queue the
+        // page after one the table asked for behind anything on screen
+        if (!prefetch && pageNo > READ_AHEAD_PAGES && page.size() == PAGE_SIZE)
+            request(pageNo + 1, false);
+    }
+
+    /**
+     * A page query failed: forget the request and show the rows again after
+     * a pause, which asks for the page again if they are still on screen
+     */
+    private void pageFailed(int pageNo) {
+        requested.remove(pageNo);
+        prefetches.remove(pageNo);
+        staleRequests.remove(pageNo);
+        int gen = generation;
+        javax.swing.Timer retry = new javax.swing.Timer(RETRY_DELAY_MS, e -> {
+            int first = pageNo * PAGE_SIZE;
+            if (gen == generation && !pages.containsKey(pageNo) && first < rowCount)
+                fireTableRowsUpdated(first, Math.min(first + PAGE_SIZE, rowCount) - 1);
+        });
+        retry.setRepeats(false);
+        retry.start();
+    }
+
+    private void countLoaded(int count, long maxId) {
+        countKnown = true;
+        this.maxId = maxId;
+        int old = rowCount;
+        rowCount = count;
+        if (count > old) {
+            fireTableRowsInserted(old, count - 1);
+        } else if (count < old) {
+            fireTableRowsDeleted(count, old - 1);
+        }
+        targetRows = Math.min(count, (READ_AHEAD_PAGES + 1) * PAGE_SIZE);
+    }
+
+    private void notifyProgress(boolean loading) {
+        this.loading = loading;
+        if (loadListener != null) {
+            loadListener.loadProgress(loading, loadedRows, targetRows);
+        }
+    }
+
+    /**
+     * Reads pages for one filter. Publishes the first page, then the row
+     * count, then the read-ahead pages, then serves page requests (newest
+     * first) until it is cancelled.
+     */
+    private class PageLoader extends SwingWorker<Void, PageLoader.Chunk> {
+        /** A loaded page, or the row count when page is null */
+        class Chunk {
+            final int pageNo;
+            final HistoryColumns page;
+            final int count;
+            final long maxId;
+            final boolean idle;
+            final boolean failed;
+
+            Chunk(int pageNo, HistoryColumns page, int count, long maxId, boolean idle) {
+                this(pageNo, page, count, maxId, idle, false);
+            }
+
+            Chunk(int pageNo, HistoryColumns page, int count, long maxId, boolean idle, boolean failed) {
+                this.pageNo = pageNo;
+                this.page = page;
+                this.count = count;
+                this.maxId = maxId;
+                this.idle = idle;
+                this.failed = failed;
+            }
+        }
+
+        private final int gen;
+        private final HistoryFilter filter;
+        private final HistoryColumns.Dictionary dict;
+        private final HistoryDao dao = new HistoryDao();
+        private final BlockingDeque<Integer> queue = new LinkedBlockingDeque<>();
+
+        PageLoader(int gen, HistoryFilter filter, HistoryColumns.Dictionary dict) {
+            this.gen = gen;
+            this.filter = filter;
+            this.dict = dict;
+        }
+
+        /**
+         * Interrupt the query in flight so a cancelled loader stops at once
+         */
+        void cancelQuery() {
+            dao.cancel();
+        }
+
+        /**
+         * Queue a page; urgent requests (rows on screen) are served before
+         * prefetches. Called on the event dispatch thread.
+         */
+        void request(int pageNo, boolean urgent) {
+            if (urgent) {
+                queue.offerFirst(pageNo);
+                while (queue.size() > MAX_QUEUED_PAGES) {
+                    Integer dropped = queue.pollLast();
+                    if (dropped != null) {
+                        requested.remove(dropped);
+                        prefetches.remove(dropped);
+                    }
+                }
+            } else {
+                queue.offerLast(pageNo);
+            }
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            HistoryColumns first = dao.page(filter, dict, null, 0, PAGE_SIZE);
+            publish(new Chunk(0, first, -1, 0, false));
+            int count;
+            long maxId = 0;
+            if (first.size() > 0 && first.size() < PAGE_SIZE) {
+                // Every matching part is on the page, so parts saved later
+                // have higher ids than any of them
+                count = first.size();
+                for (int r = 0; r < count; r++)
+                    maxId = Math.max(maxId, first.id(r));
+            } else {
+                HistoryDao.Count c = dao.count(filter);
+                count = c.rows;
+                maxId = c.maxId;
+            }
+            publish(new Chunk(-1, null, count, maxId, false));
+
+            HistoryDao.Key after = first.size() == PAGE_SIZE ? first.endKey() : null;
+            int pageCount = (count + PAGE_SIZE - 1) / PAGE_SIZE;
+            for (int p = 1; p <= READ_AHEAD_PAGES && p < pageCount && after != null && !isCancelled(); p++) {
+                HistoryColumns page = readPage(p, after, false);
+                if (page == null)
+                    break; // the rest are read on demand
+                after = page.size() == PAGE_SIZE ? page.endKey() : null;
+            }
+            publish(new Chunk(-1, null, -1, 0, true));
+
+            while (!isCancelled()) {
+                Integer p = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (p != null)
+                    readPage(p, anchors.get(p), true);
+            }
+            return null;
+        }
+
+        /**
+         * Read and publish one page. A failed query is reported as such and
+         * the loader carries on, so one busy database does not stop it.
+         *
+         * @param serving whether serving requests, where an empty queue means idle
+         * @return the page, or null if its query failed
+         */
+        private HistoryColumns readPage(int p, HistoryDao.Key after, boolean serving) {
+            try {
+                HistoryColumns page = dao.page(filter, dict, after, p * PAGE_SIZE, PAGE_SIZE);
+                publish(new Chunk(p, page, -1, 0, serving && queue.isEmpty()));
+                return page;
+            } catch (java.sql.SQLException e) {
+                if (!isCancelled()) {
+                    System.err.println("Error loading history page " + p + ": " + e.getMessage());
+                    publish(new Chunk(p, null, -1, 0, serving && queue.isEmpty(), true));
+                }
+                return null;
+            }
+        }
+
+        @Override
+        protected void process(List<Chunk> chunks) {
+            if (gen != generation)
+                return;
+            for (Chunk c : chunks) {
+                if (c.failed) {
+                    pageFailed(c.pageNo);
+                } else if (c.page != null) {
+                    pageLoaded(c.pageNo, c.page);
+                } else if (c.count >= 0) {
+                    countLoaded(c.count, c.maxId);
+                }
+                if (c.idle) {
+                    notifyProgress(!requested.isEmpty());
+                } else {
+                    notifyProgress(true);
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (gen != generation || isCancelled())
+                return;
+            try {
+                get();
+            } catch (Exception e) {
+                // The first page or the count failed; nothing serves requests
+                // any more, so start over after a pause
+                System.err.println("Error loading history: " + e.getMessage());
+                requested.clear();
+                prefetches.clear();
+                notifyProgress(false);
+                javax.swing.Timer retry = new javax.swing.Timer(RETRY_DELAY_MS, ev -> {
+                    if (gen == generation)
+                        refresh();
+                });
+                retry.setRepeats(false);
+                retry.start();
+            }
+        }
+    }
+
+    /**
+     * Counts the parts saved after maxId for {@link #appendSession(long)}
+     */
+    private class AppendLoader extends SwingWorker<HistoryDao.Count, Void> {
+        private final int gen;
+        private final HistoryFilter filter;
+        private final long afterId;
+        private final long sessionId;
+        private long firstId;
+
+        AppendLoader(int gen, HistoryFilter filter, long afterId, long sessionId) {
+            this.gen = gen;
+            this.filter = filter;
+            this.afterId = afterId;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        protected HistoryDao.Count doInBackground() throws Exception {
+            HistoryDao dao = new HistoryDao();
+            firstId = dao.firstPartId(sessionId);
+            return dao.countAfter(filter, afterId);
+        }
+
+        @Override
+        protected void done() {
+            if (appender == this)
+                appender = null;
+            if (gen != generation)
+                return;
+            try {
+                appended(firstId, get());
+            } catch (Exception e) {
+                System.err.println("Error appending to history: " + e.getMessage());
+                refresh();
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        HistoryColumns p = getPage(row);
+        if (p == null)
+            return col == 4 ? LOADING : "";
+        int r = pageIndex(row);
+        switch (col) {
+            case 0:
+                return new PartIdCell(p.partNumber(r), p.recheckIndex(r));
+            case 1:
+            case 2:
+                return formatStatusText(p.status(r));
+            case 3:
+                return p.demagStatus(r);
+            case 4:
+                return nullToEmpty(p.partDescription(r));
+            case 5:
+                return nullToEmpty(p.createdAt(r));
+            case 6:
+                return nullToEmpty(p.operatorName(r));
+            default:
+                return "Details";
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    @Override
+    public Color getCellColor(int row, int col) {
+        if (col < 1 || col > 3)
+            return null;
+        HistoryColumns p = getPage(row);
+        if (p == null)
+            return null;
+        int r = pageIndex(row);
+        if (col == 3)
+            return p.isDemagDone(r) ? Color.GREEN : null;
+        return statusColor(p, r, col == 1);
+    }
+
+    /**
+     * Status cell color of one meter: red if any shot is below the threshold or
+     * the part ended in ERROR, green otherwise (a crack keeps green shots green)
+     */
+    public static Color statusColor(HistoryColumns p, int r, boolean headshot) {
+        return p.hasRed(r, headshot) || p.isError(r) ? Color.RED : Color.GREEN;
+    }
+
+    /**
+     * Format status text to match Table page style (Pass/Error/retest instead of
+     * PASS/ERROR)
+     */
+    public static String formatStatusText(String status) {
+        if (status == null || status.isEmpty())
+            return "";
+
+        String upper = status.toUpperCase();
+        if ("PASS".equals(upper))
+            return "Pass";
+        if ("ERROR".equals(upper))
+            return "Error";
+        if ("RETEST".equals(upper))
+            return "retest";
+
+        // Return as-is for other values
+        return status;
+    }
+}
@@ -1,16 +1,48 @@
 package com.magpi.ui.table;
 
+import com.magpi.util.LiveTableMetrics;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Table model that preserves cell colors between renderings
+ * Table model that preserves cell colors between renderings.
+ *
+ * Each cell keeps one byte: an index into a small palette of the colors used
+ * by this model, 0 for none. The bytes are stored row by row in one array
+ * that shifts with the rows, so colors follow their rows through addRow,
+ * insertRow, removeRow, moveRow and setRowCount, and reading a color
+ * allocates nothing.
+ *
+ * Between {@link #begin()} and {@link #commit()} cell updates do not fire
+ * events; the touched rows are collected and reported with one
+ * fireTableRowsUpdated per run of rows once the current EDT event is done,
+ * so several writes to a row in one frame cost one repaint.
  */
-public class PersistentColorTableModel extends DefaultTableModel {
-    private Map<Point, Color> cellColors = new HashMap<>();
-    
+public class PersistentColorTableModel extends DefaultTableModel implements CellColorSource {
+    // Palette codes are unsigned bytes; 0 means no color
+    private static final int MAX_COLORS = 255;
+
+    private byte[] cells;
+    // Columns per row in cells
+    private int stride;
+    // Rows covered by cells
+    private int rows;
+    private Color[] palette;
+    // Palette code per color, including colors mapped to a nearest entry
+    private Map<Color, Integer> codes;
+
+    // Batched updates
+    private int batchDepth;
+    private final BitSet touched = new BitSet();
+    private boolean flushPending;
+
     /**
      * Creates a new PersistentColorTableModel with the given column names and row count
      * @param columnNames Array of column names
@@ -18,18 +50,68 @@ public class PersistentColorTableModel extends DefaultTableModel {
      */
     public PersistentColorTableModel(String[] columnNames, int rowCount) {
         super(columnNames, rowCount);
+        palette = new Color[1];
+        codes = new HashMap<>();
+        stride = getColumnCount();
+        rows = getRowCount();
+        cells = new byte[Math.max(16, rows) * stride];
     }
-    
+
     /**
-     * Sets a color for a specific cell
+     * Sets a color for a specific cell; cells outside the table are ignored.
+     * A table holds up to 255 distinct colors; further colors are shown as
+     * the closest one already in use.
      * @param row The row index
      * @param col The column index
-     * @param color The color to set
+     * @param color The color to set, or null to remove it
      */
     public void setCellColor(int row, int col, Color color) {
-        cellColors.put(new Point(row, col), color);
+        if (row < 0 || row >= rows || col < 0 || col >= stride)
+            return;
+        cells[row * stride + col] = (byte) code(color);
+        if (batchDepth > 0)
+            touched.set(row);
+    }
+
+    /**
+     * Starts a batch of cell updates; batches nest. Call on the EDT.
+     */
+    public void begin() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch. When the outermost batch ends, the touched rows are
+     * reported after the current EDT event, together with any other batch
+     * committed in the same event.
+     */
+    public void commit() {
+        if (batchDepth == 0)
+            throw new IllegalStateException("commit without begin");
+        if (--batchDepth == 0 && !touched.isEmpty() && !flushPending) {
+            flushPending = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    /**
+     * Fires the updates collected by committed batches
+     */
+    private void flush() {
+        flushPending = false;
+        // Still inside a batch begun after the commit; its commit flushes
+        if (batchDepth > 0 || touched.isEmpty())
+            return;
+        int first = touched.nextSetBit(0);
+        while (first >= 0) {
+            int end = touched.nextClearBit(first);
+            touched.clear(first, end);
+            if (first < rows)
+                fireTableRowsUpdated(first, Math.min(end, rows) - 1);
+            first = touched.nextSetBit(end);
+        }
     }
-    
+
     /**
      * Gets the color for a specific cell
      * @param row The row index
@@ -37,22 +119,169 @@ public class PersistentColorTableModel extends DefaultTableModel {
      * @return The color of the cell, or null if no color is set
      */
     public Color getCellColor(int row, int col) {
-        return cellColors.get(new Point(row, col));
+        if (row < 0 || row >= rows || col < 0 || col >= stride)
+            return null;
+        return palette[cells[row * stride + col] & 0xFF];
     }
-    
+
     /**
      * Clears all cell colors
      */
     public void clearCellColors() {
-        cellColors.clear();
+        Arrays.fill(cells, (byte) 0);
     }
-    
+
     /**
      * Removes a specific cell color
      * @param row The row index
      * @param col The column index
      */
     public void removeCellColor(int row, int col) {
-        cellColors.remove(new Point(row, col));
+        setCellColor(row, col, null);
+    }
+
+    @Override
+    public void moveRow(int start, int end, int to) {
+        // DefaultTableModel reports a move as an update, so rotate the colors here
+        if (cells != null && start >= 0 && end < rows && start <= end && to >= 0 && to + end - start < rows) {
+            int count = end - start + 1;
+            byte[] moved = Arrays.copyOfRange(cells, start * stride, (end + 1) * stride);
+            if (to < start) {
+                System.arraycopy(cells, to * stride, cells, (to + count) * stride, (start - to) * stride);
+            } else if (to > start) {
+                System.arraycopy(cells, (end + 1) * stride, cells, start * stride, (to - start) * stride);
+            }
+            System.arraycopy(moved, 0, cells, to * stride, moved.length);
+        }
+        super.moveRow(start, end, to);
+    }
+
+    /**
+     * Shifts the colors with inserted and deleted rows before listeners see
+     * the change
+     */
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        // Called from the superclass constructor before the fields are set
+        if (cells != null) {
+            if (batchDepth > 0 && e.getType() == TableModelEvent.UPDATE && e.getFirstRow() >= 0
+                    && e.getLastRow() < rows) {
+                // Reported when the batch is flushed
+                touched.set(e.getFirstRow(), e.getLastRow() + 1);
+                return;
+            }
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW || getColumnCount() != stride) {
+                relayout(getColumnCount());
+            } else if (e.getType() == TableModelEvent.INSERT) {
+                insertRows(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+            } else if (e.getType() == TableModelEvent.DELETE) {
+                deleteRows(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+            }
+            // Anything that changed the rows without saying which
+            if (rows != getRowCount())
+                resizeRows(getRowCount());
+        }
+        LiveTableMetrics.get().tableEvent();
+        super.fireTableChanged(e);
+    }
+
+    private int code(Color color) {
+        if (color == null)
+            return 0;
+        Integer code = codes.get(color);
+        if (code == null) {
+            if (palette.length - 1 == MAX_COLORS) {
+                code = nearest(color);
+                System.err.println("More than " + MAX_COLORS + " cell colors in one table; showing " + color
+                        + " as " + palette[code]);
+            } else {
+                code = palette.length;
+                palette = Arrays.copyOf(palette, code + 1);
+                palette[code] = color;
+            }
+            codes.put(color, code);
+        }
+        return code;
+    }
+
+    /**
+     * Palette code of the color closest to the given one in RGB
+     */
+    private int nearest(Color color) {
+        int best = 1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int c = 1; c < palette.length; c++) {
+            long dr = palette[c].getRed() - color.getRed();
+            long dg = palette[c].getGreen() - color.getGreen();
+            long db = palette[c].getBlue() - color.getBlue();
+            long distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private void insertRows(int at, int count) {
+        if (at < 0 || at > rows || count <= 0)
+            return;
+        ensureCapacity(rows + count);
+        System.arraycopy(cells, at * stride, cells, (at + count) * stride, (rows - at) * stride);
+        Arrays.fill(cells, at * stride, (at + count) * stride, (byte) 0);
+        rows += count;
+        shiftTouched(at, count);
+    }
+
+    private void deleteRows(int at, int count) {
+        if (at < 0 || at >= rows || count <= 0)
+            return;
+        count = Math.min(count, rows - at);
+        System.arraycopy(cells, (at + count) * stride, cells, at * stride, (rows - at - count) * stride);
+        Arrays.fill(cells, (rows - count) * stride, rows * stride, (byte) 0);
+        rows -= count;
+        shiftTouched(at, -count);
+    }
+
+    private void resizeRows(int newRows) {
+        if (newRows > rows) {
+            insertRows(rows, newRows - rows);
+        } else {
+            deleteRows(newRows, rows - newRows);
+        }
+    }
+
+    /**
+     * Keep pending row updates on their rows when rows are inserted
+     * (delta > 0) or deleted (delta < 0) at the given index
+     */
+    private void shiftTouched(int at, int delta) {
+        if (touched.isEmpty() || at >= touched.length())
+            return;
+        int from = delta > 0 ? at : at - delta;
+        BitSet moved = touched.get(Math.min(from, touched.length()), touched.length());
+        touched.clear(at, touched.length());
+        int to = delta > 0 ? at + delta : at;
+        for (int r = moved.nextSetBit(0); r >= 0; r = moved.nextSetBit(r + 1))
+            touched.set(to + r);
+    }
+
+    /**
+     * Keep each color at its row and column when the column count changes
+     */
+    private void relayout(int newStride) {
+        if (newStride == stride)
+            return;
+        byte[] old = cells;
+        cells = new byte[Math.max(16, rows) * newStride];
+        int keep = Math.min(stride, newStride);
+        for (int r = 0; r < rows; r++)
+            System.arraycopy(old, r * stride, cells, r * newStride, keep);
+        stride = newStride;
+    }
+
+    private void ensureCapacity(int rowCapacity) {
+        if (rowCapacity * stride > cells.length)
+            cells = Arrays.copyOf(cells, Math.max(rowCapacity, rows * 2) * stride);
     }
-} 
\ No newline at end of file
+}
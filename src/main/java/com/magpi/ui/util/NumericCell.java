@@ -0,0 +1,106 @@
+package com.magpi.ui.util;
+
+/**
+ * Table cell value for a number shown with a fixed number of decimals.
+ *
+ * The value is kept as a double and only turned into text when the cell is
+ * first painted (or exported), then the text is reused. {@link #EMPTY} marks
+ * a cell with no value yet.
+ */
+public final class NumericCell {
+    public static final NumericCell EMPTY = new NumericCell(Double.NaN, 0);
+
+    private static final long[] POW10 = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+
+    private final double value;
+    private final int scale;
+    private String text;
+
+    private NumericCell(double value, int scale) {
+        this.value = value;
+        this.scale = scale;
+    }
+
+    /**
+     * @param scale Decimals shown, 0 to 6
+     */
+    public static NumericCell of(double value, int scale) {
+        if (scale < 0 || scale >= POW10.length)
+            throw new IllegalArgumentException("scale " + scale);
+        return new NumericCell(value, scale);
+    }
+
+    /**
+     * Whether a cell holds no value: null, {@link #EMPTY} or an empty string
+     */
+    public static boolean isEmpty(Object cell) {
+        return cell == null || cell == EMPTY || "".equals(cell);
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    @Override
+    public String toString() {
+        if (this == EMPTY)
+            return "";
+        String t = text;
+        if (t == null) {
+            t = format(value, scale);
+            text = t;
+        }
+        return t;
+    }
+
+    /**
+     * Formats like {@code String.format("%.<scale>f", value)} with '.' as
+     * the decimal separator, rounding half up, without a Formatter
+     */
+    public static String format(double value, int scale) {
+        long pow = POW10[scale];
+        double scaled = Math.abs(value) * pow;
+        // Out of long range or not a number: leave it to the JDK
+        if (!(scaled < 9.0e18))
+            return String.format(java.util.Locale.US, "%." + scale + "f", value);
+        long whole = (long) scaled;
+        double frac = scaled - whole;
+        // Close to a half: round the shortest decimal form of the value, as
+        // String.format does, not its binary expansion
+        if (Math.abs(frac - 0.5) < 1e-6)
+            return java.math.BigDecimal.valueOf(value).setScale(scale, java.math.RoundingMode.HALF_UP)
+                    .toPlainString();
+        long units = frac < 0.5 ? whole : whole + 1;
+        StringBuilder sb = new StringBuilder(24);
+        if (Double.compare(value, 0.0) < 0)
+            sb.append('-');
+        sb.append(units / pow);
+        if (scale > 0) {
+            sb.append('.');
+            String decimals = Long.toString(units % pow);
+            for (int i = decimals.length(); i < scale; i++)
+                sb.append('0');
+            sb.append(decimals);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof NumericCell))
+            return false;
+        NumericCell other = (NumericCell) obj;
+        return Double.compare(value, other.value) == 0 && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value) * 31 + scale;
+    }
+}
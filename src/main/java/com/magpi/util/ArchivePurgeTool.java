@@ -0,0 +1,396 @@
+package com.magpi.util;
+
+import com.magpi.db.Database;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Retention tool: archives the parts tested in a date range to a gzip'd CSV
+ * file, then deletes them in small transactions so the application can keep
+ * writing while it runs, and finally returns the freed pages with
+ * incremental_vacuum.
+ *
+ * Usage: ArchivePurgeTool fromDate toDate [archiveFile] [--chunk=N] [--include-open] [--convert-vacuum]
+ * Dates are yyyy-MM-dd, local and inclusive. Parts of sessions that have not
+ * ended are skipped unless --include-open is given.
+ *
+ * A session is archived with its parts in the range, or when it has none and
+ * started in the range; the purge deletes the same sessions once they have no
+ * parts left. Session start times are stored in local time but part
+ * created_at in UTC (CURRENT_TIMESTAMP), so parts are compared with the
+ * range converted to UTC.
+ */
+public class ArchivePurgeTool {
+    private static final String ARCHIVE_DIR = System.getProperty("user.home") + File.separator + "MagPi"
+            + File.separator + "archive";
+    private static final DateTimeFormatter FILE_TS = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final DateTimeFormatter SQL_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Local bounds for sessions.start_time
+    private final String from;
+    private final String toExclusive;
+    // The same bounds in UTC for session_parts.created_at
+    private final String fromUtc;
+    private final String toExclusiveUtc;
+    private final int chunkSize;
+    private final boolean includeOpen;
+
+    private long maxPartId;
+    private long maxSessionId;
+
+    // Purge statistics
+    private long chunks;
+    private long lockNanosTotal;
+    private long lockNanosMax;
+
+    public ArchivePurgeTool(LocalDate from, LocalDate to, int chunkSize, boolean includeOpen) {
+        this.from = from.toString();
+        this.toExclusive = to.plusDays(1).toString();
+        this.fromUtc = toUtc(from);
+        this.toExclusiveUtc = toUtc(to.plusDays(1));
+        this.chunkSize = chunkSize;
+        this.includeOpen = includeOpen;
+    }
+
+    private static String toUtc(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).format(SQL_TS);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: ArchivePurgeTool fromDate toDate [archiveFile] "
+                    + "[--chunk=N] [--include-open] [--convert-vacuum]");
+            return;
+        }
+        String archivePath = null;
+        int chunk = 500;
+        boolean includeOpen = false;
+        boolean convertVacuum = false;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--chunk=")) {
+                chunk = Integer.parseInt(args[i].substring("--chunk=".length()));
+            } else if ("--include-open".equals(args[i])) {
+                includeOpen = true;
+            } else if ("--convert-vacuum".equals(args[i])) {
+                convertVacuum = true;
+            } else {
+                archivePath = args[i];
+            }
+        }
+        LocalDate from = LocalDate.parse(args[0]);
+        LocalDate to = LocalDate.parse(args[1]);
+        File archive = archivePath != null ? new File(archivePath)
+                : new File(ARCHIVE_DIR, "magpi-" + from + "_" + to + "-"
+                        + LocalDateTime.now().format(FILE_TS) + ".csv.gz");
+
+        try {
+            new ArchivePurgeTool(from, to, chunk, includeOpen).run(archive, convertVacuum);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void run(File archive, boolean convertVacuum) throws SQLException, IOException {
+        try (Connection conn = Database.getInstance().getConnection()) {
+            long archived = archive(conn, archive);
+            System.out.printf("Archived %,d rows to %s%n", archived, archive.getAbsolutePath());
+            if (archived == 0) {
+                return;
+            }
+            purge(conn);
+            vacuum(conn, convertVacuum);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Archive
+    // ------------------------------------------------------------------
+
+    private String partFilter() {
+        return "sp.created_at >= ? AND sp.created_at < ? AND sp.id <= ?" +
+                (includeOpen ? "" : " AND EXISTS (SELECT 1 FROM sessions so WHERE so.id = sp.session_id AND so.end_time IS NOT NULL)");
+    }
+
+    private void bindPartFilter(PreparedStatement ps, int first) throws SQLException {
+        ps.setString(first, fromUtc);
+        ps.setString(first + 1, toExclusiveUtc);
+        ps.setLong(first + 2, maxPartId);
+    }
+
+    private String emptySessionFilter() {
+        return "s.start_time >= ? AND s.start_time < ? AND s.id <= ? AND s.end_time IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM session_parts p WHERE p.session_id = s.id)";
+    }
+
+    private void bindEmptySessionFilter(PreparedStatement ps, int first) throws SQLException {
+        ps.setString(first, from);
+        ps.setString(first + 1, toExclusive);
+        ps.setLong(first + 2, maxSessionId);
+    }
+
+    /**
+     * Writes sessions, parts and shots of the range from one read snapshot. In
+     * WAL mode this does not block the application's writers.
+     */
+    private long archive(Connection conn, File file) throws SQLException, IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+
+        long rows = 0;
+        conn.setAutoCommit(false);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8))) {
+            try (Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery(
+                            "SELECT (SELECT COALESCE(MAX(id), 0) FROM session_parts), (SELECT COALESCE(MAX(id), 0) FROM sessions)")) {
+                rs.next();
+                maxPartId = rs.getLong(1);
+                maxSessionId = rs.getLong(2);
+            }
+
+            // The purge deletes exactly these sessions once their parts are gone
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TEMP TABLE IF NOT EXISTS archive_sessions(id INTEGER PRIMARY KEY)");
+                st.execute("DELETE FROM archive_sessions");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO archive_sessions(id) SELECT s.id FROM sessions s " +
+                            "WHERE s.id IN (SELECT sp.session_id FROM session_parts sp WHERE " + partFilter() + ") " +
+                            "OR (" + emptySessionFilter() + ")")) {
+                bindPartFilter(ps, 1);
+                bindEmptySessionFilter(ps, 4);
+                ps.executeUpdate();
+            }
+
+            out.write("# MagPi archive " + from + " .. " + toExclusive + " (exclusive)\n");
+            rows += copy(conn, out, "session",
+                    "SELECT s.id, s.company_name, s.machine_id, s.supervisor_id, s.operator_name, s.part_description, " +
+                            "s.headshot_threshold, s.coilshot_threshold, s.start_time, s.end_time FROM sessions s " +
+                            "WHERE s.id IN (SELECT id FROM archive_sessions) ORDER BY s.id",
+                    ps -> { });
+            rows += copy(conn, out, "part",
+                    "SELECT sp.id, sp.session_id, sp.part_number, sp.part_description, sp.status, sp.crack_detected, " +
+                            "sp.crack_image_path, sp.demag_status, sp.created_at, sp.recheck_count, sp.parent_session_part_id " +
+                            "FROM session_parts sp WHERE " + partFilter() +
+                            " ORDER BY sp.id",
+                    ps -> bindPartFilter(ps, 1));
+            rows += copy(conn, out, "shot",
+                    "SELECT m.session_part_id, m.meter_type, m.shot_index, m.current, m.duration, m.created_at " +
+                            "FROM measurement_shots m JOIN session_parts sp ON sp.id = m.session_part_id WHERE " + partFilter() +
+                            " ORDER BY m.session_part_id, m.meter_type, m.shot_index",
+                    ps -> bindPartFilter(ps, 1));
+        } finally {
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        return rows;
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private long copy(Connection conn, Writer out, String kind, String sql, Binder binder)
+            throws SQLException, IOException {
+        long rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                int cols = md.getColumnCount();
+                out.write(kind);
+                for (int c = 1; c <= cols; c++) {
+                    out.write(',');
+                    out.write(md.getColumnLabel(c));
+                }
+                out.write('\n');
+                while (rs.next()) {
+                    out.write(kind);
+                    for (int c = 1; c <= cols; c++) {
+                        out.write(',');
+                        writeCsv(out, rs.getString(c));
+                    }
+                    out.write('\n');
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void writeCsv(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    // ------------------------------------------------------------------
+    // Purge
+    // ------------------------------------------------------------------
+
+    /**
+     * Deletes the archived rows chunk by chunk. Each chunk is its own short
+     * write transaction, and the tool pauses between chunks so the live
+     * application can take the write lock.
+     */
+    private void purge(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        long parts = 0;
+        long shots = 0;
+        long sessions = 0;
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TEMP TABLE IF NOT EXISTS purge_chunk(id INTEGER PRIMARY KEY)");
+        }
+
+        try (PreparedStatement clear = conn.prepareStatement("DELETE FROM purge_chunk");
+                PreparedStatement pick = conn.prepareStatement(
+                        "INSERT INTO purge_chunk(id) SELECT sp.id FROM session_parts sp WHERE " + partFilter() +
+                                " ORDER BY sp.id LIMIT ?");
+                PreparedStatement delRows = conn.prepareStatement(
+                        "DELETE FROM measurements WHERE session_part_id IN (SELECT id FROM purge_chunk)");
+                PreparedStatement countPacks = conn.prepareStatement(
+                        // Packed shots only (id is NULL); shot_count is the highest slot, not a count
+                        "SELECT COUNT(*) FROM measurement_shots WHERE id IS NULL AND session_part_id IN (SELECT id FROM purge_chunk)");
+                PreparedStatement delPacks = conn.prepareStatement(
+                        "DELETE FROM measurement_packs WHERE session_part_id IN (SELECT id FROM purge_chunk)");
+                PreparedStatement delParts = conn.prepareStatement(
+                        "DELETE FROM session_parts WHERE id IN (SELECT id FROM purge_chunk)")) {
+            bindPartFilter(pick, 1);
+            pick.setInt(4, chunkSize);
+
+            while (true) {
+                long t0 = System.nanoTime();
+                conn.setAutoCommit(false);
+                int picked;
+                try {
+                    clear.executeUpdate();
+                    picked = pick.executeUpdate();
+                    if (picked > 0) {
+                        shots += delRows.executeUpdate();
+                        try (ResultSet rs = countPacks.executeQuery()) {
+                            rs.next();
+                            shots += rs.getLong(1);
+                        }
+                        delPacks.executeUpdate();
+                        parts += delParts.executeUpdate();
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                if (picked == 0) {
+                    break;
+                }
+                recordLock(System.nanoTime() - t0);
+                pause();
+            }
+        }
+
+        try (PreparedStatement delSessions = conn.prepareStatement(
+                // Archived sessions left without parts; open ones stay for the live application
+                "DELETE FROM sessions WHERE id IN (SELECT s.id FROM archive_sessions a JOIN sessions s ON s.id = a.id " +
+                        "WHERE s.end_time IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM session_parts p WHERE p.session_id = s.id) LIMIT ?)")) {
+            delSessions.setInt(1, chunkSize);
+            while (true) {
+                long t0 = System.nanoTime();
+                int n = delSessions.executeUpdate();
+                if (n == 0) {
+                    break;
+                }
+                sessions += n;
+                recordLock(System.nanoTime() - t0);
+                pause();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = parts + shots + sessions;
+        System.out.printf("Purged %,d parts, %,d shots, %,d sessions in %.1f s (%,.0f rows/s)%n",
+                parts, shots, sessions, seconds, seconds > 0 ? total / seconds : (double) total);
+        if (chunks > 0) {
+            System.out.printf("Write lock held in %,d chunks: avg %.1f ms, max %.1f ms%n",
+                    chunks, lockNanosTotal / 1e6 / chunks, lockNanosMax / 1e6);
+        }
+    }
+
+    private void recordLock(long nanos) {
+        chunks++;
+        lockNanosTotal += nanos;
+        lockNanosMax = Math.max(lockNanosMax, nanos);
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns free pages to the file system a few at a time. Databases created
+     * before auto_vacuum was enabled need one full VACUUM first, which locks the
+     * whole file, so that only happens with --convert-vacuum.
+     */
+    private void vacuum(Connection conn, boolean convert) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            int mode;
+            try (ResultSet rs = st.executeQuery("PRAGMA auto_vacuum")) {
+                mode = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (mode != 2) {
+                if (!convert) {
+                    System.out.println("auto_vacuum is not INCREMENTAL; freed pages stay in the file for reuse. "
+                            + "Run once with --convert-vacuum while the application is closed to enable it.");
+                    return;
+                }
+                long t0 = System.nanoTime();
+                st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                st.execute("VACUUM");
+                System.out.printf("Converted to incremental auto_vacuum (full VACUUM, %.0f ms)%n",
+                        (System.nanoTime() - t0) / 1e6);
+                return;
+            }
+
+            long freed = 0;
+            long maxNanos = 0;
+            while (true) {
+                long free;
+                try (ResultSet rs = st.executeQuery("PRAGMA freelist_count")) {
+                    free = rs.next() ? rs.getLong(1) : 0;
+                }
+                if (free == 0) {
+                    break;
+                }
+                long t0 = System.nanoTime();
+                st.execute("PRAGMA incremental_vacuum(" + Math.min(free, 1000) + ")");
+                maxNanos = Math.max(maxNanos, System.nanoTime() - t0);
+                freed += Math.min(free, 1000);
+                pause();
+            }
+            System.out.printf("incremental_vacuum released %,d pages (max lock %.1f ms)%n", freed, maxNanos / 1e6);
+        }
+    }
+}
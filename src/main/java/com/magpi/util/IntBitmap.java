@@ -0,0 +1,171 @@
+package com.magpi.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of ints, laid out like a Roaring bitmap: values are
+ * grouped by their high 16 bits, and each group keeps its low 16 bits
+ * either as a sorted char array (up to {@value #ARRAY_MAX} values) or as a
+ * 65536-bit bitmap. Sequential part numbers cost about one bit each,
+ * scattered ones two bytes each.
+ *
+ * Lookups are a binary search over the groups and one inside the group.
+ * Not thread-safe.
+ */
+public class IntBitmap {
+    // Above this many values a bitmap (8 KB) is smaller than the array
+    private static final int ARRAY_MAX = 4096;
+
+    private int[] keys = new int[4];
+    private Container[] containers = new Container[4];
+    private int groups;
+    private long size;
+
+    private static final class Container {
+        char[] values = new char[4];
+        long[] bits; // set once the array grows past ARRAY_MAX
+        int cardinality;
+
+        boolean add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) != 0)
+                    return false;
+                bits[low >>> 6] |= mask;
+                cardinality++;
+                return true;
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0)
+                return false;
+            i = -i - 1;
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(low);
+            }
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (bits != null)
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        /** Smallest low value >= from that is not present, -1 if there is none */
+        int nextAbsent(int from) {
+            if (bits != null) {
+                if (cardinality == 1 << 16)
+                    return -1;
+                int word = from >>> 6;
+                long free = ~bits[word] & (-1L << from);
+                while (free == 0) {
+                    if (++word == bits.length)
+                        return -1;
+                    free = ~bits[word];
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (i < 0)
+                return from;
+            // Walk the run of consecutive values that starts at from
+            while (i + 1 < cardinality && values[i + 1] == values[i] + 1)
+                i++;
+            int next = values[i] + 1;
+            return next > 0xFFFF ? -1 : next;
+        }
+
+        int last() {
+            if (bits == null)
+                return values[cardinality - 1];
+            int word = bits.length - 1;
+            while (bits[word] == 0)
+                word--;
+            return (word << 6) + 63 - Long.numberOfLeadingZeros(bits[word]);
+        }
+
+        private void toBitmap() {
+            bits = new long[1 << 10];
+            for (int i = 0; i < cardinality; i++)
+                bits[values[i] >>> 6] |= 1L << values[i];
+            values = null;
+        }
+    }
+
+    /**
+     * @return true if the value was not in the set
+     */
+    public boolean add(int value) {
+        int key = value >> 16;
+        int g = Arrays.binarySearch(keys, 0, groups, key);
+        if (g < 0) {
+            g = -g - 1;
+            if (groups == keys.length) {
+                keys = Arrays.copyOf(keys, groups * 2);
+                containers = Arrays.copyOf(containers, groups * 2);
+            }
+            System.arraycopy(keys, g, keys, g + 1, groups - g);
+            System.arraycopy(containers, g, containers, g + 1, groups - g);
+            keys[g] = key;
+            containers[g] = new Container();
+            groups++;
+        }
+        if (!containers[g].add((char) value))
+            return false;
+        size++;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int g = Arrays.binarySearch(keys, 0, groups, value >> 16);
+        return g >= 0 && containers[g].contains((char) value);
+    }
+
+    /**
+     * Smallest value >= from that is not in the set. Full groups are skipped
+     * whole, so this reads at most one partly used group past them.
+     *
+     * @throws IllegalStateException if every value from {@code from} up to
+     *                               Integer.MAX_VALUE is in the set
+     */
+    public int nextAbsent(int from) {
+        int value = from;
+        while (true) {
+            int key = value >> 16;
+            int g = Arrays.binarySearch(keys, 0, groups, key);
+            if (g < 0)
+                return value;
+            int low = containers[g].nextAbsent(value & 0xFFFF);
+            if (low >= 0)
+                return (key << 16) | low;
+            if (key == Integer.MAX_VALUE >> 16)
+                throw new IllegalStateException("No free value from " + from);
+            value = (key + 1) << 16;
+        }
+    }
+
+    /**
+     * Largest value in the set
+     *
+     * @throws java.util.NoSuchElementException if the set is empty
+     */
+    public int last() {
+        if (groups == 0)
+            throw new java.util.NoSuchElementException();
+        return (keys[groups - 1] << 16) | containers[groups - 1].last();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.magpi.util;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the live measurement tables: table model events fired by
+ * colored tables and the EDT time spent on each shot. Published as the
+ * MBean com.magpi:type=LiveTable, so they can be watched with JConsole or
+ * any JMX client while the line is running.
+ *
+ * Updated from the EDT; read from any thread.
+ */
+public class LiveTableMetrics implements LiveTableMetricsMBean {
+    private static final long SECOND = 1_000_000_000L;
+
+    private static final LiveTableMetrics instance = new LiveTableMetrics();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong shots = new AtomicLong();
+    private final AtomicLong shotNanos = new AtomicLong();
+    private volatile long maxShotNanos;
+
+    // Events counted in the current second and the rate of the last one
+    private volatile long windowStart = System.nanoTime();
+    private long windowEvents;
+    private volatile long eventsPerSecond;
+
+    private LiveTableMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("com.magpi:type=LiveTable"));
+        } catch (Exception e) {
+            System.err.println("Failed to register live table metrics: " + e.getMessage());
+        }
+    }
+
+    public static LiveTableMetrics get() {
+        return instance;
+    }
+
+    public void tableEvent() {
+        events.incrementAndGet();
+        long now = System.nanoTime();
+        if (now - windowStart >= SECOND) {
+            // A gap of several seconds means the last second was quiet
+            eventsPerSecond = now - windowStart < 2 * SECOND ? windowEvents : 0;
+            windowStart = now;
+            windowEvents = 0;
+        }
+        windowEvents++;
+    }
+
+    /**
+     * Records the EDT time taken to handle one shot
+     */
+    public void shot(long nanos) {
+        shots.incrementAndGet();
+        shotNanos.addAndGet(nanos);
+        if (nanos > maxShotNanos)
+            maxShotNanos = nanos;
+    }
+
+    @Override
+    public long getTableEvents() {
+        return events.get();
+    }
+
+    @Override
+    public long getTableEventsPerSecond() {
+        // No event for over a second
+        return System.nanoTime() - windowStart >= 2 * SECOND ? 0 : eventsPerSecond;
+    }
+
+    @Override
+    public long getShots() {
+        return shots.get();
+    }
+
+    @Override
+    public double getMeanEdtMicrosPerShot() {
+        long n = shots.get();
+        return n == 0 ? 0 : shotNanos.get() / 1000.0 / n;
+    }
+
+    @Override
+    public double getMaxEdtMicrosPerShot() {
+        return maxShotNanos / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        events.set(0);
+        shots.set(0);
+        shotNanos.set(0);
+        maxShotNanos = 0;
+        eventsPerSecond = 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.magpi.util;
+
+/**
+ * JMX view of {@link LiveTableMetrics}
+ */
+public interface LiveTableMetricsMBean {
+    long getTableEvents();
+
+    /** Table model events in the last full second */
+    long getTableEventsPerSecond();
+
+    long getShots();
+
+    /** Mean EDT time spent on one shot, in microseconds */
+    double getMeanEdtMicrosPerShot();
+
+    double getMaxEdtMicrosPerShot();
+
+    void reset();
+}
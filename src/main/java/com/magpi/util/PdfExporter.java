@@ -20,7 +20,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -30,6 +29,29 @@ public class PdfExporter {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    // Rows written to the file before a table's next rows are laid out
+    private static final int FLUSH_ROWS = 100;
+
+    /**
+     * Rows of one report table, produced while the table is written so a
+     * report never holds all of its rows in memory
+     */
+    public interface RowSource {
+        String[] columnNames();
+
+        /**
+         * Pass every row to the sink, in order
+         */
+        void forEachRow(RowSink sink) throws Exception;
+    }
+
+    public interface RowSink {
+        /**
+         * @param values cell values; the array may be reused for the next row
+         * @param colors cell background colors, null entries for none
+         */
+        void row(Object[] values, Color[] colors);
+    }
 
     /**
      * Exports the current test session to a PDF file
@@ -63,6 +85,33 @@ public class PdfExporter {
     public static void exportToPdf(TestSession session, JTable headshotTable, JTable coilshotTable,
             Component parentComponent, String filterDateRange, String filterTimeRange, String filterOperator,
             String filterStartDate, String filterEndDate) {
+        // Count Pass, Crack, Error, and Retest parts from the actual tables being
+        // exported
+        int[] statusCounts = countPassErrorParts(headshotTable); // [passCount, crackCount, errorCount]
+        int[] counts = { headshotTable.getRowCount(), countRetestedParts(headshotTable), statusCounts[0],
+                statusCounts[1], statusCounts[2] };
+        exportToPdf(session, tableSource(headshotTable), coilshotTable.getRowCount() > 0
+                ? tableSource(coilshotTable)
+                : null, counts, parentComponent, filterDateRange, filterTimeRange, filterOperator);
+    }
+
+    /**
+     * Exports measurement rows read on demand, e.g. straight from the
+     * database, to a PDF file
+     * 
+     * @param session         The test session to export
+     * @param headshotRows    Rows of the headshot table
+     * @param coilshotRows    Rows of the coilshot table, null to leave it out
+     * @param counts          { total, retested, pass, crack, error } of the
+     *                        exported parts
+     * @param parentComponent The parent component for dialog display
+     * @param filterDateRange Date range filter, null if not used
+     * @param filterTimeRange Time range filter, null if not used
+     * @param filterOperator  Operator filter, null if not used
+     */
+    public static void exportToPdf(TestSession session, RowSource headshotRows, RowSource coilshotRows,
+            int[] counts, Component parentComponent, String filterDateRange, String filterTimeRange,
+            String filterOperator) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save PDF Report");
         int userSelection = fileChooser.showSaveDialog(parentComponent);
@@ -107,15 +156,11 @@ public class PdfExporter {
                 String exportDate = java.time.LocalDate.now().format(DATE_FORMATTER);
                 addMetadataRow(metadataTable, "PDF Exported Date:", exportDate);
 
-                // Count Pass, Crack, Error, and Retest parts from the actual tables being
-                // exported
-                int[] counts = countPassErrorParts(headshotTable); // [passCount, crackCount, errorCount]
-                int retestedCount = countRetestedParts(headshotTable);
-                String totalText = headshotTable.getRowCount() + " (" + retestedCount + " retested)";
+                String totalText = counts[0] + " (" + counts[1] + " retested)";
                 addMetadataRow(metadataTable, "Total Parts Exported:", totalText);
-                addMetadataRow(metadataTable, "Pass Parts:", String.valueOf(counts[0]));
-                addMetadataRow(metadataTable, "Crack Parts:", String.valueOf(counts[1]));
-                addMetadataRow(metadataTable, "Error Parts:", String.valueOf(counts[2]));
+                addMetadataRow(metadataTable, "Pass Parts:", String.valueOf(counts[2]));
+                addMetadataRow(metadataTable, "Crack Parts:", String.valueOf(counts[3]));
+                addMetadataRow(metadataTable, "Error Parts:", String.valueOf(counts[4]));
 
                 // Add filter information if custom filters were applied
                 if (filterDateRange != null || filterTimeRange != null || filterOperator != null) {
@@ -147,22 +192,20 @@ public class PdfExporter {
             document.add(new Paragraph("\n"));
 
             // Headshot Table
-            if (headshotTable.getRowCount() > 0) {
+            if (counts[0] > 0) {
                 document.add(new Paragraph("Headshot Measurements")
                         .setFontSize(14)
                         .setBold());
-                Table headTable = createPdfTableWithColors(headshotTable);
-                document.add(headTable);
+                addTableWithColors(document, headshotRows);
                 document.add(new Paragraph("\n"));
             }
 
             // Coilshot Table
-            if (coilshotTable.getRowCount() > 0) {
+            if (coilshotRows != null) {
                 document.add(new Paragraph("Coilshot Measurements")
                         .setFontSize(14)
                         .setBold());
-                Table coilTable = createPdfTableWithColors(coilshotTable);
-                document.add(coilTable);
+                addTableWithColors(document, coilshotRows);
             }
 
             document.close();
@@ -172,7 +215,7 @@ public class PdfExporter {
                     "Export Successful",
                     JOptionPane.INFORMATION_MESSAGE);
 
-        } catch (IOException e) {
+        } catch (Exception e) {
             JOptionPane.showMessageDialog(parentComponent,
                     "Error exporting to PDF: " + e.getMessage(),
                     "Export Error",
@@ -227,9 +270,9 @@ public class PdfExporter {
     }
 
     /**
-     * Count how many parts in the table are retests
-     * Handles both PartIdCell objects (with retest suffix) and plain integers from
-     * DB
+     * Count how many parts in the table are retests. Each row carries its
+     * saved retest number, so rows are counted on their own whatever subset
+     * of the history was exported.
      * 
      * @param table The table to analyze
      * @return Count of retested parts
@@ -238,53 +281,16 @@ public class PdfExporter {
         int retestedCount = 0;
         javax.swing.table.TableModel model = table.getModel();
 
-        // Track how many times each base part number appears
-        java.util.Map<Integer, Integer> partCounts = new java.util.HashMap<>();
-
         // Part No is always column 0
         for (int row = 0; row < model.getRowCount(); row++) {
             Object partNo = model.getValueAt(row, 0);
-            if (partNo != null) {
-                // Handle PartIdCell objects
-                if (partNo instanceof com.magpi.ui.util.PartIdCell) {
-                    com.magpi.ui.util.PartIdCell cell = (com.magpi.ui.util.PartIdCell) partNo;
-                    int basePartNo = cell.getBasePartNumber();
-                    int count = partCounts.getOrDefault(basePartNo, 0);
-                    partCounts.put(basePartNo, count + 1);
-
-                    // If this is a retest (recheckCount > 0), count it
-                    if (cell.getRecheckCount() > 0) {
-                        retestedCount++;
-                    }
-                }
-                // Handle plain integers or strings from database
-                else {
-                    String partStr = partNo.toString();
-                    // If part number contains '-', it's a retest (e.g., "5-1", "5-2", "7-1")
-                    if (partStr.contains("-")) {
-                        retestedCount++;
-                        // Extract base part number for counting
-                        try {
-                            int basePartNo = Integer.parseInt(partStr.substring(0, partStr.indexOf('-')));
-                            int count = partCounts.getOrDefault(basePartNo, 0);
-                            partCounts.put(basePartNo, count + 1);
-                        } catch (NumberFormatException ignored) {
-                        }
-                    } else {
-                        // Plain integer - track occurrences
-                        try {
-                            int basePartNo = Integer.parseInt(partStr);
-                            int count = partCounts.getOrDefault(basePartNo, 0);
-                            partCounts.put(basePartNo, count + 1);
-
-                            // If this part number has appeared before, it's a retest
-                            if (count > 0) {
-                                retestedCount++;
-                            }
-                        } catch (NumberFormatException ignored) {
-                        }
-                    }
+            if (partNo instanceof com.magpi.ui.util.PartIdCell) {
+                if (((com.magpi.ui.util.PartIdCell) partNo).getRecheckCount() > 0) {
+                    retestedCount++;
                 }
+            } else if (partNo != null && partNo.toString().contains("-")) {
+                // Part id as text, e.g. "5-1"
+                retestedCount++;
             }
         }
 
@@ -292,63 +298,98 @@ public class PdfExporter {
     }
 
     /**
-     * Creates a PDF table with color highlighting from a JTable
-     * 
-     * @param table The JTable to convert
-     * @return A PDF Table representation
+     * Rows of a JTable, with the cell colors of a PersistentColorTableModel
      */
-    private static Table createPdfTableWithColors(JTable table) {
+    private static RowSource tableSource(JTable table) {
         javax.swing.table.TableModel model = table.getModel();
+        return new RowSource() {
+            @Override
+            public String[] columnNames() {
+                String[] names = new String[model.getColumnCount()];
+                for (int c = 0; c < names.length; c++) {
+                    names[c] = model.getColumnName(c);
+                }
+                return names;
+            }
+
+            @Override
+            public void forEachRow(RowSink sink) {
+                Object[] values = new Object[model.getColumnCount()];
+                Color[] colors = new Color[values.length];
+                for (int row = 0; row < model.getRowCount(); row++) {
+                    for (int c = 0; c < values.length; c++) {
+                        values[c] = model.getValueAt(row, c);
+                        colors[c] = model instanceof PersistentColorTableModel
+                                ? ((PersistentColorTableModel) model).getCellColor(row, c)
+                                : null;
+                    }
+                    sink.row(values, colors);
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds a PDF table with color highlighting to the document. The table is
+     * written as a large table: rows are flushed to the file as they arrive
+     * instead of being laid out at the end.
+     * 
+     * @param document The document to add to
+     * @param source   The rows to write
+     */
+    private static void addTableWithColors(Document document, RowSource source) throws Exception {
+        String[] names = source.columnNames();
         // Build a list of columns to include (skip "Details" and "Crack")
         java.util.List<Integer> cols = new java.util.ArrayList<>();
-        for (int c = 0; c < model.getColumnCount(); c++) {
-            String name = model.getColumnName(c);
-            if (!"Details".equalsIgnoreCase(name) && !"Crack".equalsIgnoreCase(name)) {
+        for (int c = 0; c < names.length; c++) {
+            if (!"Details".equalsIgnoreCase(names[c]) && !"Crack".equalsIgnoreCase(names[c])) {
                 cols.add(c);
             }
         }
-        Table pdfTable = new Table(UnitValue.createPercentArray(cols.size())).useAllAvailableWidth();
+        Table pdfTable = new Table(UnitValue.createPercentArray(cols.size()), true).useAllAvailableWidth();
 
         // Add headers
         for (int idx : cols) {
             pdfTable.addHeaderCell(new Cell()
-                    .add(new Paragraph(model.getColumnName(idx)))
+                    .add(new Paragraph(names[idx]))
                     .setBold());
         }
+        document.add(pdfTable);
 
         // Add data with colors if available (skip rows with no measurement data)
-        for (int row = 0; row < model.getRowCount(); row++) {
+        int[] written = { 0 };
+        source.forEachRow((values, colors) -> {
             boolean hasData = false;
             // Check non-first columns for any non-empty
             for (int k = 1; k < cols.size(); k++) {
-                Object v = model.getValueAt(row, cols.get(k));
+                Object v = values[cols.get(k)];
                 if (v != null && !v.toString().trim().isEmpty()) {
                     hasData = true;
                     break;
                 }
             }
             if (!hasData)
-                continue;
+                return;
 
             for (int idx : cols) {
-                Object value = model.getValueAt(row, idx);
+                Object value = values[idx];
                 Cell pdfCell = new Cell();
                 pdfCell.add(new Paragraph(value != null ? value.toString() : ""));
 
-                if (model instanceof PersistentColorTableModel) {
-                    PersistentColorTableModel colorModel = (PersistentColorTableModel) model;
-                    Color cellColor = colorModel.getCellColor(row, idx);
-                    if (cellColor != null) {
-                        pdfCell.setBackgroundColor(new DeviceRgb(
-                                cellColor.getRed(),
-                                cellColor.getGreen(),
-                                cellColor.getBlue()));
-                    }
+                Color cellColor = colors != null ? colors[idx] : null;
+                if (cellColor != null) {
+                    pdfCell.setBackgroundColor(new DeviceRgb(
+                            cellColor.getRed(),
+                            cellColor.getGreen(),
+                            cellColor.getBlue()));
                 }
                 pdfTable.addCell(pdfCell);
             }
-        }
-        return pdfTable;
+            if (++written[0] % FLUSH_ROWS == 0) {
+                pdfTable.flush();
+            }
+        });
+        pdfTable.complete();
     }
 
     /**
@@ -359,6 +400,24 @@ public class PdfExporter {
      * @param parentComponent The parent component for dialog display
      */
     public static void exportSummaryToPdf(TestSession session, JTable summaryTable, Component parentComponent) {
+        // Count stats from summary table
+        int[] statusCounts = countSummaryTableStats(summaryTable); // [passCount, crackCount, errorCount]
+        int[] counts = { summaryTable.getRowCount(), countRetestedParts(summaryTable), statusCounts[0],
+                statusCounts[1], statusCounts[2] };
+        exportSummaryToPdf(session, tableSource(summaryTable), counts, parentComponent);
+    }
+
+    /**
+     * Export Part Test History summary rows read on demand
+     * 
+     * @param session         The test session (can be null)
+     * @param summaryRows     Rows of the Part Test History summary
+     * @param counts          { total, retested, pass, crack, error } of the
+     *                        exported parts
+     * @param parentComponent The parent component for dialog display
+     */
+    public static void exportSummaryToPdf(TestSession session, RowSource summaryRows, int[] counts,
+            Component parentComponent) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Summary PDF Report");
         int userSelection = fileChooser.showSaveDialog(parentComponent);
@@ -397,26 +456,21 @@ public class PdfExporter {
                 addMetadataRow(metadataTable, "Machine ID:", session.getMachineId());
             }
 
-            // Count stats from summary table
-            int retestedCount = countRetestedParts(summaryTable);
-            int[] statusCounts = countSummaryTableStats(summaryTable); // [passCount, crackCount, errorCount]
-
-            String totalText = summaryTable.getRowCount() + " (" + retestedCount + " retested)";
+            String totalText = counts[0] + " (" + counts[1] + " retested)";
             addMetadataRow(metadataTable, "Total Parts Exported:", totalText);
-            addMetadataRow(metadataTable, "Pass Parts:", String.valueOf(statusCounts[0]));
-            addMetadataRow(metadataTable, "Crack Parts:", String.valueOf(statusCounts[1]));
-            addMetadataRow(metadataTable, "Error Parts:", String.valueOf(statusCounts[2]));
+            addMetadataRow(metadataTable, "Pass Parts:", String.valueOf(counts[2]));
+            addMetadataRow(metadataTable, "Crack Parts:", String.valueOf(counts[3]));
+            addMetadataRow(metadataTable, "Error Parts:", String.valueOf(counts[4]));
 
             document.add(metadataTable);
             document.add(new Paragraph("\n"));
 
             // Add the summary table
-            if (summaryTable.getRowCount() > 0) {
+            if (counts[0] > 0) {
                 document.add(new Paragraph("Part Test Summary")
                         .setFontSize(14)
                         .setBold());
-                Table pdfSummaryTable = createPdfTableWithColors(summaryTable);
-                document.add(pdfSummaryTable);
+                addTableWithColors(document, summaryRows);
             }
 
             document.close();
@@ -426,7 +480,7 @@ public class PdfExporter {
                     "Export Successful",
                     JOptionPane.INFORMATION_MESSAGE);
 
-        } catch (IOException e) {
+        } catch (Exception e) {
             JOptionPane.showMessageDialog(parentComponent,
                     "Error exporting to PDF: " + e.getMessage(),
                     "Export Error",
@@ -547,18 +601,18 @@ public class PdfExporter {
 
             if (headshotTable.getRowCount() > 0) {
                 document.add(new Paragraph("Headshot Measurements").setFontSize(14).setBold());
-                document.add(createPdfTableWithColors(headshotTable));
+                addTableWithColors(document, tableSource(headshotTable));
                 document.add(new Paragraph("\n"));
             }
             if (coilshotTable.getRowCount() > 0) {
                 document.add(new Paragraph("Coilshot Measurements").setFontSize(14).setBold());
-                document.add(createPdfTableWithColors(coilshotTable));
+                addTableWithColors(document, tableSource(coilshotTable));
             }
             document.close();
             JOptionPane.showMessageDialog(parentComponent,
                     "Report exported successfully to " + selectedFile.getName(),
                     "Export Successful", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
+        } catch (Exception e) {
             JOptionPane.showMessageDialog(parentComponent,
                     "Error exporting to PDF: " + e.getMessage(),
                     "Export Error", JOptionPane.ERROR_MESSAGE);
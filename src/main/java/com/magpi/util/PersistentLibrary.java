@@ -1,8 +1,10 @@
 package com.magpi.util;
 
-import com.magpi.db.OperatorDao;
-import com.magpi.db.PartDao;
+import com.magpi.db.CatalogRepository;
 import com.magpi.db.ParameterDao;
+import com.magpi.db.ParameterRepository;
+import com.magpi.db.Storage;
+import com.magpi.model.AcceptanceRules;
 
 import java.io.*;
 import java.util.*;
@@ -10,7 +12,8 @@ import java.util.*;
 /**
  * Manages persistent storage of operator names, part descriptions, and
  * part-specific parameters.
- * Now backed by SQLite. Includes one-time migration from legacy text files.
+ * Backed by the configured {@link Storage} (SQLite by default). Includes
+ * one-time migration from legacy text files.
  */
 public class PersistentLibrary {
     private static final String LIBRARY_DIR = System.getProperty("user.home") + "/MagPi/Library";
@@ -21,12 +24,14 @@ public class PersistentLibrary {
 
     private static PersistentLibrary instance;
 
-    private final OperatorDao operatorDao = new OperatorDao();
-    private final PartDao partDao = new PartDao();
-    private final ParameterDao parameterDao = new ParameterDao();
+    private final CatalogRepository catalog = Storage.get().catalog();
+    private final ParameterRepository parameterDao = Storage.get().parameters();
 
     private PersistentLibrary() {
-        migrateFromLegacyFilesIfNeeded();
+        // Never consume the legacy files into a throwaway in-memory store
+        if (!Storage.isInMemory()) {
+            migrateFromLegacyFilesIfNeeded();
+        }
     }
 
     public static PersistentLibrary getInstance() {
@@ -39,7 +44,7 @@ public class PersistentLibrary {
     // Operator methods
     public void addOperator(String operator) {
         try {
-            operatorDao.add(operator);
+            catalog.addOperator(operator);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -47,7 +52,7 @@ public class PersistentLibrary {
 
     public List<String> getOperators() {
         try {
-            return operatorDao.getAll();
+            return catalog.getOperators();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -55,7 +60,7 @@ public class PersistentLibrary {
 
     public void removeOperator(String operator) {
         try {
-            operatorDao.remove(operator);
+            catalog.removeOperator(operator);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -64,7 +69,7 @@ public class PersistentLibrary {
     // Part description methods
     public void addPartDescription(String description) {
         try {
-            partDao.add(description);
+            catalog.addPartDescription(description);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -72,7 +77,7 @@ public class PersistentLibrary {
 
     public List<String> getPartDescriptions() {
         try {
-            return partDao.getAll();
+            return catalog.getPartDescriptions();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -80,7 +85,7 @@ public class PersistentLibrary {
 
     public void removePartDescription(String description) {
         try {
-            partDao.remove(description);
+            catalog.removePartDescription(description);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -126,6 +131,22 @@ public class PersistentLibrary {
         }
     }
 
+    public AcceptanceRules getAcceptanceRules(String partDescription) {
+        try {
+            return parameterDao.getRules(partDescription);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void saveAcceptanceRules(String partDescription, AcceptanceRules rules) {
+        try {
+            parameterDao.saveRules(partDescription, rules);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * One-time migration from legacy text files into SQLite if DB is empty.
      */
@@ -143,12 +164,12 @@ public class PersistentLibrary {
             Map<String, List<PartParameters>> historyParams = readHistory(PARAMETER_HISTORY_FILE);
             for (String op : operators) {
                 if (!op.isBlank())
-                    operatorDao.add(op);
+                    catalog.addOperator(op);
             }
             // Insert parts
             for (String part : parts) {
                 if (!part.isBlank())
-                    partDao.add(part);
+                    catalog.addPartDescription(part);
             }
             // Insert parameters and history
             for (Map.Entry<String, PartParameters> e : currentParams.entrySet()) {